@@ -0,0 +1,100 @@
+package com.questnextaction;
+
+import net.runelite.api.coords.WorldPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Objective lookups made every frame by the overlays
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectiveBenchmark
+{
+	private static final WorldPoint PLAYER = new WorldPoint(3222, 3218, 0);
+
+	@State(Scope.Benchmark)
+	public static class BestLocation
+	{
+		@Param({"1", "10", "100", "500"})
+		public int locationCount;
+
+		Objective objective;
+
+		@Setup
+		public void setUp()
+		{
+			Random random = new Random(18);
+			Objective.ObjectiveBuilder builder = Objective.builder()
+				.id("buy")
+				.type(ObjectiveType.BUY)
+				.task("Buy a pot")
+				.locationName("Multiple shops")
+				.location(new WorldPoint(3212, 3247, 0));
+			for (int i = 0; i < locationCount; i++)
+			{
+				// A few locations are upstairs and never chosen from the ground floor
+				builder.possibleLocation(new WorldPoint(2400 + random.nextInt(1400), 2800 + random.nextInt(1100),
+					random.nextInt(20) == 0 ? 1 : 0));
+			}
+			objective = builder.build();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ActiveObjectives
+	{
+		@Param({"10", "100", "1000", "10000"})
+		public int objectiveCount;
+
+		ObjectiveManager manager;
+
+		@Setup
+		public void setUp()
+		{
+			manager = new ObjectiveManager();
+			for (int i = 0; i < objectiveCount; i++)
+			{
+				WorldPoint location = new WorldPoint(3200 + i % 100, 3200 + i / 100 % 100, 0);
+				// One objective in ten is being tracked
+				manager.addObjective(Objective.builder()
+					.id("objective_" + i)
+					.type(ObjectiveType.TRAVEL)
+					.task("Go to " + location)
+					.locationName("Somewhere")
+					.location(location)
+					.regionId(location.getRegionID())
+					.active(i % 10 == 0)
+					.build());
+			}
+		}
+	}
+
+	@Benchmark
+	public WorldPoint getBestLocation(BestLocation state)
+	{
+		return state.objective.getBestLocation(PLAYER);
+	}
+
+	@Benchmark
+	public List<Objective> getActiveObjectives(ActiveObjectives state)
+	{
+		return state.manager.getActiveObjectives();
+	}
+}
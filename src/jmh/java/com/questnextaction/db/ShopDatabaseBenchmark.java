@@ -0,0 +1,94 @@
+package com.questnextaction.db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShopDatabase construction and item queries on the bundled data and on generated datasets
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopDatabaseBenchmark
+{
+	/**
+	 * Shops in the generated dataset; 0 uses the bundled data
+	 */
+	@Param({"0", "1000", "10000", "100000"})
+	public int shopCount;
+
+	private byte[] shopsJson;
+	private ShopDatabase database;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		if (shopCount > 0)
+		{
+			StringWriter writer = new StringWriter();
+			SyntheticShopData.write(SyntheticShopData.generate(shopCount), writer);
+			shopsJson = writer.toString().getBytes(StandardCharsets.UTF_8);
+		}
+		database = createDatabase();
+	}
+
+	private ShopDatabase createDatabase() throws IOException
+	{
+		return shopsJson != null ? new ShopDatabase(ByteBuffer.wrap(shopsJson)) : new ShopDatabase();
+	}
+
+	@Benchmark
+	@Warmup(iterations = 2, time = 5)
+	@Measurement(iterations = 3, time = 5)
+	public ShopDatabase construct() throws IOException
+	{
+		return createDatabase();
+	}
+
+	/**
+	 * A common item, a prefix of several and a name no shop sells
+	 */
+	@State(Scope.Benchmark)
+	public static class Query
+	{
+		@Param({"pot", "rune pl", "xyzzy"})
+		public String text;
+	}
+
+	@Benchmark
+	public List<String> searchItems(Query query)
+	{
+		return database.searchItems(query.text);
+	}
+
+	@Benchmark
+	public List<Shop> findShopsByItem(Query query)
+	{
+		return database.findShopsByItem(query.text);
+	}
+
+	@Benchmark
+	public List<String> getAllItemNames()
+	{
+		return database.getAllItemNames();
+	}
+}
@@ -0,0 +1,151 @@
+package com.questnextaction.db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning shop inventories through the {@link Shop}/{@link ShopItem} object graph with
+ * scanning the same data as {@link ShopInventoryColumns}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShopInventoryBenchmark
+{
+	@Param({"1000", "100000"})
+	public int shopCount;
+
+	private List<Shop> shops;
+	private ShopInventoryColumns columns;
+	private int itemId;
+	private PriceLadder ladder;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(16);
+		String[] names = new String[3000];
+		for (int i = 0; i < names.length; i++)
+		{
+			names[i] = "Item " + i;
+		}
+
+		shops = new ArrayList<>(shopCount);
+		for (int i = 0; i < shopCount; i++)
+		{
+			List<ShopItem> items = new ArrayList<>();
+			for (int j = 5 + random.nextInt(30); j > 0; j--)
+			{
+				// Few items are sold everywhere and most by a handful of shops
+				int id = Math.min(names.length - 1, (int) Math.abs(random.nextGaussian() * 400));
+				ShopItem item = new ShopItem();
+				item.setItemId(id);
+				item.setName(names[id]);
+				item.setStock(random.nextInt(50) - 1);
+				item.setPrice(1 + random.nextInt(1000));
+				items.add(item);
+			}
+
+			Shop shop = new Shop();
+			shop.setId("shop_" + i);
+			shop.setItems(items);
+			shops.add(shop);
+		}
+
+		columns = ShopInventoryColumns.build(shops);
+		itemId = 42;
+		ladder = PriceLadder.buildAll(columns, shops, null).get("item 1");
+	}
+
+	@Benchmark
+	public int cheapestPriceObjects()
+	{
+		int cheapest = Integer.MAX_VALUE;
+		for (Shop shop : shops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				if (item.getItemId() == itemId && item.getStock() != 0)
+				{
+					cheapest = Math.min(cheapest, item.getPrice());
+				}
+			}
+		}
+		return cheapest;
+	}
+
+	@Benchmark
+	public int cheapestPriceColumns()
+	{
+		int cheapest = Integer.MAX_VALUE;
+		for (int row = 0; row < columns.rowCount(); row++)
+		{
+			if (columns.itemId(row) == itemId && columns.stock(row) != 0)
+			{
+				cheapest = Math.min(cheapest, columns.price(row));
+			}
+		}
+		return cheapest;
+	}
+
+	@Benchmark
+	public long stockValueObjects()
+	{
+		long value = 0;
+		for (Shop shop : shops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				value += (long) Math.max(item.getStock(), 0) * item.getPrice();
+			}
+		}
+		return value;
+	}
+
+	@Benchmark
+	public long stockValueColumns()
+	{
+		long value = 0;
+		for (int row = 0; row < columns.rowCount(); row++)
+		{
+			value += (long) Math.max(columns.stock(row), 0) * columns.price(row);
+		}
+		return value;
+	}
+
+	@Benchmark
+	public ShopInventoryColumns buildColumns()
+	{
+		return ShopInventoryColumns.build(shops);
+	}
+
+	@Benchmark
+	public Map<String, PriceLadder> buildPriceLadders()
+	{
+		return PriceLadder.buildAll(columns, shops, null);
+	}
+
+	@Benchmark
+	public List<ShopOffer> cheapestOffers()
+	{
+		return ladder.cheapest(5);
+	}
+}
@@ -1,7 +1,9 @@
 package com.questnextaction;
 
+import com.questnextaction.db.ItemSearchSession;
 import com.questnextaction.db.Shop;
 import com.questnextaction.db.ShopDatabase;
+import com.questnextaction.db.ShopOffer;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.coords.WorldPoint;
 import net.runelite.client.ui.ColorScheme;
@@ -14,6 +16,7 @@ import java.awt.*;
 import java.awt.event.ItemEvent;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -23,24 +26,24 @@ import java.util.stream.Collectors;
 public class AddObjectiveDialog extends JDialog
 {
 	private final ObjectiveManager objectiveManager;
-	private final ObjectiveTrackerPanel parentPanel;
 	private final ShopDatabase shopDatabase;
+	private final ItemSearchSession itemSearch;
 
 	// Form fields
 	private final JComboBox<String> itemComboBox;
 	private final JSpinner quantitySpinner;
 	private final JLabel shopsLabel;
+	private final JButton addButton;
 
 	private boolean updatingFields = false;
 	private String lastSearchText = "";
 
-	public AddObjectiveDialog(JFrame parent, ObjectiveManager objectiveManager,
-		ObjectiveTrackerPanel parentPanel, ShopDatabase shopDatabase)
+	public AddObjectiveDialog(JFrame parent, ObjectiveManager objectiveManager, ShopDatabase shopDatabase)
 	{
 		super(parent, "Add Shop Purchase Objective", true);
 		this.objectiveManager = objectiveManager;
-		this.parentPanel = parentPanel;
 		this.shopDatabase = shopDatabase;
+		this.itemSearch = shopDatabase.newSearchSession();
 
 		setLayout(new BorderLayout());
 		setBackground(ColorScheme.DARK_GRAY_COLOR);
@@ -110,6 +113,7 @@ public class AddObjectiveDialog extends JDialog
 		gbc.weightx = 1.0;
 		SpinnerNumberModel spinnerModel = new SpinnerNumberModel(1, 1, 10000, 1);
 		quantitySpinner = new JSpinner(spinnerModel);
+		quantitySpinner.addChangeListener(e -> onItemSelected());
 		formPanel.add(quantitySpinner, gbc);
 
 		// Available shops label (shows where item can be bought)
@@ -129,7 +133,7 @@ public class AddObjectiveDialog extends JDialog
 		buttonPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
 		buttonPanel.setBorder(new EmptyBorder(5, 10, 10, 10));
 
-		JButton addButton = new JButton("Add Objective");
+		addButton = new JButton("Add Objective");
 		addButton.addActionListener(e -> addObjective());
 
 		JButton cancelButton = new JButton("Cancel");
@@ -140,10 +144,27 @@ public class AddObjectiveDialog extends JDialog
 
 		add(buttonPanel, BorderLayout.SOUTH);
 
+		if (!shopDatabase.isReady())
+		{
+			// Show a loading state and fill the suggestions in once the shop data is available
+			itemComboBox.setEnabled(false);
+			addButton.setEnabled(false);
+			shopsLabel.setText("Loading shop data...");
+			shopDatabase.getReadyFuture().thenRun(() -> SwingUtilities.invokeLater(this::onShopDataReady));
+		}
+
 		pack();
 		setLocationRelativeTo(parent);
 	}
 
+	private void onShopDataReady()
+	{
+		populateItemComboBox(lastSearchText);
+		itemComboBox.setEnabled(true);
+		addButton.setEnabled(true);
+		shopsLabel.setText(" ");
+	}
+
 	private void populateItemComboBox(String filter)
 	{
 		updatingFields = true;
@@ -156,7 +177,12 @@ public class AddObjectiveDialog extends JDialog
 		}
 		else
 		{
-			items = shopDatabase.searchItems(filter);
+			items = itemSearch.search(filter);
+			if (items.isEmpty())
+			{
+				// Nothing contains the text as typed, so it is probably misspelt
+				items = shopDatabase.searchItemsFuzzy(filter, 50);
+			}
 		}
 
 		// Limit to first 50 for performance
@@ -212,8 +238,26 @@ public class AddObjectiveDialog extends JDialog
 			return;
 		}
 
+		// Looked up in the background, as the shops may need reading from disk
 		String itemName = selected.toString().trim();
-		List<Shop> shops = shopDatabase.findShopsByItem(itemName);
+		int quantity = (Integer) quantitySpinner.getValue();
+		CompletableFuture<List<Shop>> shops = shopDatabase.query(db -> db.findShopsByItem(itemName));
+		CompletableFuture<List<ShopOffer>> offers = shopDatabase.query(db -> db.findCheapestShops(itemName, quantity));
+		shops.thenAcceptBoth(offers, (itemShops, itemOffers) ->
+			SwingUtilities.invokeLater(() -> showShops(itemName, quantity, itemShops, itemOffers)));
+	}
+
+	private void showShops(String itemName, int quantity, List<Shop> shops, List<ShopOffer> offers)
+	{
+		Object selected = itemComboBox.getSelectedItem();
+		if (selected == null || !itemName.equals(selected.toString().trim())
+			|| quantity != (Integer) quantitySpinner.getValue())
+		{
+			// Another item or quantity was chosen while these were looked up
+			return;
+		}
+
+		shopsLabel.setToolTipText(null);
 
 		// Update the label to show available shops
 		if (shops.isEmpty())
@@ -222,7 +266,7 @@ public class AddObjectiveDialog extends JDialog
 		}
 		else if (shops.size() == 1)
 		{
-			shopsLabel.setText("Available at: " + shops.get(0).getName());
+			shopsLabel.setText("Available at: " + shops.get(0).getName() + describeCost(offers));
 		}
 		else
 		{
@@ -234,8 +278,34 @@ public class AddObjectiveDialog extends JDialog
 			{
 				shopNames += ", and " + (shops.size() - 3) + " more";
 			}
-			shopsLabel.setText("Available at " + shops.size() + " shops: " + shopNames);
+
+			if (offers.isEmpty())
+			{
+				shopsLabel.setText("Available at " + shops.size() + " shops: " + shopNames);
+			}
+			else
+			{
+				shopsLabel.setText("Available at " + shops.size() + " shops, cheapest: "
+					+ offers.get(0).getShop().getName() + describeCost(offers));
+				shopsLabel.setToolTipText(shopNames);
+			}
+		}
+	}
+
+	/**
+	 * Cost of the cheapest offer, e.g. " (25 gp)", or " (3 for 9 gp)" if it cannot supply the whole quantity
+	 */
+	private static String describeCost(List<ShopOffer> offers)
+	{
+		if (offers.isEmpty())
+		{
+			return "";
 		}
+
+		ShopOffer cheapest = offers.get(0);
+		return cheapest.isComplete()
+			? " (" + cheapest.getTotalCost() + " gp)"
+			: " (" + cheapest.getQuantity() + " for " + cheapest.getTotalCost() + " gp)";
 	}
 
 	private void addObjective()
@@ -254,9 +324,34 @@ public class AddObjectiveDialog extends JDialog
 
 		int quantity = (Integer) quantitySpinner.getValue();
 
-		// Find all shops selling this item
-		List<Shop> shops = shopDatabase.findShopsByItem(itemName);
+		// Find all shops selling this item in the background, as they may need reading from disk
+		addButton.setEnabled(false);
+		shopDatabase.query(db -> db.findShopsByItem(itemName))
+			.whenComplete((shops, error) -> SwingUtilities.invokeLater(() ->
+			{
+				addButton.setEnabled(true);
+				if (!isDisplayable())
+				{
+					// Cancelled or closed while the shops were looked up
+					return;
+				}
+
+				if (error != null)
+				{
+					log.warn("Failed to look up shops selling {}", itemName, error);
+					JOptionPane.showMessageDialog(this,
+						"Failed to look up shops selling this item",
+						"Error",
+						JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+
+				addObjective(itemName, quantity, shops);
+			}));
+	}
 
+	private void addObjective(String itemName, int quantity, List<Shop> shops)
+	{
 		if (shops.isEmpty())
 		{
 			int result = JOptionPane.showConfirmDialog(this,
@@ -321,9 +416,6 @@ public class AddObjectiveDialog extends JDialog
 		log.debug("Added new objective: {} at {} (with {} possible locations)",
 			task, locationName, shops.size());
 
-		// Refresh the panel
-		parentPanel.rebuild();
-
 		dispose();
 	}
 }
@@ -0,0 +1,12 @@
+package com.questnextaction;
+
+import lombok.Value;
+
+/**
+ * An objective was added
+ */
+@Value
+public class ObjectiveAdded
+{
+	Objective objective;
+}
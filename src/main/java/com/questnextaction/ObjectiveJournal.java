@@ -0,0 +1,554 @@
+package com.questnextaction;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Objectives saved as a snapshot plus an append-only journal of the changes made since.
+ *
+ * Each change is appended to the journal as one record: its length, the change and a CRC32 of
+ * the change. A record is written with one call before put or remove returns, so it survives a
+ * client crash from then on; a record torn by a power failure fails its checksum and is dropped,
+ * along with anything after it. Every record sets or removes whole objectives, so replaying a record whose
+ * change the snapshot already holds is harmless.
+ *
+ * Compaction writes the current objectives as a new snapshot and starts a new journal holding
+ * only the records appended while the snapshot was written. Each file is written beside its
+ * target and moved over it, so a crash part way through leaves a snapshot and journal that
+ * replay to the same objectives.
+ *
+ * A file whose header is not recognised is moved aside rather than failing to open, so that
+ * changes can still be saved; a record that cannot be decoded is treated like a torn one.
+ */
+@Slf4j
+final class ObjectiveJournal implements Closeable
+{
+	static final int SNAPSHOT_MAGIC = 0x4f424a53; // "OBJS"
+	static final int JOURNAL_MAGIC = 0x4f424a4a; // "OBJJ"
+	static final int VERSION = 1;
+
+	static final String SNAPSHOT_FILE = "objectives.snapshot";
+	static final String JOURNAL_FILE = "objectives.journal";
+
+	/**
+	 * Appended to the name of a file moved aside because its header is not recognised
+	 */
+	static final String CORRUPT_SUFFIX = ".corrupt";
+
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	private static final int HEADER_BYTES = 8;
+
+	/**
+	 * Longer records are taken to be corrupt rather than read
+	 */
+	private static final int MAX_RECORD_BYTES = 1 << 20;
+
+	private final Path directory;
+	private final boolean created;
+	private FileChannel journal;
+	private long journalBytes;
+	private long snapshotBytes;
+
+	private ObjectiveJournal(Path directory, boolean created, FileChannel journal, long journalBytes,
+		long snapshotBytes)
+	{
+		this.directory = directory;
+		this.created = created;
+		this.journal = journal;
+		this.journalBytes = journalBytes;
+		this.snapshotBytes = snapshotBytes;
+	}
+
+	/**
+	 * Open the journal in a directory, creating it if needed, and replay the saved objectives
+	 *
+	 * @param objectives receives the saved objectives, in the order they were first added
+	 */
+	static ObjectiveJournal open(Path directory, Map<String, Objective> objectives) throws IOException
+	{
+		Files.createDirectories(directory);
+		Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+		Path journalFile = directory.resolve(JOURNAL_FILE);
+		boolean created = !Files.exists(snapshotFile) && !Files.exists(journalFile);
+
+		long snapshotBytes = 0;
+		if (Files.exists(snapshotFile))
+		{
+			snapshotBytes = Files.size(snapshotFile);
+			long read;
+			try (InputStream in = Files.newInputStream(snapshotFile))
+			{
+				read = replay(in, SNAPSHOT_MAGIC, objectives);
+			}
+
+			if (read < 0)
+			{
+				// The journal only holds changes made since this snapshot, so it goes with it
+				moveAside(snapshotFile);
+				moveAside(journalFile);
+				snapshotBytes = 0;
+			}
+			else if (read < snapshotBytes)
+			{
+				log.warn("Ignoring {} bytes of corrupt objective snapshot in {}", snapshotBytes - read, directory);
+			}
+		}
+
+		long journalBytes = 0;
+		if (Files.exists(journalFile))
+		{
+			long size = Files.size(journalFile);
+			try (InputStream in = Files.newInputStream(journalFile))
+			{
+				journalBytes = replay(in, JOURNAL_MAGIC, objectives);
+			}
+
+			if (journalBytes < 0)
+			{
+				moveAside(journalFile);
+				journalBytes = 0;
+			}
+			else if (journalBytes < size)
+			{
+				// Left by a crash part way through an append, or a change this version cannot read
+				log.warn("Dropping {} bytes of unreadable objective journal in {}", size - journalBytes, directory);
+			}
+		}
+
+		if (journalBytes < HEADER_BYTES)
+		{
+			move(writeJournal(journalFile, null, 0, 0), journalFile);
+			journalBytes = HEADER_BYTES;
+		}
+
+		// Appends go after the last complete record, over any torn one
+		FileChannel journal = openJournal(journalFile);
+		journal.truncate(journalBytes);
+		journal.position(journalBytes);
+		return new ObjectiveJournal(directory, created, journal, journalBytes, snapshotBytes);
+	}
+
+	/**
+	 * Move a file that cannot be read out of the way, keeping it for recovery by hand
+	 */
+	private static void moveAside(Path file) throws IOException
+	{
+		if (!Files.exists(file))
+		{
+			return;
+		}
+
+		Path aside = file.resolveSibling(file.getFileName() + CORRUPT_SUFFIX);
+		log.warn("Moving unreadable objectives file {} to {}", file, aside);
+		move(file, aside);
+	}
+
+	private static FileChannel openJournal(Path journalFile) throws IOException
+	{
+		// Readable too, so that compaction can copy records from it
+		return FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Whether neither a snapshot nor a journal existed, so nothing was saved
+	 */
+	boolean isCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * Record an objective being added or replaced
+	 */
+	synchronized void put(Objective objective) throws IOException
+	{
+		append(record(PUT, objective, null));
+	}
+
+	/**
+	 * Record an objective being removed
+	 */
+	synchronized void remove(String id) throws IOException
+	{
+		append(record(REMOVE, null, id));
+	}
+
+	/**
+	 * Whether the journal has grown past both the given size and the snapshot, so that
+	 * compacting it costs no more than the appends already made
+	 */
+	synchronized boolean needsCompaction(long minimumBytes)
+	{
+		long appended = journalBytes - HEADER_BYTES;
+		return journal != null && appended > minimumBytes && appended > snapshotBytes;
+	}
+
+	private void append(byte[] record) throws IOException
+	{
+		if (journal == null)
+		{
+			throw new IOException("Objective journal is closed");
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		while (buffer.hasRemaining())
+		{
+			journal.write(buffer);
+		}
+		journalBytes += record.length;
+	}
+
+	/**
+	 * Write the objectives as a new snapshot and start a new journal. Changes can be recorded
+	 * while the snapshot is written; only the switch to the new journal holds them up.
+	 *
+	 * @param objectives the current objectives, read after every change so far has been recorded
+	 */
+	void compact(Supplier<Collection<Objective>> objectives) throws IOException
+	{
+		Collection<Objective> snapshot;
+		long mark;
+		synchronized (this)
+		{
+			if (journal == null)
+			{
+				return;
+			}
+			// Changes are recorded after they are made, so the objectives hold every change before the mark
+			mark = journalBytes;
+			snapshot = objectives.get();
+		}
+
+		Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+		Path snapshotTemp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+		long written = writeSnapshot(snapshotTemp, snapshot);
+
+		synchronized (this)
+		{
+			if (journal == null)
+			{
+				Files.deleteIfExists(snapshotTemp);
+				return;
+			}
+
+			// Until the journal is replaced, replaying it over the new snapshot gives the same objectives
+			move(snapshotTemp, snapshotFile);
+			snapshotBytes = written;
+
+			Path journalFile = directory.resolve(JOURNAL_FILE);
+			Path journalTemp = writeJournal(journalFile, journal, mark, journalBytes);
+			// Closed first, as an open file cannot be replaced on Windows
+			journal.close();
+			try
+			{
+				move(journalTemp, journalFile);
+				journalBytes = HEADER_BYTES + journalBytes - mark;
+			}
+			finally
+			{
+				// The old journal if the move failed, which still replays correctly
+				journal = openJournal(journalFile);
+				journal.position(journalBytes);
+			}
+		}
+		log.debug("Compacted {} objectives in {}", snapshot.size(), directory);
+	}
+
+	private static long writeSnapshot(Path file, Collection<Objective> objectives) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel))))
+		{
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(VERSION);
+			for (Objective objective : objectives)
+			{
+				out.write(record(PUT, objective, null));
+			}
+			out.flush();
+			channel.force(true);
+			return channel.size();
+		}
+	}
+
+	/**
+	 * Write a new journal beside the given one, holding a range of records copied from another
+	 *
+	 * @return the file written
+	 */
+	private static Path writeJournal(Path journalFile, FileChannel from, long start, long end) throws IOException
+	{
+		Path temp = journalFile.resolveSibling(JOURNAL_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(JOURNAL_MAGIC).putInt(VERSION);
+			header.flip();
+			while (header.hasRemaining())
+			{
+				channel.write(header);
+			}
+
+			long position = start;
+			while (position < end)
+			{
+				position += from.transferTo(position, end - position, channel);
+			}
+			channel.force(true);
+		}
+		return temp;
+	}
+
+	private static void move(Path source, Path target) throws IOException
+	{
+		try
+		{
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (journal != null)
+		{
+			journal.close();
+			journal = null;
+		}
+	}
+
+	/**
+	 * Encode a change as a record: its length, the change, and the CRC32 of the change
+	 */
+	private static byte[] record(byte type, Objective objective, String id) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeByte(type);
+		if (type == PUT)
+		{
+			writeObjective(out, objective);
+		}
+		else if (type == REMOVE)
+		{
+			out.writeUTF(id);
+		}
+
+		int length = bytes.size() - 4;
+		CRC32 crc = new CRC32();
+		byte[] record = bytes.toByteArray();
+		crc.update(record, 4, length);
+		out.writeInt((int) crc.getValue());
+
+		record = bytes.toByteArray();
+		ByteBuffer.wrap(record).putInt(0, length);
+		return record;
+	}
+
+	/**
+	 * Apply the records in a snapshot or journal to the objectives, stopping at the first that is
+	 * incomplete, fails its checksum or cannot be decoded
+	 *
+	 * @return the number of bytes read up to the end of the last good record, or -1 if the header
+	 * is not that of a file of this kind and version
+	 */
+	private static long replay(InputStream stream, int magic, Map<String, Objective> objectives) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		try
+		{
+			if (in.readInt() != magic || in.readInt() != VERSION)
+			{
+				return -1;
+			}
+		}
+		catch (EOFException e)
+		{
+			return 0;
+		}
+
+		long position = HEADER_BYTES;
+		CRC32 crc = new CRC32();
+		while (true)
+		{
+			byte[] change;
+			try
+			{
+				int length = in.readInt();
+				if (length <= 0 || length > MAX_RECORD_BYTES)
+				{
+					return position;
+				}
+				change = new byte[length];
+				in.readFully(change);
+				crc.reset();
+				crc.update(change);
+				if (in.readInt() != (int) crc.getValue())
+				{
+					return position;
+				}
+			}
+			catch (EOFException e)
+			{
+				return position;
+			}
+
+			try
+			{
+				apply(change, objectives);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				// Such as a change written by a newer version, which nothing after it can be applied over
+				log.debug("Stopping at objective change that cannot be read", e);
+				return position;
+			}
+			position += 4 + change.length + 4;
+		}
+	}
+
+	private static void apply(byte[] change, Map<String, Objective> objectives) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(change));
+		byte type = in.readByte();
+		switch (type)
+		{
+			case PUT:
+				Objective objective = readObjective(in);
+				if (objective != null)
+				{
+					objectives.put(objective.getId(), objective);
+				}
+				break;
+			case REMOVE:
+				objectives.remove(in.readUTF());
+				break;
+			default:
+				throw new IOException("Unknown objective change " + type);
+		}
+	}
+
+	private static void writeObjective(DataOutputStream out, Objective objective) throws IOException
+	{
+		out.writeUTF(objective.getId());
+		out.writeUTF(objective.getType().name());
+		writeString(out, objective.getTask());
+		writeString(out, objective.getLocationName());
+		writePoint(out, objective.getLocation());
+
+		Collection<WorldPoint> possibleLocations = objective.getPossibleLocations();
+		out.writeInt(possibleLocations != null ? possibleLocations.size() : 0);
+		if (possibleLocations != null)
+		{
+			for (WorldPoint point : possibleLocations)
+			{
+				writePoint(out, point);
+			}
+		}
+
+		out.writeInt(objective.getRegionId());
+		out.writeBoolean(objective.isActive());
+		writeString(out, objective.getItemName());
+		out.writeBoolean(objective.getQuantity() != null);
+		if (objective.getQuantity() != null)
+		{
+			out.writeInt(objective.getQuantity());
+		}
+	}
+
+	private static Objective readObjective(DataInputStream in) throws IOException
+	{
+		String id = in.readUTF();
+		String type = in.readUTF();
+		Objective.ObjectiveBuilder builder = Objective.builder()
+			.id(id)
+			.task(readString(in))
+			.locationName(readString(in))
+			.location(readPoint(in));
+
+		int possibleLocations = in.readInt();
+		for (int i = 0; i < possibleLocations; i++)
+		{
+			builder.possibleLocation(readPoint(in));
+		}
+
+		builder.regionId(in.readInt())
+			.active(in.readBoolean())
+			.itemName(readString(in));
+		if (in.readBoolean())
+		{
+			builder.quantity(in.readInt());
+		}
+
+		try
+		{
+			return builder.type(ObjectiveType.valueOf(type)).build();
+		}
+		catch (IllegalArgumentException e)
+		{
+			log.warn("Skipping saved objective {} of unknown type {}", id, type);
+			return null;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+		{
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writePoint(DataOutputStream out, WorldPoint point) throws IOException
+	{
+		out.writeBoolean(point != null);
+		if (point != null)
+		{
+			out.writeInt(point.getX());
+			out.writeInt(point.getY());
+			out.writeInt(point.getPlane());
+		}
+	}
+
+	private static WorldPoint readPoint(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? new WorldPoint(in.readInt(), in.readInt(), in.readInt()) : null;
+	}
+}
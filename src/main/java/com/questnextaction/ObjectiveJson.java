@@ -0,0 +1,221 @@
+package com.questnextaction;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes saved objectives as JSON:
+ * {@code {"version": 1, "objectives": [{"id": ..., "location": [x, y, plane], ...}, ...]}}
+ */
+@Slf4j
+final class ObjectiveJson
+{
+	static final int VERSION = 1;
+
+	private ObjectiveJson()
+	{
+	}
+
+	/**
+	 * Write objectives, leaving out fields that are not set
+	 */
+	static void write(Collection<Objective> objectives, Writer out) throws IOException
+	{
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject();
+		json.name("version").value(VERSION);
+		json.name("objectives").beginArray();
+		for (Objective objective : objectives)
+		{
+			json.beginObject();
+			json.name("id").value(objective.getId());
+			json.name("type").value(objective.getType().name());
+			writeString(json, "task", objective.getTask());
+			writeString(json, "locationName", objective.getLocationName());
+			if (objective.getLocation() != null)
+			{
+				writePoint(json.name("location"), objective.getLocation());
+			}
+			if (objective.getPossibleLocations() != null && !objective.getPossibleLocations().isEmpty())
+			{
+				json.name("possibleLocations").beginArray();
+				for (WorldPoint point : objective.getPossibleLocations())
+				{
+					writePoint(json, point);
+				}
+				json.endArray();
+			}
+			json.name("regionId").value(objective.getRegionId());
+			json.name("active").value(objective.isActive());
+			writeString(json, "itemName", objective.getItemName());
+			if (objective.getQuantity() != null)
+			{
+				json.name("quantity").value(objective.getQuantity());
+			}
+			json.endObject();
+		}
+		json.endArray();
+		json.endObject();
+		json.flush();
+	}
+
+	private static void writeString(JsonWriter json, String name, String value) throws IOException
+	{
+		if (value != null)
+		{
+			json.name(name).value(value);
+		}
+	}
+
+	private static void writePoint(JsonWriter json, WorldPoint point) throws IOException
+	{
+		json.beginArray().value(point.getX()).value(point.getY()).value(point.getPlane()).endArray();
+	}
+
+	/**
+	 * Read objectives one at a time, passing each to a consumer as soon as it has been read.
+	 * Objectives without an ID or with a type this version does not know are skipped.
+	 *
+	 * @throws IOException if the JSON is malformed or from a newer version
+	 */
+	static void read(Reader in, Consumer<Objective> out) throws IOException
+	{
+		JsonReader json = new JsonReader(in);
+		try
+		{
+			json.beginObject();
+			while (json.hasNext())
+			{
+				switch (json.nextName())
+				{
+					case "version":
+						int version = json.nextInt();
+						if (version > VERSION)
+						{
+							throw new IOException("Unsupported objectives version " + version);
+						}
+						break;
+					case "objectives":
+						json.beginArray();
+						while (json.hasNext())
+						{
+							Objective objective = readObjective(json);
+							if (objective != null)
+							{
+								out.accept(objective);
+							}
+						}
+						json.endArray();
+						break;
+					default:
+						json.skipValue();
+						break;
+				}
+			}
+			json.endObject();
+		}
+		catch (IllegalStateException | NumberFormatException e)
+		{
+			// Thrown by the reader for JSON of the wrong shape
+			throw new IOException("Malformed objectives: " + e.getMessage(), e);
+		}
+	}
+
+	private static Objective readObjective(JsonReader json) throws IOException
+	{
+		Objective.ObjectiveBuilder builder = Objective.builder();
+		String id = null;
+		String type = null;
+
+		json.beginObject();
+		while (json.hasNext())
+		{
+			switch (json.nextName())
+			{
+				case "id":
+					id = json.nextString();
+					builder.id(id);
+					break;
+				case "type":
+					type = json.nextString();
+					break;
+				case "task":
+					builder.task(json.nextString());
+					break;
+				case "locationName":
+					builder.locationName(json.nextString());
+					break;
+				case "location":
+					builder.location(readPoint(json));
+					break;
+				case "possibleLocations":
+					json.beginArray();
+					while (json.hasNext())
+					{
+						builder.possibleLocation(readPoint(json));
+					}
+					json.endArray();
+					break;
+				case "regionId":
+					builder.regionId(json.nextInt());
+					break;
+				case "active":
+					builder.active(json.nextBoolean());
+					break;
+				case "itemName":
+					builder.itemName(json.nextString());
+					break;
+				case "quantity":
+					builder.quantity(json.nextInt());
+					break;
+				default:
+					json.skipValue();
+					break;
+			}
+		}
+		json.endObject();
+
+		ObjectiveType objectiveType = parseType(type);
+		if (id == null || objectiveType == null)
+		{
+			log.warn("Skipping saved objective {} of type {}", id, type);
+			return null;
+		}
+		return builder.type(objectiveType).build();
+	}
+
+	private static ObjectiveType parseType(String type)
+	{
+		try
+		{
+			return type != null ? ObjectiveType.valueOf(type) : null;
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	private static WorldPoint readPoint(JsonReader json) throws IOException
+	{
+		if (json.peek() == JsonToken.NULL)
+		{
+			json.nextNull();
+			return null;
+		}
+
+		json.beginArray();
+		WorldPoint point = new WorldPoint(json.nextInt(), json.nextInt(), json.nextInt());
+		json.endArray();
+		return point;
+	}
+}
@@ -17,14 +17,11 @@ public class ObjectiveListItem extends JPanel
 
 	private final Objective objective;
 	private final ObjectiveManager manager;
-	private final ObjectiveTrackerPanel parentPanel;
 
-	public ObjectiveListItem(Objective objective, ObjectiveManager manager,
-		ObjectiveTrackerPanel parentPanel)
+	public ObjectiveListItem(Objective objective, ObjectiveManager manager)
 	{
 		this.objective = objective;
 		this.manager = manager;
-		this.parentPanel = parentPanel;
 
 		setLayout(new BorderLayout());
 		setBackground(objective.isActive() ? ACTIVE_COLOR : INACTIVE_COLOR);
@@ -73,8 +70,8 @@ public class ObjectiveListItem extends JPanel
 			@Override
 			public void mouseClicked(java.awt.event.MouseEvent e)
 			{
+				// The panel replaces this row when it hears of the change
 				manager.toggleObjective(objective.getId());
-				parentPanel.rebuild();
 			}
 
 			@Override
@@ -94,6 +91,14 @@ public class ObjectiveListItem extends JPanel
 		});
 	}
 
+	/**
+	 * The objective shown, as it was when this row was made
+	 */
+	Objective getObjective()
+	{
+		return objective;
+	}
+
 	private String getTypeBadge(ObjectiveType type)
 	{
 		switch (type)
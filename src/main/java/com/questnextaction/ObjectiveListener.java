@@ -0,0 +1,29 @@
+package com.questnextaction;
+
+/**
+ * Notified of each change to the objectives in an {@link ObjectiveManager}.
+ *
+ * Called on the thread making the change, after it is visible to readers and the manager's lock
+ * has been released. Changes made on one thread are reported in order, but changes made on
+ * different threads at the same time may be reported in either order, so a listener that needs an
+ * objective's latest state should read it from the manager. Listeners should hand off anything
+ * slow, for example to the EDT, the next game tick or a background executor.
+ */
+public interface ObjectiveListener
+{
+	default void onObjectiveAdded(ObjectiveAdded event)
+	{
+	}
+
+	default void onObjectiveRemoved(ObjectiveRemoved event)
+	{
+	}
+
+	default void onObjectiveToggled(ObjectiveToggled event)
+	{
+	}
+
+	default void onObjectiveUpdated(ObjectiveUpdated event)
+	{
+	}
+}
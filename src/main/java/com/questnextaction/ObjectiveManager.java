@@ -5,16 +5,60 @@ import net.runelite.api.coords.WorldPoint;
 
 import javax.inject.Singleton;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
- * Manages objectives for the current player
+ * Manages objectives for the current player.
+ *
+ * The overlays read objectives on the client thread every frame while the panel changes them on
+ * the Swing EDT. Readers never lock: each change copies the map and publishes the copy, so a
+ * reader sees either the whole change or none of it, and iterating never fails.
+ *
+ * Each published copy has a version number and lists its active objectives, so the per-frame
+ * {@link #getActiveObjectives()} just returns that list. Each change is also sent to the
+ * {@link ObjectiveListener}s, so that the panel and world map can update only what changed.
+ * They are called once the change is published and the lock released, so a slow listener does
+ * not hold up changes made on other threads.
  */
 @Slf4j
 @Singleton
 public class ObjectiveManager
 {
-	private final Map<String, Objective> objectives = new HashMap<>();
+	/**
+	 * Replaced rather than changed. Changes are made while synchronized on this manager
+	 */
+	private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+	private final List<ObjectiveListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The objectives as of one change
+	 */
+	private static final class Snapshot
+	{
+		static final Snapshot EMPTY = new Snapshot(0, Collections.emptyMap());
+
+		final long version;
+		final Map<String, Objective> objectives;
+		final List<Objective> active;
+
+		Snapshot(long version, Map<String, Objective> objectives)
+		{
+			this.version = version;
+			this.objectives = Collections.unmodifiableMap(objectives);
+
+			List<Objective> active = new ArrayList<>();
+			for (Objective objective : objectives.values())
+			{
+				if (objective.isActive())
+				{
+					active.add(objective);
+				}
+			}
+			this.active = Collections.unmodifiableList(active);
+		}
+	}
 
 	public ObjectiveManager()
 	{
@@ -22,21 +66,20 @@ public class ObjectiveManager
 	}
 
 	/**
-	 * Get all objectives
+	 * Get all objectives, as they were when called
 	 */
 	public Collection<Objective> getAllObjectives()
 	{
-		return objectives.values();
+		return snapshot.objectives.values();
 	}
 
 	/**
-	 * Get all active objectives
+	 * Get all active objectives. The list is built when objectives change, so this does not allocate,
+	 * and looping over it by index rather than with an iterator does not either
 	 */
 	public List<Objective> getActiveObjectives()
 	{
-		return objectives.values().stream()
-			.filter(Objective::isActive)
-			.collect(Collectors.toList());
+		return snapshot.active;
 	}
 
 	/**
@@ -44,7 +87,31 @@ public class ObjectiveManager
 	 */
 	public Objective getObjective(String id)
 	{
-		return objectives.get(id);
+		return snapshot.objectives.get(id);
+	}
+
+	/**
+	 * Get a number that goes up each time objectives are added, removed or toggled
+	 */
+	public long getVersion()
+	{
+		return snapshot.version;
+	}
+
+	/**
+	 * Start sending changes to a listener
+	 */
+	public void addListener(ObjectiveListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stop sending changes to a listener
+	 */
+	public void removeListener(ObjectiveListener listener)
+	{
+		listeners.remove(listener);
 	}
 
 	/**
@@ -52,9 +119,15 @@ public class ObjectiveManager
 	 */
 	public void toggleObjective(String id)
 	{
-		Objective existing = objectives.get(id);
-		if (existing != null)
+		Objective toggled;
+		synchronized (this)
 		{
+			Objective existing = snapshot.objectives.get(id);
+			if (existing == null)
+			{
+				return;
+			}
+
 			Objective.ObjectiveBuilder builder = Objective.builder()
 				.id(existing.getId())
 				.type(existing.getType())
@@ -75,8 +148,10 @@ public class ObjectiveManager
 				}
 			}
 
-			objectives.put(id, builder.build());
+			toggled = builder.build();
+			put(toggled);
 		}
+		fire(Collections.singletonList(listener -> listener.onObjectiveToggled(new ObjectiveToggled(toggled))));
 	}
 
 	/**
@@ -97,15 +172,46 @@ public class ObjectiveManager
 			.active(false)
 			.build();
 
-		objectives.put(id, objective);
+		addObjective(objective);
 	}
 
 	/**
-	 * Add a new objective (direct)
+	 * Add a new objective (direct), replacing any with the same ID
 	 */
 	public void addObjective(Objective objective)
 	{
-		objectives.put(objective.getId(), objective);
+		addObjectives(Collections.singletonList(objective));
+	}
+
+	/**
+	 * Add objectives, replacing any with the same IDs, as one change
+	 */
+	public void addObjectives(Collection<Objective> added)
+	{
+		if (added.isEmpty())
+		{
+			return;
+		}
+
+		List<Consumer<ObjectiveListener>> events = new ArrayList<>(added.size());
+		synchronized (this)
+		{
+			Map<String, Objective> copy = new LinkedHashMap<>(snapshot.objectives);
+			for (Objective objective : added)
+			{
+				Objective replaced = copy.put(objective.getId(), objective);
+				if (replaced == null)
+				{
+					events.add(listener -> listener.onObjectiveAdded(new ObjectiveAdded(objective)));
+				}
+				else
+				{
+					events.add(listener -> listener.onObjectiveUpdated(new ObjectiveUpdated(replaced, objective)));
+				}
+			}
+			publish(copy);
+		}
+		fire(events);
 	}
 
 	/**
@@ -113,16 +219,92 @@ public class ObjectiveManager
 	 */
 	public void removeObjective(String id)
 	{
-		objectives.remove(id);
+		Objective removed;
+		synchronized (this)
+		{
+			if (!snapshot.objectives.containsKey(id))
+			{
+				return;
+			}
+
+			Map<String, Objective> copy = new LinkedHashMap<>(snapshot.objectives);
+			removed = copy.remove(id);
+			publish(copy);
+		}
+		fire(Collections.singletonList(listener -> listener.onObjectiveRemoved(new ObjectiveRemoved(removed))));
+	}
+
+	/**
+	 * Remove every objective
+	 */
+	public void clearObjectives()
+	{
+		Collection<Objective> removed;
+		synchronized (this)
+		{
+			removed = snapshot.objectives.values();
+			if (removed.isEmpty())
+			{
+				return;
+			}
+			publish(new LinkedHashMap<>());
+		}
+
+		List<Consumer<ObjectiveListener>> events = new ArrayList<>(removed.size());
+		for (Objective objective : removed)
+		{
+			events.add(listener -> listener.onObjectiveRemoved(new ObjectiveRemoved(objective)));
+		}
+		fire(events);
+	}
+
+	/**
+	 * Publish a copy of the objectives with one added or replaced
+	 *
+	 * @return the objective replaced, or null if there was none
+	 */
+	private Objective put(Objective objective)
+	{
+		Map<String, Objective> copy = new LinkedHashMap<>(snapshot.objectives);
+		Objective previous = copy.put(objective.getId(), objective);
+		publish(copy);
+		return previous;
+	}
+
+	private void publish(Map<String, Objective> objectives)
+	{
+		snapshot = new Snapshot(snapshot.version + 1, objectives);
+	}
+
+	/**
+	 * Send the events of a change to the listeners. Must not be called while holding the lock.
+	 */
+	private void fire(List<Consumer<ObjectiveListener>> events)
+	{
+		for (Consumer<ObjectiveListener> event : events)
+		{
+			for (ObjectiveListener listener : listeners)
+			{
+				try
+				{
+					event.accept(listener);
+				}
+				catch (RuntimeException e)
+				{
+					// The change has been made, so one broken listener should not undo it for the caller
+					log.warn("Objective listener failed", e);
+				}
+			}
+		}
 	}
 
 	/**
 	 * Load sample objectives for testing
 	 */
-	private void loadSampleObjectives()
+	private synchronized void loadSampleObjectives()
 	{
 		// Cook's Assistant - Talk to Cook
-		objectives.put("cooks_assistant_1", Objective.builder()
+		put(Objective.builder()
 			.id("cooks_assistant_1")
 			.type(ObjectiveType.TALK)
 			.task("Talk to Cook")
@@ -133,7 +315,7 @@ public class ObjectiveManager
 			.build());
 
 		// Collect items example
-		objectives.put("collect_wool", Objective.builder()
+		put(Objective.builder()
 			.id("collect_wool")
 			.type(ObjectiveType.COLLECT)
 			.task("Collect 20 wool")
@@ -144,7 +326,7 @@ public class ObjectiveManager
 			.build());
 
 		// Travel example
-		objectives.put("go_to_varrock", Objective.builder()
+		put(Objective.builder()
 			.id("go_to_varrock")
 			.type(ObjectiveType.TRAVEL)
 			.task("Visit Varrock Square")
@@ -154,6 +336,6 @@ public class ObjectiveManager
 			.active(false)
 			.build());
 
-		log.debug("Loaded {} objectives", objectives.size());
+		log.debug("Loaded {} objectives", snapshot.objectives.size());
 	}
 }
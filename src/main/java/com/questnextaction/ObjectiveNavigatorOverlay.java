@@ -11,6 +11,7 @@ import net.runelite.client.ui.overlay.components.TitleComponent;
 
 import javax.inject.Inject;
 import java.awt.*;
+import java.util.List;
 
 /**
  * Navigator overlay that displays the closest objective with distance and direction
@@ -55,8 +56,10 @@ public class ObjectiveNavigatorOverlay extends OverlayPanel
 		Objective closestObjective = null;
 		double closestDistance = Double.MAX_VALUE;
 
-		for (Objective objective : objectiveManager.getActiveObjectives())
+		List<Objective> activeObjectives = objectiveManager.getActiveObjectives();
+		for (int i = 0; i < activeObjectives.size(); i++)
 		{
+			Objective objective = activeObjectives.get(i);
 			if (objective.getLocation() == null)
 			{
 				continue;
@@ -0,0 +1,15 @@
+package com.questnextaction;
+
+import lombok.Value;
+
+/**
+ * An objective was removed
+ */
+@Value
+public class ObjectiveRemoved
+{
+	/**
+	 * The objective as it was before it was removed
+	 */
+	Objective objective;
+}
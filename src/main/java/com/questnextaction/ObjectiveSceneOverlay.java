@@ -8,6 +8,7 @@ import net.runelite.client.ui.overlay.*;
 
 import javax.inject.Inject;
 import java.awt.*;
+import java.util.List;
 
 /**
  * Scene overlay for objective tile markers
@@ -40,8 +41,10 @@ public class ObjectiveSceneOverlay extends Overlay
 
 		WorldPoint playerLocation = client.getLocalPlayer().getWorldLocation();
 
-		for (Objective objective : objectiveManager.getActiveObjectives())
+		List<Objective> activeObjectives = objectiveManager.getActiveObjectives();
+		for (int i = 0; i < activeObjectives.size(); i++)
 		{
+			Objective objective = activeObjectives.get(i);
 			// Get the best location based on player's position
 			// For multi-location objectives, this returns the closest shop
 			WorldPoint objectiveLocation = objective.getBestLocation(playerLocation);
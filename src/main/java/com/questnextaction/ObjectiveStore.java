@@ -0,0 +1,491 @@
+package com.questnextaction;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+import net.runelite.client.config.ConfigManager;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Saves the objectives of each RuneScape profile in a journal in the RuneLite directory, and
+ * loads them at login.
+ *
+ * Changes are appended to the journal on the executor, so the thread making them, usually the
+ * EDT, does no disk I/O. Each append writes an objective's state when it runs, so several changes
+ * to one objective before it runs are saved as one record, and a client crash loses at most the
+ * changes not yet written. Once the journal has grown large enough it is compacted on the
+ * executor, which is also where the objectives are loaded. Switching profile or stopping writes
+ * what is left on the calling thread.
+ */
+@Slf4j
+@Singleton
+public class ObjectiveStore implements ObjectiveListener
+{
+	static final String CONFIG_KEY = "objectives";
+
+	static final String DIRECTORY = "objective-tracker";
+
+	/**
+	 * The journal is compacted once the changes appended to it pass this size, and the snapshot's
+	 */
+	static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+	/**
+	 * Objectives read from the journal are added to the manager in batches of this many
+	 */
+	private static final int LOAD_BATCH_SIZE = 256;
+
+	/**
+	 * Where objectives were saved before the journal, as JSON in the profile's config
+	 */
+	interface LegacyStorage
+	{
+		@Nullable
+		String read(String profile);
+
+		void remove(String profile);
+	}
+
+	private final ObjectiveManager manager;
+	private final Path directory;
+	private final LegacyStorage legacyStorage;
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Held while writing to or closing the journal, and taken before this store's lock
+	 */
+	private final Object writeLock = new Object();
+
+	/**
+	 * IDs of the objectives changed since they were last written to the journal
+	 */
+	private final Set<String> unsaved = new LinkedHashSet<>();
+
+	private boolean flushScheduled;
+
+	/**
+	 * The profile objectives are saved to, or null before login
+	 */
+	private String profile;
+
+	/**
+	 * The profile's journal, or null until it has been loaded
+	 */
+	private ObjectiveJournal journal;
+
+	/**
+	 * Set while the profile's objectives are read, when the manager holds only some of them
+	 */
+	private boolean loading;
+
+	/**
+	 * Set when objectives change while loading, to be saved once loading has finished
+	 */
+	private boolean dirty;
+
+	private boolean compacting;
+
+	/**
+	 * The thread adding loaded objectives to the manager, whose changes need no saving
+	 */
+	private volatile Thread loadingThread;
+
+	@Inject
+	public ObjectiveStore(ObjectiveManager manager, ConfigManager configManager, ScheduledExecutorService executor)
+	{
+		this(manager, RuneLite.RUNELITE_DIR.toPath().resolve(DIRECTORY), new LegacyStorage()
+		{
+			@Override
+			public String read(String profile)
+			{
+				return configManager.getConfiguration(ObjectiveTrackerConfig.GROUP, profile, CONFIG_KEY);
+			}
+
+			@Override
+			public void remove(String profile)
+			{
+				configManager.unsetConfiguration(ObjectiveTrackerConfig.GROUP, profile, CONFIG_KEY);
+			}
+		}, executor);
+	}
+
+	ObjectiveStore(ObjectiveManager manager, Path directory, LegacyStorage legacyStorage,
+		ScheduledExecutorService executor)
+	{
+		this.manager = manager;
+		this.directory = directory;
+		this.legacyStorage = legacyStorage;
+		this.executor = executor;
+	}
+
+	/**
+	 * Start saving changes to objectives
+	 */
+	public void start()
+	{
+		manager.addListener(this);
+	}
+
+	/**
+	 * Stop saving changes. Everything already changed has been saved.
+	 */
+	public void stop()
+	{
+		manager.removeListener(this);
+		synchronized (writeLock)
+		{
+			ObjectiveJournal closing;
+			List<String> ids;
+			synchronized (this)
+			{
+				closing = journal;
+				ids = takeUnsaved();
+				journal = null;
+				profile = null;
+			}
+			write(closing, ids);
+			close(closing);
+		}
+	}
+
+	/**
+	 * Switch to a profile, saving what changed for the previous one and closing its journal, then
+	 * load the objectives saved for this one in the background. Does nothing if the profile is
+	 * current.
+	 */
+	public void load(@Nullable String newProfile)
+	{
+		synchronized (writeLock)
+		{
+			ObjectiveJournal closing;
+			List<String> ids;
+			boolean firstProfile;
+			synchronized (this)
+			{
+				if (newProfile == null || newProfile.equals(profile))
+				{
+					return;
+				}
+
+				closing = journal;
+				ids = takeUnsaved();
+				journal = null;
+				firstProfile = profile == null;
+				profile = newProfile;
+				loading = true;
+				dirty = false;
+			}
+
+			// The manager holds the previous profile's objectives until the read below replaces them
+			write(closing, ids);
+			close(closing);
+			executor.execute(() -> read(newProfile, firstProfile));
+		}
+	}
+
+	/**
+	 * The directory holding a profile's journal, named from the profile key with anything
+	 * that may not be allowed in a file name replaced
+	 */
+	Path profileDirectory(String profileKey)
+	{
+		return directory.resolve(profileKey.replaceAll("[^A-Za-z0-9._-]", "_"));
+	}
+
+	private void read(String loadProfile, boolean firstProfile)
+	{
+		// The manager is changed without holding this store's lock, which its listeners take
+		loadingThread = Thread.currentThread();
+		ObjectiveJournal loaded = null;
+		boolean keepSamples = false;
+		try
+		{
+			Map<String, Objective> objectives = new LinkedHashMap<>();
+			loaded = ObjectiveJournal.open(profileDirectory(loadProfile), objectives);
+			if (loaded.isCreated())
+			{
+				migrate(loadProfile, loaded, objectives);
+			}
+			if (!isProfile(loadProfile))
+			{
+				// Switched again before this load started
+				return;
+			}
+
+			// Nothing saved keeps the sample objectives on first login, but another
+			// account's objectives should not carry over to this one
+			keepSamples = firstProfile && loaded.isCreated() && objectives.isEmpty();
+			if (!keepSamples)
+			{
+				manager.clearObjectives();
+			}
+
+			List<Objective> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+			for (Objective objective : objectives.values())
+			{
+				batch.add(objective);
+				if (batch.size() == LOAD_BATCH_SIZE)
+				{
+					if (!isProfile(loadProfile))
+					{
+						return;
+					}
+					manager.addObjectives(batch);
+					batch.clear();
+				}
+			}
+			if (isProfile(loadProfile))
+			{
+				manager.addObjectives(batch);
+			}
+			log.debug("Loaded {} objectives for {}", objectives.size(), loadProfile);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Failed to load objectives for {}", loadProfile, e);
+		}
+		finally
+		{
+			loadingThread = null;
+			synchronized (this)
+			{
+				if (loadProfile.equals(profile))
+				{
+					journal = loaded;
+					loading = false;
+					if (journal != null && keepSamples)
+					{
+						// Saved now, as the next login has saved objectives and so does not keep them
+						manager.getAllObjectives().forEach(objective -> unsaved.add(objective.getId()));
+						scheduleFlush();
+					}
+					if (journal != null && dirty)
+					{
+						// Save what changed while loading as the whole of the objectives
+						compact();
+					}
+					dirty = false;
+				}
+				else
+				{
+					close(loaded);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Move objectives saved in the profile's config into its new journal
+	 */
+	private void migrate(String loadProfile, ObjectiveJournal loaded, Map<String, Objective> objectives)
+		throws IOException
+	{
+		String json = legacyStorage.read(loadProfile);
+		if (json == null)
+		{
+			return;
+		}
+
+		ObjectiveJson.read(new StringReader(json), objective -> objectives.put(objective.getId(), objective));
+		loaded.compact(() -> new ArrayList<>(objectives.values()));
+		legacyStorage.remove(loadProfile);
+		log.debug("Moved {} saved objectives for {} to the journal", objectives.size(), loadProfile);
+	}
+
+	private synchronized boolean isProfile(String checkProfile)
+	{
+		return checkProfile.equals(profile);
+	}
+
+	/**
+	 * Whether a change made on this thread should be appended to the journal
+	 */
+	private boolean recording()
+	{
+		if (profile == null || Thread.currentThread() == loadingThread)
+		{
+			// Before login there is no profile to save to, and loaded objectives are already saved
+			return false;
+		}
+
+		if (loading)
+		{
+			dirty = true;
+			return false;
+		}
+		return journal != null;
+	}
+
+	/**
+	 * Note that an objective changed, to be written to the journal on the executor
+	 */
+	private synchronized void changed(String id)
+	{
+		if (recording())
+		{
+			unsaved.add(id);
+			scheduleFlush();
+		}
+	}
+
+	private void scheduleFlush()
+	{
+		if (!flushScheduled)
+		{
+			flushScheduled = true;
+			executor.execute(this::flush);
+		}
+	}
+
+	private List<String> takeUnsaved()
+	{
+		List<String> ids = new ArrayList<>(unsaved);
+		unsaved.clear();
+		return ids;
+	}
+
+	/**
+	 * Write the objectives changed so far to the journal
+	 */
+	private void flush()
+	{
+		synchronized (writeLock)
+		{
+			ObjectiveJournal flushJournal;
+			List<String> ids;
+			synchronized (this)
+			{
+				flushScheduled = false;
+				flushJournal = journal;
+				ids = takeUnsaved();
+			}
+
+			write(flushJournal, ids);
+
+			synchronized (this)
+			{
+				if (flushJournal != null && flushJournal == journal)
+				{
+					compactIfNeeded();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the current state of each objective to a journal, or its removal if it is gone
+	 */
+	private void write(@Nullable ObjectiveJournal writeJournal, List<String> ids)
+	{
+		if (writeJournal == null)
+		{
+			return;
+		}
+
+		for (String id : ids)
+		{
+			Objective objective = manager.getObjective(id);
+			try
+			{
+				if (objective != null)
+				{
+					writeJournal.put(objective);
+				}
+				else
+				{
+					writeJournal.remove(id);
+				}
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to save objective {}", id, e);
+			}
+		}
+	}
+
+	private void compactIfNeeded()
+	{
+		if (!compacting && journal.needsCompaction(COMPACT_MIN_BYTES))
+		{
+			compact();
+		}
+	}
+
+	private void compact()
+	{
+		ObjectiveJournal compactJournal = journal;
+		compacting = true;
+		executor.execute(() ->
+		{
+			try
+			{
+				// Does nothing once the journal has been closed for another profile
+				compactJournal.compact(manager::getAllObjectives);
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to compact saved objectives", e);
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					compacting = false;
+				}
+			}
+		});
+	}
+
+	private static void close(@Nullable ObjectiveJournal closeJournal)
+	{
+		if (closeJournal == null)
+		{
+			return;
+		}
+
+		try
+		{
+			closeJournal.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to close saved objectives", e);
+		}
+	}
+
+	@Override
+	public void onObjectiveAdded(ObjectiveAdded event)
+	{
+		changed(event.getObjective().getId());
+	}
+
+	@Override
+	public void onObjectiveRemoved(ObjectiveRemoved event)
+	{
+		changed(event.getObjective().getId());
+	}
+
+	@Override
+	public void onObjectiveToggled(ObjectiveToggled event)
+	{
+		changed(event.getObjective().getId());
+	}
+
+	@Override
+	public void onObjectiveUpdated(ObjectiveUpdated event)
+	{
+		changed(event.getObjective().getId());
+	}
+}
@@ -0,0 +1,15 @@
+package com.questnextaction;
+
+import lombok.Value;
+
+/**
+ * An objective started or stopped being tracked
+ */
+@Value
+public class ObjectiveToggled
+{
+	/**
+	 * The objective with its new active state
+	 */
+	Objective objective;
+}
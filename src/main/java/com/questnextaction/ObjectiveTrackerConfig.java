@@ -6,9 +6,11 @@ import net.runelite.client.config.ConfigItem;
 
 import java.awt.Color;
 
-@ConfigGroup("objectivetracker")
+@ConfigGroup(ObjectiveTrackerConfig.GROUP)
 public interface ObjectiveTrackerConfig extends Config
 {
+	String GROUP = "objectivetracker";
+
 	@ConfigItem(
 		keyName = "showWorldMapIcon",
 		name = "Show World Map Icons",
@@ -78,4 +80,14 @@ public interface ObjectiveTrackerConfig extends Config
 	{
 		return 8;
 	}
+
+	@ConfigItem(
+		keyName = "shopDataFile",
+		name = "Shop Data File",
+		description = "Shops file in the RuneLite folder that adds to or corrects the built-in shop data; reloaded when edited"
+	)
+	default String shopDataFile()
+	{
+		return "";
+	}
 }
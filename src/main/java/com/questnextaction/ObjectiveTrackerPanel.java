@@ -10,10 +10,12 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
-public class ObjectiveTrackerPanel extends PluginPanel
+public class ObjectiveTrackerPanel extends PluginPanel implements ObjectiveListener
 {
 	private final ObjectiveManager objectiveManager;
 	private final ObjectiveTrackerConfig config;
@@ -21,6 +23,13 @@ public class ObjectiveTrackerPanel extends PluginPanel
 
 	private final JPanel objectiveListPanel = new JPanel();
 	private final PluginErrorPanel noObjectivesPanel = new PluginErrorPanel();
+	private final JButton addButton = new JButton("+");
+	private final JLabel loadingLabel = new JLabel("Loading shop data...");
+
+	/**
+	 * The row showing each objective. Only used on the EDT
+	 */
+	private final Map<String, ObjectiveListItem> items = new HashMap<>();
 
 	private JFrame parentFrame;
 
@@ -44,13 +53,19 @@ public class ObjectiveTrackerPanel extends PluginPanel
 		northPanel.add(title, BorderLayout.CENTER);
 
 		// Add objective button
-		JButton addButton = new JButton("+");
-		addButton.setToolTipText("Add new objective");
 		addButton.setPreferredSize(new Dimension(30, 20));
 		addButton.setFont(new Font("Arial", Font.BOLD, 12));
 		addButton.addActionListener(e -> openAddObjectiveDialog());
 		northPanel.add(addButton, BorderLayout.EAST);
 
+		// Shown until the shop database has finished loading in the background
+		loadingLabel.setForeground(Color.LIGHT_GRAY);
+		loadingLabel.setFont(loadingLabel.getFont().deriveFont(Font.ITALIC, 10f));
+		northPanel.add(loadingLabel, BorderLayout.SOUTH);
+
+		updateLoadingState();
+		shopDatabase.getReadyFuture().thenRun(() -> SwingUtilities.invokeLater(this::updateLoadingState));
+
 		add(northPanel, BorderLayout.NORTH);
 
 		objectiveListPanel.setLayout(new BoxLayout(objectiveListPanel, BoxLayout.Y_AXIS));
@@ -72,6 +87,14 @@ public class ObjectiveTrackerPanel extends PluginPanel
 		rebuild();
 	}
 
+	private void updateLoadingState()
+	{
+		boolean ready = shopDatabase.isReady();
+		addButton.setEnabled(ready);
+		addButton.setToolTipText(ready ? "Add new objective" : "Loading shop data...");
+		loadingLabel.setVisible(!ready);
+	}
+
 	private void openAddObjectiveDialog()
 	{
 		// Get the parent frame if we don't have it yet
@@ -85,7 +108,7 @@ public class ObjectiveTrackerPanel extends PluginPanel
 			parentFrame = (JFrame) component;
 		}
 
-		AddObjectiveDialog dialog = new AddObjectiveDialog(parentFrame, objectiveManager, this, shopDatabase);
+		AddObjectiveDialog dialog = new AddObjectiveDialog(parentFrame, objectiveManager, shopDatabase);
 		dialog.setVisible(true);
 	}
 
@@ -94,27 +117,89 @@ public class ObjectiveTrackerPanel extends PluginPanel
 		SwingUtilities.invokeLater(() ->
 		{
 			objectiveListPanel.removeAll();
+			items.clear();
 
 			List<Objective> allObjectives = new ArrayList<>(objectiveManager.getAllObjectives());
 			allObjectives.sort((a, b) -> a.getTask().compareTo(b.getTask()));
 
-			if (allObjectives.isEmpty())
+			for (Objective objective : allObjectives)
 			{
-				noObjectivesPanel.setVisible(true);
+				addRow(objective, objectiveListPanel.getComponentCount());
 			}
-			else
+
+			updateList();
+		});
+	}
+
+	@Override
+	public void onObjectiveAdded(ObjectiveAdded event)
+	{
+		refresh(event.getObjective().getId());
+	}
+
+	@Override
+	public void onObjectiveRemoved(ObjectiveRemoved event)
+	{
+		refresh(event.getObjective().getId());
+	}
+
+	@Override
+	public void onObjectiveToggled(ObjectiveToggled event)
+	{
+		refresh(event.getObjective().getId());
+	}
+
+	@Override
+	public void onObjectiveUpdated(ObjectiveUpdated event)
+	{
+		refresh(event.getObjective().getId());
+	}
+
+	/**
+	 * Replace the row of one objective with its current state, leaving the other rows alone
+	 */
+	private void refresh(String id)
+	{
+		SwingUtilities.invokeLater(() ->
+		{
+			ObjectiveListItem item = items.remove(id);
+			if (item != null)
 			{
-				noObjectivesPanel.setVisible(false);
+				// Each row is followed by its spacer
+				int index = objectiveListPanel.getComponentZOrder(item);
+				objectiveListPanel.remove(index + 1);
+				objectiveListPanel.remove(index);
+			}
 
-				for (Objective objective : allObjectives)
+			Objective objective = objectiveManager.getObjective(id);
+			if (objective != null)
+			{
+				Component[] rows = objectiveListPanel.getComponents();
+				int index = 0;
+				while (index < rows.length
+					&& ((ObjectiveListItem) rows[index]).getObjective().getTask().compareTo(objective.getTask()) <= 0)
 				{
-					objectiveListPanel.add(new ObjectiveListItem(objective, objectiveManager, this));
-					objectiveListPanel.add(Box.createRigidArea(new Dimension(0, 2)));
+					index += 2;
 				}
+				addRow(objective, index);
 			}
 
-			objectiveListPanel.revalidate();
-			objectiveListPanel.repaint();
+			updateList();
 		});
 	}
+
+	private void addRow(Objective objective, int index)
+	{
+		ObjectiveListItem item = new ObjectiveListItem(objective, objectiveManager);
+		objectiveListPanel.add(item, index);
+		objectiveListPanel.add(Box.createRigidArea(new Dimension(0, 2)), index + 1);
+		items.put(objective.getId(), item);
+	}
+
+	private void updateList()
+	{
+		noObjectivesPanel.setVisible(items.isEmpty());
+		objectiveListPanel.revalidate();
+		objectiveListPanel.repaint();
+	}
 }
@@ -7,8 +7,11 @@ import net.runelite.api.Client;
 import net.runelite.api.coords.WorldPoint;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
+import net.runelite.client.RuneLite;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.events.RuneScapeProfileChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
@@ -19,10 +22,15 @@ import net.runelite.client.util.ImageUtil;
 
 import javax.inject.Inject;
 import java.awt.image.BufferedImage;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @PluginDescriptor(
@@ -50,6 +58,12 @@ public class ObjectiveTrackerPlugin extends Plugin
 	@Inject
 	private ObjectiveManager objectiveManager;
 
+	@Inject
+	private ObjectiveStore objectiveStore;
+
+	@Inject
+	private ConfigManager configManager;
+
 	@Inject
 	private ShopDatabase shopDatabase;
 
@@ -71,6 +85,38 @@ public class ObjectiveTrackerPlugin extends Plugin
 	private final Map<String, List<ObjectiveWorldMapPoint>> worldMapPoints = new HashMap<>();
 	private BufferedImage mapIcon;
 
+	/**
+	 * Objectives whose world map points may be out of date, updated on the next game tick
+	 */
+	private final Set<String> changedObjectives = ConcurrentHashMap.newKeySet();
+
+	private final ObjectiveListener objectiveListener = new ObjectiveListener()
+	{
+		@Override
+		public void onObjectiveAdded(ObjectiveAdded event)
+		{
+			changedObjectives.add(event.getObjective().getId());
+		}
+
+		@Override
+		public void onObjectiveRemoved(ObjectiveRemoved event)
+		{
+			changedObjectives.add(event.getObjective().getId());
+		}
+
+		@Override
+		public void onObjectiveToggled(ObjectiveToggled event)
+		{
+			changedObjectives.add(event.getObjective().getId());
+		}
+
+		@Override
+		public void onObjectiveUpdated(ObjectiveUpdated event)
+		{
+			changedObjectives.add(event.getObjective().getId());
+		}
+	};
+
 	@Override
 	protected void startUp() throws Exception
 	{
@@ -81,6 +127,12 @@ public class ObjectiveTrackerPlugin extends Plugin
 
 		// Initialize panel
 		panel = new ObjectiveTrackerPanel(objectiveManager, config, shopDatabase);
+		objectiveManager.addListener(panel);
+		objectiveManager.addListener(objectiveListener);
+
+		// Load the saved objectives now if already logged in, otherwise at login
+		objectiveStore.start();
+		objectiveStore.load(configManager.getRSProfileKey());
 
 		// Create navigation button
 		navigationButton = NavigationButton.builder()
@@ -102,7 +154,10 @@ public class ObjectiveTrackerPlugin extends Plugin
 		worldMapOverlay.setMapIcon(mapIcon);
 
 		// Initialize world map points (keeping for fallback)
+		markAllObjectivesChanged();
 		updateWorldMapPoints();
+
+		updateShopDataFile();
 	}
 
 	/**
@@ -140,6 +195,9 @@ public class ObjectiveTrackerPlugin extends Plugin
 		log.info("Objective Tracker plugin stopped!");
 
 		// Remove UI
+		objectiveStore.stop();
+		objectiveManager.removeListener(panel);
+		objectiveManager.removeListener(objectiveListener);
 		clientToolbar.removeNavigation(navigationButton);
 
 		// Remove overlays
@@ -150,6 +208,8 @@ public class ObjectiveTrackerPlugin extends Plugin
 
 		// Clear world map points
 		clearWorldMapPoints();
+
+		shopDatabase.stopWatchingShopFile();
 	}
 
 	@Subscribe
@@ -162,13 +222,91 @@ public class ObjectiveTrackerPlugin extends Plugin
 		}
 	}
 
+	@Subscribe
+	public void onRuneScapeProfileChanged(RuneScapeProfileChanged event)
+	{
+		objectiveStore.load(configManager.getRSProfileKey());
+	}
+
+	@Subscribe
+	public void onConfigChanged(ConfigChanged event)
+	{
+		if (ObjectiveTrackerConfig.GROUP.equals(event.getGroup()) && "shopDataFile".equals(event.getKey()))
+		{
+			updateShopDataFile();
+		}
+		else if (ObjectiveTrackerConfig.GROUP.equals(event.getGroup()) && "showWorldMapIcon".equals(event.getKey()))
+		{
+			// The points were cleared while hidden, so all of them need adding back
+			markAllObjectivesChanged();
+		}
+	}
+
+	/**
+	 * Watch the user's shop data file, if one is configured. The file must be in the RuneLite folder.
+	 */
+	private void updateShopDataFile()
+	{
+		String shopDataFile = config.shopDataFile().trim();
+		Path file = shopDataFile.isEmpty() ? null : resolveShopDataFile(shopDataFile);
+		if (file == null)
+		{
+			shopDatabase.stopWatchingShopFile();
+		}
+		else
+		{
+			shopDatabase.watchShopFile(file);
+		}
+	}
+
+	/**
+	 * Resolve a configured shop data file against the RuneLite folder, or return null if it
+	 * names a file outside of it
+	 */
+	private static Path resolveShopDataFile(String shopDataFile)
+	{
+		Path runeLiteDir = RuneLite.RUNELITE_DIR.toPath().toAbsolutePath().normalize();
+		try
+		{
+			Path file = runeLiteDir.resolve(shopDataFile).normalize();
+			if (file.startsWith(runeLiteDir))
+			{
+				return file;
+			}
+		}
+		catch (InvalidPathException e)
+		{
+			// Reported below
+		}
+
+		log.warn("Ignoring shop data file {}, which is not in the RuneLite folder", shopDataFile);
+		return null;
+	}
+
 	@Subscribe
 	public void onGameTick(GameTick event)
 	{
-		// Periodically update world map points
+		// Keep the shops around the player loaded
+		if (client.getLocalPlayer() != null)
+		{
+			shopDatabase.setPlayerRegion(client.getLocalPlayer().getWorldLocation().getRegionID());
+		}
+
+		// Update the world map points of objectives that changed
 		updateWorldMapPoints();
 	}
 
+	private void markAllObjectivesChanged()
+	{
+		for (Objective objective : objectiveManager.getAllObjectives())
+		{
+			changedObjectives.add(objective.getId());
+		}
+	}
+
+	/**
+	 * Update the world map points of the objectives changed since the last update
+	 */
 	private void updateWorldMapPoints()
 	{
 		if (!config.showWorldMapIcon())
@@ -177,65 +315,66 @@ public class ObjectiveTrackerPlugin extends Plugin
 			return;
 		}
 
-		// Get active objectives
-		List<Objective> activeObjectives = objectiveManager.getActiveObjectives();
+		for (Iterator<String> it = changedObjectives.iterator(); it.hasNext(); )
+		{
+			String id = it.next();
+			it.remove();
+			updateWorldMapPoints(id);
+		}
+	}
 
-		// Remove points that are no longer active
-		worldMapPoints.entrySet().removeIf(entry -> {
-			Objective objective = objectiveManager.getObjective(entry.getKey());
-			if (objective == null || !objective.isActive())
+	private void updateWorldMapPoints(String id)
+	{
+		List<ObjectiveWorldMapPoint> previous = worldMapPoints.remove(id);
+		if (previous != null)
+		{
+			for (ObjectiveWorldMapPoint point : previous)
 			{
-				for (ObjectiveWorldMapPoint point : entry.getValue())
-				{
-					worldMapPointManager.remove(point);
-				}
-				return true;
+				worldMapPointManager.remove(point);
 			}
-			return false;
-		});
+		}
 
-		// Add new active points
-		for (Objective objective : activeObjectives)
+		Objective objective = objectiveManager.getObjective(id);
+		if (objective == null || !objective.isActive())
 		{
-			if (objective.getLocation() == null &&
-				(objective.getPossibleLocations() == null || objective.getPossibleLocations().isEmpty()))
-			{
-				continue;
-			}
+			return;
+		}
 
-			if (!worldMapPoints.containsKey(objective.getId()))
-			{
-				List<ObjectiveWorldMapPoint> points = new ArrayList<>();
+		if (objective.getLocation() == null &&
+			(objective.getPossibleLocations() == null || objective.getPossibleLocations().isEmpty()))
+		{
+			return;
+		}
 
-				// For objectives with multiple possible locations, show all shops on the map
-				if (objective.getPossibleLocations() != null && !objective.getPossibleLocations().isEmpty())
-				{
-					for (WorldPoint location : objective.getPossibleLocations())
-					{
-						if (location != null)
-						{
-							ObjectiveWorldMapPoint point = new ObjectiveWorldMapPoint(
-								objective, location, mapIcon);
-							points.add(point);
-							worldMapPointManager.add(point);
-						}
-					}
-				}
-				else if (objective.getLocation() != null)
+		List<ObjectiveWorldMapPoint> points = new ArrayList<>();
+
+		// For objectives with multiple possible locations, show all shops on the map
+		if (objective.getPossibleLocations() != null && !objective.getPossibleLocations().isEmpty())
+		{
+			for (WorldPoint location : objective.getPossibleLocations())
+			{
+				if (location != null)
 				{
-					// Single location objective
 					ObjectiveWorldMapPoint point = new ObjectiveWorldMapPoint(
-						objective, objective.getLocation(), mapIcon);
+						objective, location, mapIcon);
 					points.add(point);
 					worldMapPointManager.add(point);
 				}
-
-				if (!points.isEmpty())
-				{
-					worldMapPoints.put(objective.getId(), points);
-				}
 			}
 		}
+		else if (objective.getLocation() != null)
+		{
+			// Single location objective
+			ObjectiveWorldMapPoint point = new ObjectiveWorldMapPoint(
+				objective, objective.getLocation(), mapIcon);
+			points.add(point);
+			worldMapPointManager.add(point);
+		}
+
+		if (!points.isEmpty())
+		{
+			worldMapPoints.put(objective.getId(), points);
+		}
 	}
 
 	private void clearWorldMapPoints()
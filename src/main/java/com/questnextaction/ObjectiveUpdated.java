@@ -0,0 +1,13 @@
+package com.questnextaction;
+
+import lombok.Value;
+
+/**
+ * An objective was replaced by one with the same ID
+ */
+@Value
+public class ObjectiveUpdated
+{
+	Objective previous;
+	Objective objective;
+}
@@ -12,6 +12,7 @@ import net.runelite.client.ui.overlay.worldmap.WorldMapPointManager;
 import javax.inject.Inject;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * Custom world map overlay to render objective icons on top of everything
@@ -57,8 +58,10 @@ public class ObjectiveWorldMapOverlay extends Overlay
 			return null;
 		}
 
-		for (Objective objective : objectiveManager.getActiveObjectives())
+		List<Objective> activeObjectives = objectiveManager.getActiveObjectives();
+		for (int i = 0; i < activeObjectives.size(); i++)
 		{
+			Objective objective = activeObjectives.get(i);
 			if (objective.getLocation() == null)
 			{
 				continue;
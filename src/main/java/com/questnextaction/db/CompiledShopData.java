@@ -0,0 +1,408 @@
+package com.questnextaction.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+/**
+ * Precompiled binary snapshot of shops.json.
+ *
+ * The snapshot is produced at build time by {@link #main(String[])} and holds a string table,
+ * an item table, a shop table and the prebuilt item to shop index, so loading it is a single
+ * bulk read with no JSON parsing or string lowercasing. The checksum of the source JSON is
+ * stored in the header so a snapshot that no longer matches shops.json is ignored. The bundled
+ * JSON is checksummed once per load to compare against, as anything written by the same build
+ * step as the snapshot would always match it.
+ */
+@Slf4j
+public final class CompiledShopData
+{
+	static final int MAGIC = 0x51534850; // "QSHP"
+	static final int VERSION = 1;
+
+	/**
+	 * Checksum reported when the source JSON is not available to compare against
+	 */
+	static final long NO_SOURCE = -1;
+
+	private static final int NO_STRING = -1;
+
+	private final long sourceChecksum;
+	private final ItemCatalog catalog;
+	private final List<Shop> shops;
+	private final Map<String, List<Shop>> itemIndex;
+
+	private CompiledShopData(long sourceChecksum, ItemCatalog catalog, List<Shop> shops,
+		Map<String, List<Shop>> itemIndex)
+	{
+		this.sourceChecksum = sourceChecksum;
+		this.catalog = catalog;
+		this.shops = shops;
+		this.itemIndex = itemIndex;
+	}
+
+	/**
+	 * Catalog holding the items shared by the shops
+	 */
+	ItemCatalog getCatalog()
+	{
+		return catalog;
+	}
+
+	/**
+	 * Shops in the order they appear in the source JSON
+	 */
+	List<Shop> getShops()
+	{
+		return shops;
+	}
+
+	/**
+	 * Lowercased item name to the shops selling it
+	 */
+	Map<String, List<Shop>> getItemIndex()
+	{
+		return itemIndex;
+	}
+
+	/**
+	 * Whether this snapshot was compiled from source data with the given checksum
+	 */
+	boolean matchesSource(long checksum)
+	{
+		return checksum == NO_SOURCE || checksum == sourceChecksum;
+	}
+
+	/**
+	 * Load the snapshot resource, returning null if it is missing, unreadable or stale
+	 * compared to the source JSON's checksum
+	 *
+	 * @param sourceChecksum from {@link #checksumResource(String)}
+	 */
+	static CompiledShopData load(String snapshotResource, long sourceChecksum)
+	{
+		try
+		{
+			ByteBuffer buffer = readResource(snapshotResource);
+			if (buffer == null)
+			{
+				log.debug("No compiled shop data at {}", snapshotResource);
+				return null;
+			}
+
+			CompiledShopData data = read(buffer);
+			if (!data.matchesSource(sourceChecksum))
+			{
+				log.debug("Compiled shop data {} is stale, falling back to the source", snapshotResource);
+				return null;
+			}
+
+			return data;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Failed to read compiled shop data {}", snapshotResource, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Read a classpath resource in one go. Resources on the file system are memory-mapped,
+	 * resources inside a jar are read with a single bulk read.
+	 */
+	static ByteBuffer readResource(String resource) throws IOException
+	{
+		URL url = CompiledShopData.class.getResource(resource);
+		if (url == null)
+		{
+			return null;
+		}
+
+		if ("file".equals(url.getProtocol()))
+		{
+			try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ))
+			{
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			catch (URISyntaxException e)
+			{
+				throw new IOException("Invalid resource URL " + url, e);
+			}
+		}
+
+		try (InputStream is = url.openStream())
+		{
+			return ByteBuffer.wrap(is.readAllBytes());
+		}
+	}
+
+	/**
+	 * CRC32 of a classpath resource, or {@link #NO_SOURCE} if it does not exist. The resource is
+	 * read as by {@link #readResource(String)}, so a file is checksummed in place without copying.
+	 */
+	static long checksumResource(String resource) throws IOException
+	{
+		ByteBuffer buffer = readResource(resource);
+		if (buffer == null)
+		{
+			return NO_SOURCE;
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer);
+		return crc.getValue();
+	}
+
+	/**
+	 * Decode a snapshot
+	 *
+	 * @throws IOException if the buffer is not a snapshot of a supported version
+	 */
+	static CompiledShopData read(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not a compiled shop data file");
+		}
+
+		int version = buffer.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported compiled shop data version " + version);
+		}
+
+		long sourceChecksum = buffer.getLong();
+
+		// String table
+		String[] strings = new String[buffer.getInt()];
+		byte[] scratch = new byte[64];
+		for (int i = 0; i < strings.length; i++)
+		{
+			int length = buffer.getInt();
+			if (length > scratch.length)
+			{
+				scratch = new byte[length];
+			}
+			buffer.get(scratch, 0, length);
+			strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+		}
+
+		// Item table, one shared item per distinct price/stock variant
+		ItemCatalog catalog = new ItemCatalog();
+		ShopItem[] items = new ShopItem[buffer.getInt()];
+		for (int i = 0; i < items.length; i++)
+		{
+			int itemId = buffer.getInt();
+			String name = string(strings, buffer.getInt());
+			items[i] = catalog.item(itemId, name, buffer.getInt(), buffer.getInt());
+		}
+
+		// Shop table
+		int shopCount = buffer.getInt();
+		List<Shop> shops = new ArrayList<>(shopCount);
+		for (int i = 0; i < shopCount; i++)
+		{
+			Shop shop = new Shop();
+			shop.setId(string(strings, buffer.getInt()));
+			shop.setName(string(strings, buffer.getInt()));
+			shop.setOwner(string(strings, buffer.getInt()));
+			shop.setLocation(string(strings, buffer.getInt()));
+
+			if (buffer.get() != 0)
+			{
+				shop.setCoordinates(buffer.getInt(), buffer.getInt(), buffer.getInt());
+			}
+
+			int count = buffer.getInt();
+			List<ShopItem> shopItems = new ArrayList<>(count);
+			for (int j = 0; j < count; j++)
+			{
+				shopItems.add(items[buffer.getInt()]);
+			}
+			shop.setItems(shopItems);
+			shops.add(shop);
+		}
+
+		// Item to shop index
+		int keyCount = buffer.getInt();
+		Map<String, List<Shop>> itemIndex = new HashMap<>((int) (keyCount / 0.75f) + 1);
+		for (int i = 0; i < keyCount; i++)
+		{
+			String key = strings[buffer.getInt()];
+			int count = buffer.getInt();
+			List<Shop> list = new ArrayList<>(count);
+			for (int j = 0; j < count; j++)
+			{
+				list.add(shops.get(buffer.getInt()));
+			}
+			itemIndex.put(key, list);
+		}
+
+		catalog.trim();
+		return new CompiledShopData(sourceChecksum, catalog, shops, itemIndex);
+	}
+
+	private static String string(String[] strings, int index)
+	{
+		return index == NO_STRING ? null : strings[index];
+	}
+
+	/**
+	 * Encode shops as a snapshot
+	 */
+	static void write(List<Shop> shops, long sourceChecksum, DataOutputStream out) throws IOException
+	{
+		Map<String, Integer> strings = new LinkedHashMap<>();
+		Map<List<Object>, Integer> items = new LinkedHashMap<>();
+		Map<String, List<Integer>> itemIndex = new LinkedHashMap<>();
+
+		for (int i = 0; i < shops.size(); i++)
+		{
+			Shop shop = shops.get(i);
+			intern(strings, shop.getId());
+			intern(strings, shop.getName());
+			intern(strings, shop.getOwner());
+			intern(strings, shop.getLocation());
+
+			for (ShopItem item : shop.getItems())
+			{
+				int name = intern(strings, item.getName());
+				items.putIfAbsent(Arrays.asList(item.getItemId(), name, item.getStock(), item.getPrice()), items.size());
+
+				if (item.getName() != null)
+				{
+					String key = item.getName().toLowerCase();
+					intern(strings, key);
+					itemIndex.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+				}
+			}
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(sourceChecksum);
+
+		out.writeInt(strings.size());
+		for (String s : strings.keySet())
+		{
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		out.writeInt(items.size());
+		for (List<Object> item : items.keySet())
+		{
+			for (Object field : item)
+			{
+				out.writeInt((Integer) field);
+			}
+		}
+
+		out.writeInt(shops.size());
+		for (Shop shop : shops)
+		{
+			out.writeInt(intern(strings, shop.getId()));
+			out.writeInt(intern(strings, shop.getName()));
+			out.writeInt(intern(strings, shop.getOwner()));
+			out.writeInt(intern(strings, shop.getLocation()));
+
+			if (shop.getWorldPoint() != null)
+			{
+				out.writeByte(1);
+				out.writeInt(shop.getWorldPoint().getX());
+				out.writeInt(shop.getWorldPoint().getY());
+				out.writeInt(shop.getWorldPoint().getPlane());
+			}
+			else
+			{
+				out.writeByte(0);
+			}
+
+			out.writeInt(shop.getItems().size());
+			for (ShopItem item : shop.getItems())
+			{
+				int name = intern(strings, item.getName());
+				out.writeInt(items.get(Arrays.asList(item.getItemId(), name, item.getStock(), item.getPrice())));
+			}
+		}
+
+		out.writeInt(itemIndex.size());
+		for (Map.Entry<String, List<Integer>> entry : itemIndex.entrySet())
+		{
+			out.writeInt(intern(strings, entry.getKey()));
+			out.writeInt(entry.getValue().size());
+			for (int shopIndex : entry.getValue())
+			{
+				out.writeInt(shopIndex);
+			}
+		}
+	}
+
+	private static int intern(Map<String, Integer> strings, String s)
+	{
+		if (s == null)
+		{
+			return NO_STRING;
+		}
+		return strings.computeIfAbsent(s, k -> strings.size());
+	}
+
+	/**
+	 * Build-time entry point: compile a shops.json file into a snapshot, and optionally split it
+	 * into region packs
+	 *
+	 * Usage: CompiledShopData &lt;shops.json&gt; &lt;shops.bin&gt; [regions directory]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2 && args.length != 3)
+		{
+			System.err.println("Usage: CompiledShopData <shops.json> <shops.bin> [regions directory]");
+			System.exit(1);
+		}
+
+		Path source = Paths.get(args[0]);
+		Path target = Paths.get(args[1]);
+
+		byte[] json = Files.readAllBytes(source);
+		CRC32 crc = new CRC32();
+		crc.update(json);
+
+		List<Shop> shops = new ArrayList<>();
+		ShopJsonParser.parse(ByteBuffer.wrap(json), ForkJoinPool.commonPool(), new ItemCatalog(), shops,
+			new HashMap<>(), new HashMap<>());
+
+		if (target.getParent() != null)
+		{
+			Files.createDirectories(target.getParent());
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target))))
+		{
+			write(shops, crc.getValue(), out);
+		}
+
+		log.info("Compiled {} shops from {} into {}", shops.size(), source, target);
+
+		if (args.length == 3)
+		{
+			ShopRegionDirectory.write(shops, crc.getValue(), Paths.get(args[2]));
+		}
+	}
+}
@@ -0,0 +1,583 @@
+package com.questnextaction.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Typo-tolerant item name search.
+ *
+ * Item names are split into words, and the distinct words are stored in a BK-tree keyed by
+ * Levenshtein distance. Each word of a query is matched against the tree within an edit limit
+ * that grows with the word's length; the last query word may also match as a prefix since the
+ * user is usually still typing it. A name matches when every query word matches one of its words.
+ *
+ * Results are ranked by total edits, then by whether the name starts with the first query word,
+ * then by how many query words only matched as a prefix, then by length and alphabetically.
+ * Searches stop once their time budget is spent and return the best of the names found so far to
+ * match every query word, which may be none.
+ */
+final class FuzzyItemIndex
+{
+	private final String[] names;
+	private final String[] words;
+	private final int[][] namesByWord;
+	private final Node root;
+
+	/**
+	 * Per name state left by the last search, reused by the next
+	 */
+	private final AtomicReference<Scratch> spareScratch = new AtomicReference<>();
+
+	private FuzzyItemIndex(String[] names, String[] words, int[][] namesByWord, Node root)
+	{
+		this.names = names;
+		this.words = words;
+		this.namesByWord = namesByWord;
+		this.root = root;
+	}
+
+	/**
+	 * Index the given names, which must already be in the case they will be searched in
+	 */
+	static FuzzyItemIndex build(Collection<String> names)
+	{
+		String[] sorted = names.stream().sorted().distinct().toArray(String[]::new);
+
+		Map<String, List<Integer>> postings = new HashMap<>();
+		for (int i = 0; i < sorted.length; i++)
+		{
+			for (String word : words(sorted[i]))
+			{
+				List<Integer> list = postings.computeIfAbsent(word, k -> new ArrayList<>());
+				if (list.isEmpty() || list.get(list.size() - 1) != i)
+				{
+					list.add(i);
+				}
+			}
+		}
+
+		String[] words = postings.keySet().toArray(new String[0]);
+		Arrays.sort(words);
+
+		int[][] namesByWord = new int[words.length][];
+		Node root = null;
+		for (int w = 0; w < words.length; w++)
+		{
+			namesByWord[w] = postings.get(words[w]).stream().mapToInt(Integer::intValue).toArray();
+
+			if (root == null)
+			{
+				root = new Node(w);
+			}
+			else
+			{
+				root.insert(w, words);
+			}
+		}
+
+		return new FuzzyItemIndex(sorted, words, namesByWord, root);
+	}
+
+	/**
+	 * Best matching names for the query, at most {@code limit} of them
+	 */
+	List<String> search(String query, int limit, long budgetNanos)
+	{
+		String[] tokens = words(query);
+		if (tokens.length == 0 || root == null || limit <= 0)
+		{
+			return new ArrayList<>();
+		}
+
+		// Concurrent searches each need their own, so only one is kept spare
+		Scratch scratch = spareScratch.getAndSet(null);
+		if (scratch == null)
+		{
+			scratch = new Scratch(names.length);
+		}
+		try
+		{
+			return search(tokens, limit, System.nanoTime() + budgetNanos, scratch);
+		}
+		finally
+		{
+			scratch.reset();
+			spareScratch.set(scratch);
+		}
+	}
+
+	private List<String> search(String[] tokens, int limit, long deadline, Scratch scratch)
+	{
+		int[] matched = scratch.matched;
+		int[] edits = scratch.edits;
+		int[] partial = scratch.partial;
+		boolean[] startsElsewhere = scratch.startsElsewhere;
+		int[] candidates = new int[16];
+		int candidateCount = 0;
+
+		for (int t = 0; t < tokens.length && System.nanoTime() < deadline; t++)
+		{
+			List<WordMatch> matches = matchWord(tokens[t], t == tokens.length - 1, deadline);
+
+			// Cheapest first, so the first word matching a name is its best match for this token
+			matches.sort(Comparator.comparingInt((WordMatch m) -> m.edits).thenComparing(m -> m.prefix));
+
+			for (WordMatch match : matches)
+			{
+				for (int name : namesByWord[match.word])
+				{
+					if (matched[name] != t)
+					{
+						continue;
+					}
+
+					matched[name] = t + 1;
+					edits[name] += match.edits;
+					partial[name] += match.prefix ? 1 : 0;
+					if (t == 0)
+					{
+						startsElsewhere[name] = !names[name].startsWith(words[match.word]);
+						scratch.touch(name);
+						if (candidateCount == candidates.length)
+						{
+							candidates = Arrays.copyOf(candidates, candidateCount * 2);
+						}
+						candidates[candidateCount++] = name;
+					}
+				}
+			}
+
+			// Names that missed this token can never match
+			int size = 0;
+			for (int i = 0; i < candidateCount; i++)
+			{
+				if (matched[candidates[i]] == t + 1)
+				{
+					candidates[size++] = candidates[i];
+				}
+			}
+			candidateCount = size;
+
+			if (candidateCount == 0)
+			{
+				return new ArrayList<>();
+			}
+		}
+
+		// Pack each candidate's rank into a long so they sort as primitives:
+		// edits, name start, prefix-only words, length, then position for alphabetical order.
+		// Names are only matches once every token has been matched, which the budget may cut short.
+		long[] ranked = new long[candidateCount];
+		int rankedCount = 0;
+		for (int i = 0; i < candidateCount; i++)
+		{
+			int name = candidates[i];
+			if (matched[name] == tokens.length)
+			{
+				ranked[rankedCount++] = (long) Math.min(edits[name], 0x7F) << 56
+					| (startsElsewhere[name] ? 1L : 0L) << 55
+					| (long) Math.min(partial[name], 0x7F) << 48
+					| (long) Math.min(names[name].length(), 0xFFFF) << 32
+					| name;
+			}
+		}
+		long[] best = smallest(rankedCount < ranked.length ? Arrays.copyOf(ranked, rankedCount) : ranked, limit);
+
+		List<String> result = new ArrayList<>(best.length);
+		for (long rank : best)
+		{
+			result.add(names[(int) rank]);
+		}
+		return result;
+	}
+
+	/**
+	 * Per name state of a search: tokens matched so far, total edits, tokens only matched as a
+	 * prefix and whether the first token matched somewhere other than the start of the name.
+	 * Kept between searches, so a keystroke does not allocate arrays the size of every name; only
+	 * the entries a search touched are reset after it.
+	 */
+	private static final class Scratch
+	{
+		private final int[] matched;
+		private final int[] edits;
+		private final int[] partial;
+		private final boolean[] startsElsewhere;
+		private int[] touched = new int[16];
+		private int touchedCount;
+
+		Scratch(int size)
+		{
+			matched = new int[size];
+			edits = new int[size];
+			partial = new int[size];
+			startsElsewhere = new boolean[size];
+		}
+
+		void touch(int name)
+		{
+			if (touchedCount == touched.length)
+			{
+				touched = Arrays.copyOf(touched, touchedCount * 2);
+			}
+			touched[touchedCount++] = name;
+		}
+
+		void reset()
+		{
+			for (int i = 0; i < touchedCount; i++)
+			{
+				int name = touched[i];
+				matched[name] = 0;
+				edits[name] = 0;
+				partial[name] = 0;
+				startsElsewhere[name] = false;
+			}
+			touchedCount = 0;
+		}
+	}
+
+	/**
+	 * The smallest {@code limit} values in ascending order, using a bounded max-heap so a short
+	 * result does not sort every candidate
+	 */
+	static long[] smallest(long[] values, int limit)
+	{
+		if (values.length <= limit)
+		{
+			Arrays.sort(values);
+			return values;
+		}
+
+		long[] heap = Arrays.copyOf(values, limit);
+		for (int i = limit / 2 - 1; i >= 0; i--)
+		{
+			siftDown(heap, i);
+		}
+
+		for (int i = limit; i < values.length; i++)
+		{
+			if (values[i] < heap[0])
+			{
+				heap[0] = values[i];
+				siftDown(heap, 0);
+			}
+		}
+
+		Arrays.sort(heap);
+		return heap;
+	}
+
+	private static void siftDown(long[] heap, int i)
+	{
+		long value = heap[i];
+		while (true)
+		{
+			int child = 2 * i + 1;
+			if (child >= heap.length)
+			{
+				break;
+			}
+			if (child + 1 < heap.length && heap[child + 1] > heap[child])
+			{
+				child++;
+			}
+			if (heap[child] <= value)
+			{
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = value;
+	}
+
+	/**
+	 * Number of distinct words across all names
+	 */
+	int wordCount()
+	{
+		return words.length;
+	}
+
+	/**
+	 * Dictionary words within the edit limit of a token, plus words it is a prefix of if it is
+	 * the word being typed
+	 */
+	private List<WordMatch> matchWord(String token, boolean typing, long deadline)
+	{
+		ArrayList<WordMatch> matches = new ArrayList<>();
+		int maxEdits = maxEdits(token.length());
+		Pattern pattern = token.length() <= Pattern.MAX_LENGTH ? new Pattern(token) : null;
+
+		Node[] stack = new Node[16];
+		stack[0] = root;
+		int depth = 1;
+		int visited = 0;
+		while (depth > 0)
+		{
+			Node node = stack[--depth];
+			String word = words[node.word];
+			int distance = pattern != null ? pattern.distance(word) : dynamicDistance(token, word);
+			if (distance <= maxEdits)
+			{
+				matches.add(new WordMatch(node.word, distance, false));
+			}
+
+			// Triangle inequality: only subtrees within maxEdits of our distance can hold matches
+			for (int i = 0; i < node.size; i++)
+			{
+				if (Math.abs(node.distances[i] - distance) <= maxEdits)
+				{
+					if (depth == stack.length)
+					{
+						stack = Arrays.copyOf(stack, depth * 2);
+					}
+					stack[depth++] = node.children[i];
+				}
+			}
+
+			if ((++visited & 63) == 0 && System.nanoTime() > deadline)
+			{
+				break;
+			}
+		}
+
+		if (typing)
+		{
+			int from = Arrays.binarySearch(words, token);
+			from = from >= 0 ? from : -from - 1;
+			int to = Arrays.binarySearch(words, from, words.length, token + Character.MAX_VALUE);
+			to = to >= 0 ? to : -to - 1;
+
+			matches.ensureCapacity(matches.size() + to - from);
+			for (int w = from; w < to && words[w].startsWith(token); w++)
+			{
+				if (!words[w].equals(token))
+				{
+					matches.add(new WordMatch(w, 0, true));
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Edits tolerated in a word of the given length
+	 */
+	static int maxEdits(int length)
+	{
+		if (length <= 2)
+		{
+			return 0;
+		}
+		return length <= 5 ? 1 : 2;
+	}
+
+	/**
+	 * Levenshtein distance between two words
+	 */
+	static int distance(String a, String b)
+	{
+		return a.length() <= Pattern.MAX_LENGTH ? new Pattern(a).distance(b) : dynamicDistance(a, b);
+	}
+
+	/**
+	 * Levenshtein distance by the textbook dynamic program, for words too long for a {@link Pattern}
+	 */
+	private static int dynamicDistance(String a, String b)
+	{
+		int[] previous = new int[a.length() + 1];
+		int[] current = new int[a.length() + 1];
+		for (int i = 0; i <= a.length(); i++)
+		{
+			previous[i] = i;
+		}
+
+		for (int j = 1; j <= b.length(); j++)
+		{
+			current[0] = j;
+			char cb = b.charAt(j - 1);
+			for (int i = 1; i <= a.length(); i++)
+			{
+				int substitute = previous[i - 1] + (a.charAt(i - 1) == cb ? 0 : 1);
+				current[i] = Math.min(substitute, Math.min(previous[i], current[i - 1]) + 1);
+			}
+
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[a.length()];
+	}
+
+	/**
+	 * Split a name or query into words at anything that is not a letter or digit
+	 */
+	static String[] words(String s)
+	{
+		return Arrays.stream(s.split("[^\\p{L}\\p{N}]+"))
+			.filter(w -> !w.isEmpty())
+			.toArray(String[]::new);
+	}
+
+	/**
+	 * A word prepared for Myers' bit-parallel edit distance, which tracks a whole column of the
+	 * dynamic program in two machine words and so costs one step per character of the other word
+	 */
+	private static final class Pattern
+	{
+		static final int MAX_LENGTH = Long.SIZE;
+
+		private final String word;
+		private final long[] asciiMasks = new long[128];
+
+		Pattern(String word)
+		{
+			this.word = word;
+			for (int i = 0; i < word.length(); i++)
+			{
+				char c = word.charAt(i);
+				if (c < asciiMasks.length)
+				{
+					asciiMasks[c] |= 1L << i;
+				}
+			}
+		}
+
+		private long mask(char c)
+		{
+			if (c < asciiMasks.length)
+			{
+				return asciiMasks[c];
+			}
+
+			long mask = 0;
+			for (int i = 0; i < word.length(); i++)
+			{
+				if (word.charAt(i) == c)
+				{
+					mask |= 1L << i;
+				}
+			}
+			return mask;
+		}
+
+		int distance(String other)
+		{
+			int m = word.length();
+			if (m == 0)
+			{
+				return other.length();
+			}
+
+			long last = 1L << (m - 1);
+			long pv = -1L;
+			long mv = 0;
+			int score = m;
+			for (int j = 0; j < other.length(); j++)
+			{
+				long eq = mask(other.charAt(j));
+				long xv = eq | mv;
+				long xh = (((eq & pv) + pv) ^ pv) | eq;
+				long ph = mv | ~(xh | pv);
+				long mh = pv & xh;
+
+				if ((ph & last) != 0)
+				{
+					score++;
+				}
+				else if ((mh & last) != 0)
+				{
+					score--;
+				}
+
+				ph = (ph << 1) | 1;
+				mh <<= 1;
+				pv = mh | ~(xv | ph);
+				mv = ph & xv;
+			}
+			return score;
+		}
+	}
+
+	private static final class WordMatch
+	{
+		final int word;
+		final int edits;
+		final boolean prefix;
+
+		WordMatch(int word, int edits, boolean prefix)
+		{
+			this.word = word;
+			this.edits = edits;
+			this.prefix = prefix;
+		}
+	}
+
+	/**
+	 * BK-tree node; children are keyed by their distance to this node's word
+	 */
+	private static final class Node
+	{
+		final int word;
+		int[] distances = new int[2];
+		Node[] children = new Node[2];
+		int size;
+
+		Node(int word)
+		{
+			this.word = word;
+		}
+
+		void insert(int word, String[] words)
+		{
+			String text = words[word];
+			Pattern pattern = text.length() <= Pattern.MAX_LENGTH ? new Pattern(text) : null;
+
+			Node node = this;
+			while (true)
+			{
+				String other = words[node.word];
+				int distance = pattern != null ? pattern.distance(other) : dynamicDistance(text, other);
+				Node child = node.child(distance);
+				if (child == null)
+				{
+					node.add(distance, new Node(word));
+					return;
+				}
+				node = child;
+			}
+		}
+
+		private Node child(int distance)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (distances[i] == distance)
+				{
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private void add(int distance, Node child)
+		{
+			if (size == distances.length)
+			{
+				distances = Arrays.copyOf(distances, size * 2);
+				children = Arrays.copyOf(children, size * 2);
+			}
+			distances[size] = distance;
+			children[size++] = child;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.questnextaction.db;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared catalog of the items sold in shops, keyed by item ID.
+ *
+ * General stores all list the same items (Pot, Bucket, Tinderbox, ...), so loading goes through
+ * the catalog: every distinct name string is stored once, and shops that sell an item at the same
+ * stock and price share a single {@link ShopItem}. A shop's item list therefore only holds its own
+ * price/stock variants, each pointing at the catalog's canonical name.
+ *
+ * Items handed out by the catalog are shared between shops and must be treated as read-only.
+ * Shards of one file can be parsed at the same time through {@link #shard()} catalogs.
+ */
+final class ItemCatalog
+{
+	private final Map<Integer, String> namesById = new HashMap<>();
+
+	// Pools used to share instances while loading, released by trim(). They are concurrent so that
+	// shard catalogs can share them from several threads.
+	private Map<String, String> strings;
+	private Map<ShopItem, ShopItem> items;
+	private int variantCount;
+
+	ItemCatalog()
+	{
+		this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+	}
+
+	private ItemCatalog(Map<String, String> strings, Map<ShopItem, ShopItem> items)
+	{
+		this.strings = strings;
+		this.items = items;
+	}
+
+	/**
+	 * Catalog for parsing one shard of a file, possibly on another thread. It shares this catalog's
+	 * items and strings but keeps its own item names, which are added to this catalog in file order
+	 * by {@link #addNames(ItemCatalog)} so the first name seen for an item wins as in a single pass.
+	 */
+	ItemCatalog shard()
+	{
+		return new ItemCatalog(strings, items);
+	}
+
+	/**
+	 * Add the item names of a shard catalog, keeping any name already recorded for an item
+	 */
+	void addNames(ItemCatalog shard)
+	{
+		shard.namesById.forEach(namesById::putIfAbsent);
+	}
+
+	/**
+	 * Return the canonical instance of a string, so repeated names and locations share storage
+	 */
+	String intern(String s)
+	{
+		if (s == null)
+		{
+			return null;
+		}
+
+		// Most strings are already pooled, and a plain get does not lock in a concurrent map
+		String existing = strings.get(s);
+		if (existing == null)
+		{
+			existing = strings.putIfAbsent(s, s);
+		}
+		return existing != null ? existing : s;
+	}
+
+	/**
+	 * Return the shared item for this item ID, name, stock and price, creating it if needed
+	 */
+	ShopItem item(int itemId, String name, int stock, int price)
+	{
+		name = intern(name);
+		if (name != null)
+		{
+			namesById.putIfAbsent(itemId, name);
+		}
+
+		ShopItem item = new ShopItem();
+		item.setItemId(itemId);
+		item.setName(name);
+		item.setStock(stock);
+		item.setPrice(price);
+
+		ShopItem existing = items.get(item);
+		if (existing == null)
+		{
+			existing = items.putIfAbsent(item, item);
+		}
+		return existing != null ? existing : item;
+	}
+
+	/**
+	 * Release the pools only needed while loading. Items created afterwards are no longer shared.
+	 */
+	void trim()
+	{
+		variantCount = items.size();
+		strings = new ConcurrentHashMap<>();
+		items = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Copy of the item names, for building a changed version of the data without touching this one
+	 */
+	ItemCatalog copy()
+	{
+		ItemCatalog copy = new ItemCatalog();
+		copy.namesById.putAll(namesById);
+		copy.variantCount = variantCount;
+		return copy;
+	}
+
+	/**
+	 * Record the name of an item, replacing any previous name for its ID
+	 */
+	void addName(int itemId, String name)
+	{
+		if (name != null)
+		{
+			namesById.put(itemId, name);
+		}
+	}
+
+	/**
+	 * Name of an item by its ID, or null if no shop sells it
+	 */
+	String getName(int itemId)
+	{
+		return namesById.get(itemId);
+	}
+
+	/**
+	 * Number of distinct item IDs in the catalog
+	 */
+	int size()
+	{
+		return namesById.size();
+	}
+
+	/**
+	 * Number of distinct price/stock variants shared between shops
+	 */
+	int variantCount()
+	{
+		return Math.max(variantCount, items.size());
+	}
+}
@@ -0,0 +1,179 @@
+package com.questnextaction.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which shops sell each item, as a {@link ShopBitmap} of shop indexes per lowercased item name.
+ *
+ * Questions about several items at once, such as which shops sell all of them, become bitmap
+ * intersections and unions instead of walks over shop lists. Shop indexes refer to positions in
+ * the list the index was built from. The index is immutable once built.
+ */
+final class ItemCoverageIndex
+{
+	static final ItemCoverageIndex EMPTY = new ItemCoverageIndex(new HashMap<>());
+
+	private final Map<String, ShopBitmap> bitmaps;
+
+	private ItemCoverageIndex(Map<String, ShopBitmap> bitmaps)
+	{
+		this.bitmaps = bitmaps;
+	}
+
+	/**
+	 * Index the items of the given shops by lowercased name
+	 */
+	static ItemCoverageIndex build(List<Shop> shops)
+	{
+		return build(ShopInventoryColumns.build(shops));
+	}
+
+	/**
+	 * Index the item names in shop inventory columns
+	 */
+	static ItemCoverageIndex build(ShopInventoryColumns columns)
+	{
+		// Shops are visited in order, so each item's indexes arrive ascending
+		Indexes[] indexes = new Indexes[columns.nameCount()];
+		for (int shop = 0; shop < columns.shopCount(); shop++)
+		{
+			for (int row = columns.shopOffset(shop); row < columns.shopOffset(shop + 1); row++)
+			{
+				int nameId = columns.nameId(row);
+				if (nameId != ShopInventoryColumns.NO_NAME)
+				{
+					if (indexes[nameId] == null)
+					{
+						indexes[nameId] = new Indexes();
+					}
+					indexes[nameId].add(shop);
+				}
+			}
+		}
+
+		Map<String, ShopBitmap> bitmaps = new HashMap<>((int) (indexes.length / 0.75f) + 1);
+		for (int nameId = 0; nameId < indexes.length; nameId++)
+		{
+			bitmaps.put(columns.name(nameId), ShopBitmap.of(indexes[nameId].values, indexes[nameId].length));
+		}
+		return new ItemCoverageIndex(bitmaps);
+	}
+
+	/**
+	 * This index with the bitmaps of some items rebuilt from new inventory columns. Only valid when
+	 * every shop in the columns that was also in the old list kept its position, so that the other
+	 * items' bitmaps still hold; shops may have been replaced or added at the end.
+	 *
+	 * @param touched by name ID in the columns, the items to rebuild
+	 * @param touchedKeys the names of the items to rebuild, including those no shop sells any more
+	 */
+	ItemCoverageIndex withItems(ShopInventoryColumns columns, boolean[] touched, Collection<String> touchedKeys)
+	{
+		Indexes[] indexes = new Indexes[columns.nameCount()];
+		for (int shop = 0; shop < columns.shopCount(); shop++)
+		{
+			for (int row = columns.shopOffset(shop); row < columns.shopOffset(shop + 1); row++)
+			{
+				int nameId = columns.nameId(row);
+				if (nameId != ShopInventoryColumns.NO_NAME && touched[nameId])
+				{
+					if (indexes[nameId] == null)
+					{
+						indexes[nameId] = new Indexes();
+					}
+					indexes[nameId].add(shop);
+				}
+			}
+		}
+
+		Map<String, ShopBitmap> newBitmaps = new HashMap<>(bitmaps);
+		newBitmaps.keySet().removeAll(touchedKeys);
+		for (int nameId = 0; nameId < indexes.length; nameId++)
+		{
+			if (indexes[nameId] != null)
+			{
+				newBitmaps.put(columns.name(nameId), ShopBitmap.of(indexes[nameId].values, indexes[nameId].length));
+			}
+		}
+		return new ItemCoverageIndex(newBitmaps);
+	}
+
+	/**
+	 * Ascending shop indexes of one item while building
+	 */
+	private static final class Indexes
+	{
+		private int[] values = new int[2];
+		private int length;
+
+		void add(int index)
+		{
+			// A shop listing several variants of the same item is only indexed once
+			if (length > 0 && values[length - 1] == index)
+			{
+				return;
+			}
+			if (length == values.length)
+			{
+				values = Arrays.copyOf(values, length * 2);
+			}
+			values[length++] = index;
+		}
+	}
+
+	/**
+	 * Shops selling an item, by lowercased name
+	 */
+	ShopBitmap get(String key)
+	{
+		return bitmaps.getOrDefault(key, ShopBitmap.EMPTY);
+	}
+
+	/**
+	 * Shops selling every one of the items, by lowercased name. Empty if no items are given.
+	 */
+	ShopBitmap sellingAll(Collection<String> keys)
+	{
+		// Intersect the rarest items first, so the running result is small and empties early
+		List<ShopBitmap> sets = new ArrayList<>(keys.size());
+		for (String key : keys)
+		{
+			ShopBitmap set = get(key);
+			if (set.isEmpty())
+			{
+				return ShopBitmap.EMPTY;
+			}
+			sets.add(set);
+		}
+		if (sets.isEmpty())
+		{
+			return ShopBitmap.EMPTY;
+		}
+		sets.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+
+		ShopBitmap result = sets.get(0);
+		for (int i = 1; i < sets.size() && !result.isEmpty(); i++)
+		{
+			result = ShopBitmap.and(result, sets.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Shops selling at least one of the items, by lowercased name
+	 */
+	ShopBitmap sellingAny(Collection<String> keys)
+	{
+		ShopBitmap result = ShopBitmap.EMPTY;
+		for (String key : keys)
+		{
+			result = ShopBitmap.or(result, get(key));
+		}
+		return result;
+	}
+}
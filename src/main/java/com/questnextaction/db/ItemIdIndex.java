@@ -0,0 +1,198 @@
+package com.questnextaction.db;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open-addressing map from game item ID to the indexes of the shops selling it.
+ *
+ * Keys are stored in a primitive int array with linear probing, so lookups neither box the
+ * item ID nor allocate. Shop indexes refer to positions in the list the index was built from;
+ * other int values, such as region numbers, can be indexed the same way with {@link #create()}.
+ * The index is immutable once built.
+ */
+final class ItemIdIndex
+{
+	private static final int[] NO_SHOPS = new int[0];
+
+	private int[] keys;
+	private int[][] values;
+	private int[] lengths;
+	private int size;
+
+	private ItemIdIndex(int capacity)
+	{
+		keys = new int[capacity];
+		values = new int[capacity][];
+		lengths = new int[capacity];
+	}
+
+	/**
+	 * Index the items of the given shops by item ID
+	 */
+	static ItemIdIndex build(List<Shop> shops)
+	{
+		return build(ShopInventoryColumns.build(shops));
+	}
+
+	/**
+	 * Index the item IDs in shop inventory columns
+	 */
+	static ItemIdIndex build(ShopInventoryColumns columns)
+	{
+		ItemIdIndex index = create();
+		for (int shop = 0; shop < columns.shopCount(); shop++)
+		{
+			for (int row = columns.shopOffset(shop); row < columns.shopOffset(shop + 1); row++)
+			{
+				index.add(columns.itemId(row), shop);
+			}
+		}
+		return index.trimToSize();
+	}
+
+	/**
+	 * Empty index to fill with {@link #add(int, int)} and then {@link #trimToSize()}
+	 */
+	static ItemIdIndex create()
+	{
+		return new ItemIdIndex(16);
+	}
+
+	/**
+	 * Trim the value arrays to size; the index is read-only from here on
+	 */
+	ItemIdIndex trimToSize()
+	{
+		for (int slot = 0; slot < values.length; slot++)
+		{
+			if (values[slot] != null)
+			{
+				values[slot] = Arrays.copyOf(values[slot], lengths[slot]);
+			}
+		}
+		lengths = null;
+		return this;
+	}
+
+	/**
+	 * Add a value for an item ID. Values must be added in order for repeats to be dropped.
+	 */
+	void add(int key, int shopIndex)
+	{
+		if ((size + 1) * 2 > keys.length)
+		{
+			rehash(keys.length * 2);
+		}
+
+		int slot = find(key);
+		if (values[slot] == null)
+		{
+			keys[slot] = key;
+			values[slot] = new int[2];
+			size++;
+		}
+
+		int[] shops = values[slot];
+		int length = lengths[slot];
+
+		// A shop listing several variants of the same item is only indexed once
+		if (length > 0 && shops[length - 1] == shopIndex)
+		{
+			return;
+		}
+
+		if (length == shops.length)
+		{
+			shops = values[slot] = Arrays.copyOf(shops, length * 2);
+		}
+
+		shops[length] = shopIndex;
+		lengths[slot] = length + 1;
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = keys;
+		int[][] oldValues = values;
+		int[] oldLengths = lengths;
+
+		keys = new int[capacity];
+		values = new int[capacity][];
+		lengths = new int[capacity];
+
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldValues[i] != null)
+			{
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				lengths[slot] = oldLengths[i];
+			}
+		}
+	}
+
+	/**
+	 * Slot holding the key, or the empty slot where it would be inserted
+	 */
+	private int find(int key)
+	{
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (values[slot] != null && keys[slot] != key)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int mix(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Slot of an item ID, or -1 if no shop sells it. Slots are stable and lie in [0, capacity()).
+	 */
+	int slotOf(int itemId)
+	{
+		int slot = find(itemId);
+		return values[slot] != null ? slot : -1;
+	}
+
+	/**
+	 * Indexes of the shops selling an item, in shop order. The returned array is shared and
+	 * must not be modified.
+	 */
+	int[] get(int itemId)
+	{
+		int slot = find(itemId);
+		return values[slot] != null ? values[slot] : NO_SHOPS;
+	}
+
+	/**
+	 * Shop indexes stored in a slot returned by {@link #slotOf(int)}
+	 */
+	int[] valueAt(int slot)
+	{
+		return values[slot];
+	}
+
+	/**
+	 * Number of slots, used to size arrays that are addressed by slot
+	 */
+	int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Number of distinct item IDs
+	 */
+	int size()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,207 @@
+package com.questnextaction.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * N-gram inverted index over item names for substring search.
+ *
+ * Names are kept in sorted order and every 1-, 2- and 3-character gram maps to the sorted
+ * positions of the names containing it. A query of up to three characters is answered by a
+ * single posting list; longer queries intersect the posting lists of their trigrams and then
+ * check the few remaining candidates with {@link String#contains}. Because positions follow name
+ * order, results come out already sorted.
+ */
+final class ItemNameIndex
+{
+	private static final int MAX_GRAM = 3;
+	private static final int[] NO_NAMES = new int[0];
+
+	private final String[] names;
+	private final Map<Long, int[]> postings;
+
+	private ItemNameIndex(String[] names, Map<Long, int[]> postings)
+	{
+		this.names = names;
+		this.postings = postings;
+	}
+
+	/**
+	 * Index the given names, which must already be in the case they will be searched in.
+	 * Duplicate names are indexed once.
+	 */
+	static ItemNameIndex build(Collection<String> names)
+	{
+		String[] sorted = names.stream().sorted().distinct().toArray(String[]::new);
+
+		Map<Long, Posting> building = new HashMap<>();
+		for (int i = 0; i < sorted.length; i++)
+		{
+			String name = sorted[i];
+			for (int n = 1; n <= MAX_GRAM; n++)
+			{
+				for (int start = 0; start + n <= name.length(); start++)
+				{
+					building.computeIfAbsent(gram(name, start, n), k -> new Posting()).add(i);
+				}
+			}
+		}
+
+		Map<Long, int[]> postings = new HashMap<>((int) (building.size() / 0.75f) + 1);
+		for (Map.Entry<Long, Posting> entry : building.entrySet())
+		{
+			postings.put(entry.getKey(), entry.getValue().toArray());
+		}
+
+		return new ItemNameIndex(sorted, postings);
+	}
+
+	/**
+	 * Names containing the query, in sorted order
+	 */
+	List<String> search(String query)
+	{
+		if (query.isEmpty())
+		{
+			return new ArrayList<>(Arrays.asList(names));
+		}
+
+		if (query.length() <= MAX_GRAM)
+		{
+			// The gram itself is the substring, so its posting list is the exact answer
+			return toNames(posting(gram(query, 0, query.length())), query, false);
+		}
+
+		// Intersect the trigram posting lists, smallest first
+		int count = query.length() - MAX_GRAM + 1;
+		int[][] lists = new int[count][];
+		for (int i = 0; i < count; i++)
+		{
+			lists[i] = posting(gram(query, i, MAX_GRAM));
+			if (lists[i].length == 0)
+			{
+				return new ArrayList<>();
+			}
+		}
+		Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+		int[] candidates = lists[0];
+		for (int i = 1; i < lists.length && candidates.length > 0; i++)
+		{
+			candidates = intersect(candidates, lists[i]);
+		}
+
+		// Sharing all trigrams does not guarantee they appear contiguously, so verify
+		return toNames(candidates, query, true);
+	}
+
+	/**
+	 * All indexed names in sorted order
+	 */
+	List<String> names()
+	{
+		return new ArrayList<>(Arrays.asList(names));
+	}
+
+	/**
+	 * Number of indexed names
+	 */
+	int size()
+	{
+		return names.length;
+	}
+
+	private int[] posting(long gram)
+	{
+		return postings.getOrDefault(gram, NO_NAMES);
+	}
+
+	private List<String> toNames(int[] positions, String query, boolean verify)
+	{
+		List<String> result = new ArrayList<>(positions.length);
+		for (int position : positions)
+		{
+			String name = names[position];
+			if (!verify || name.contains(query))
+			{
+				result.add(name);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Intersect two sorted lists, binary searching the longer one
+	 */
+	private static int[] intersect(int[] shorter, int[] longer)
+	{
+		int[] result = new int[shorter.length];
+		int size = 0;
+		int from = 0;
+		for (int value : shorter)
+		{
+			int found = Arrays.binarySearch(longer, from, longer.length, value);
+			if (found >= 0)
+			{
+				result[size++] = value;
+				from = found + 1;
+			}
+			else
+			{
+				from = -found - 1;
+			}
+
+			if (from == longer.length)
+			{
+				break;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Pack an n-gram of up to three characters into a key, tagged with its length
+	 */
+	private static long gram(String s, int start, int length)
+	{
+		long key = length;
+		for (int i = 0; i < length; i++)
+		{
+			key = (key << 16) | s.charAt(start + i);
+		}
+		return key;
+	}
+
+	/**
+	 * Growable posting list used while building
+	 */
+	private static final class Posting
+	{
+		private int[] positions = new int[4];
+		private int size;
+
+		void add(int position)
+		{
+			// Grams repeated within a name are only recorded once
+			if (size > 0 && positions[size - 1] == position)
+			{
+				return;
+			}
+
+			if (size == positions.length)
+			{
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+			positions[size++] = position;
+		}
+
+		int[] toArray()
+		{
+			return Arrays.copyOf(positions, size);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.questnextaction.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Type-ahead item search that reuses the results of recent queries.
+ *
+ * A small LRU of recent queries is kept. Deleting characters returns to a query that is usually
+ * still cached, and when a query extends one that is cached (any cached query it contains), the
+ * cached result is filtered instead of searching the whole catalog again. Narrowing is only done
+ * from small results; large ones are cheaper to answer from the {@link ShopDatabase} index.
+ *
+ * Cached results are dropped when the item names change. A session belongs to a single
+ * search box and is not thread-safe.
+ */
+public class ItemSearchSession
+{
+	static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Largest cached result that is filtered rather than searched again
+	 */
+	static final int NARROW_LIMIT = 4096;
+
+	private final ShopDatabase database;
+	private final Map<String, List<String>> recent;
+
+	/**
+	 * Name index the cached results were computed from
+	 */
+	private ItemNameIndex cachedIndex;
+
+	ItemSearchSession(ShopDatabase database, int capacity)
+	{
+		this.database = database;
+		this.recent = new LinkedHashMap<String, List<String>>(capacity * 2, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Item names containing the query, in sorted order. Same results as
+	 * {@link ShopDatabase#searchItems(String)}, but the returned list is read-only.
+	 */
+	public List<String> search(String query)
+	{
+		if (query == null || query.trim().isEmpty() || !database.isReady())
+		{
+			return Collections.emptyList();
+		}
+
+		// Results from before the item names changed may be out of date. Loading shops without
+		// adding names, such as a region pack, keeps the same index.
+		ItemNameIndex index = database.getData().getNameIndex();
+		if (index != cachedIndex)
+		{
+			recent.clear();
+			cachedIndex = index;
+		}
+
+		String key = query.toLowerCase();
+		List<String> results = recent.get(key);
+		if (results != null)
+		{
+			return results;
+		}
+
+		List<String> narrowFrom = findNarrowable(key);
+		if (narrowFrom != null)
+		{
+			results = new ArrayList<>();
+			for (String name : narrowFrom)
+			{
+				if (name.contains(key))
+				{
+					results.add(name);
+				}
+			}
+		}
+		else
+		{
+			results = database.searchItems(key);
+		}
+
+		results = Collections.unmodifiableList(results);
+		recent.put(key, results);
+		return results;
+	}
+
+	/**
+	 * Forget cached results
+	 */
+	public void clear()
+	{
+		recent.clear();
+	}
+
+	/**
+	 * Smallest cached result for a query contained in this one, if it is small enough to filter
+	 */
+	private List<String> findNarrowable(String key)
+	{
+		List<String> best = null;
+		for (Map.Entry<String, List<String>> entry : recent.entrySet())
+		{
+			List<String> candidate = entry.getValue();
+			if (candidate.size() <= NARROW_LIMIT
+				&& (best == null || candidate.size() < best.size())
+				&& key.contains(entry.getKey()))
+			{
+				best = candidate;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,268 @@
+package com.questnextaction.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The shops selling one item, sorted by base price, and what buying several units from each costs.
+ *
+ * Shops raise their price as their stock runs down: each unit bought below base stock adds
+ * {@link #PRICE_INCREASE_PER_MILLE} per mille of the base price. The data does not record a rate per
+ * shop, so one rate is used for all of them. Because the rise is linear, the cumulative cost of n
+ * units is an arithmetic series with a closed form, so the cost of any quantity at any shop is
+ * O(1) without storing a cost table per price. Shops with unlimited stock (-1) never raise their price.
+ *
+ * Prices and stocks are kept as int columns next to the shops, so ranking offers scans primitive
+ * arrays and only creates an offer object per result.
+ */
+final class PriceLadder
+{
+	static final int PRICE_INCREASE_PER_MILLE = 30;
+
+	/**
+	 * Ranges of more item names than this are split into tasks when built on a fork-join pool
+	 */
+	private static final int PARALLEL_NAMES = 128;
+
+	private final Shop[] shops;
+	private final ShopItem[] items;
+	private final int[] prices;
+	private final int[] stocks;
+
+	private PriceLadder(Shop[] shops, ShopItem[] items, int[] prices, int[] stocks)
+	{
+		this.shops = shops;
+		this.items = items;
+		this.prices = prices;
+		this.stocks = stocks;
+	}
+
+	/**
+	 * Build the ladders of the items sold by the shops, by lowercased item name. Only the given items
+	 * are built, or every item if {@code keys} is null.
+	 */
+	static Map<String, PriceLadder> buildAll(List<Shop> shops, Set<String> keys)
+	{
+		return buildAll(ShopInventoryColumns.build(shops), shops, keys);
+	}
+
+	/**
+	 * Build ladders from the columns of the same shops
+	 */
+	static Map<String, PriceLadder> buildAll(ShopInventoryColumns columns, List<Shop> shops, Set<String> keys)
+	{
+		boolean[] wanted = null;
+		if (keys != null)
+		{
+			wanted = new boolean[columns.nameCount()];
+			for (String key : keys)
+			{
+				int nameId = columns.nameIdOf(key);
+				if (nameId != ShopInventoryColumns.NO_NAME)
+				{
+					wanted[nameId] = true;
+				}
+			}
+		}
+
+		Listings[] listings = new Listings[columns.nameCount()];
+		int count = 0;
+		for (int shop = 0; shop < columns.shopCount(); shop++)
+		{
+			for (int row = columns.shopOffset(shop); row < columns.shopOffset(shop + 1); row++)
+			{
+				int nameId = columns.nameId(row);
+				if (nameId == ShopInventoryColumns.NO_NAME || columns.stock(row) == 0
+					|| wanted != null && !wanted[nameId])
+				{
+					continue;
+				}
+
+				if (listings[nameId] == null)
+				{
+					listings[nameId] = new Listings();
+					count++;
+				}
+				listings[nameId].add(shop, row, columns);
+			}
+		}
+
+		PriceLadder[] built = new PriceLadder[listings.length];
+		build(listings, built, 0, listings.length, columns, shops);
+
+		Map<String, PriceLadder> ladders = new HashMap<>((int) (count / 0.75f) + 1);
+		for (int nameId = 0; nameId < built.length; nameId++)
+		{
+			if (built[nameId] != null)
+			{
+				ladders.put(columns.name(nameId), built[nameId]);
+			}
+		}
+		return ladders;
+	}
+
+	/**
+	 * Build the ladders of a range of name ids, splitting the range into tasks when built on a
+	 * fork-join pool. Each ladder only depends on its own listings.
+	 */
+	private static void build(Listings[] listings, PriceLadder[] ladders, int from, int to,
+		ShopInventoryColumns columns, List<Shop> shops)
+	{
+		if (to - from > PARALLEL_NAMES && ForkJoinTask.inForkJoinPool())
+		{
+			int mid = (from + to) >>> 1;
+			ForkJoinTask.invokeAll(
+				ForkJoinTask.adapt(() -> build(listings, ladders, from, mid, columns, shops)),
+				ForkJoinTask.adapt(() -> build(listings, ladders, mid, to, columns, shops)));
+			return;
+		}
+
+		for (int nameId = from; nameId < to; nameId++)
+		{
+			if (listings[nameId] != null)
+			{
+				ladders[nameId] = listings[nameId].build(columns, shops);
+			}
+		}
+	}
+
+	/**
+	 * Rows listing an item, in shop order, while building its ladder
+	 */
+	private static final class Listings
+	{
+		private int[] shops = new int[4];
+		private int[] rows = new int[4];
+		private int size;
+
+		void add(int shop, int row, ShopInventoryColumns columns)
+		{
+			// A shop listing the item more than once is offered at its cheapest listing
+			if (size > 0 && shops[size - 1] == shop)
+			{
+				if (columns.price(row) < columns.price(rows[size - 1]))
+				{
+					rows[size - 1] = row;
+				}
+				return;
+			}
+
+			if (size == shops.length)
+			{
+				shops = Arrays.copyOf(shops, size * 2);
+				rows = Arrays.copyOf(rows, size * 2);
+			}
+			shops[size] = shop;
+			rows[size] = row;
+			size++;
+		}
+
+		PriceLadder build(ShopInventoryColumns columns, List<Shop> shopList)
+		{
+			// Sort by price, then shop order, packed into one long so the sort is primitive
+			long[] order = new long[size];
+			for (int i = 0; i < size; i++)
+			{
+				order[i] = (long) columns.price(rows[i]) << 32 | i;
+			}
+			Arrays.sort(order);
+
+			Shop[] sortedShops = new Shop[size];
+			ShopItem[] sortedItems = new ShopItem[size];
+			int[] prices = new int[size];
+			int[] stocks = new int[size];
+			for (int i = 0; i < size; i++)
+			{
+				int index = (int) order[i];
+				int row = rows[index];
+				sortedShops[i] = shopList.get(shops[index]);
+				sortedItems[i] = sortedShops[i].getItems().get(row - columns.shopOffset(shops[index]));
+				prices[i] = columns.price(row);
+				stocks[i] = columns.stock(row);
+			}
+
+			return new PriceLadder(sortedShops, sortedItems, prices, stocks);
+		}
+	}
+
+	/**
+	 * Cost of buying units from full stock: the base price for each unit plus the rise for each unit
+	 * already bought, 0 + 1 + ... + (units - 1) rises in total, rounded down to whole coins
+	 */
+	static long totalCost(int price, int units)
+	{
+		long rises = (long) units * (units - 1) / 2;
+		return (long) price * units + price * rises * PRICE_INCREASE_PER_MILLE / 1000;
+	}
+
+	/**
+	 * Offers for buying a quantity, cheapest first. Shops with enough stock come first, ordered by
+	 * total cost; shops that would run out come after, most units first. Ties keep base price order.
+	 */
+	List<ShopOffer> cheapest(int quantity)
+	{
+		// The cost of a fixed number of units rises with the base price, so on a ladder already in
+		// price order, the shops with enough limited stock and those with unlimited stock are each
+		// in cost order and only need merging. Shops running out are sorted by units, then price.
+		int[] limited = new int[shops.length];
+		int[] unlimited = new int[shops.length];
+		long[] partial = new long[shops.length];
+		int limitedCount = 0;
+		int unlimitedCount = 0;
+		int partialCount = 0;
+		for (int i = 0; i < shops.length; i++)
+		{
+			if (stocks[i] < 0)
+			{
+				unlimited[unlimitedCount++] = i;
+			}
+			else if (stocks[i] >= quantity)
+			{
+				limited[limitedCount++] = i;
+			}
+			else
+			{
+				partial[partialCount++] = (long) (Integer.MAX_VALUE - stocks[i]) << 32 | i;
+			}
+		}
+
+		List<ShopOffer> offers = new ArrayList<>(shops.length);
+		int l = 0;
+		int u = 0;
+		while (l < limitedCount || u < unlimitedCount)
+		{
+			boolean takeLimited = u == unlimitedCount || l < limitedCount
+				&& compareCost(totalCost(prices[limited[l]], quantity), limited[l],
+					(long) prices[unlimited[u]] * quantity, unlimited[u]) < 0;
+			int i = takeLimited ? limited[l++] : unlimited[u++];
+			long cost = stocks[i] < 0 ? (long) prices[i] * quantity : totalCost(prices[i], quantity);
+			offers.add(new ShopOffer(shops[i], items[i], quantity, cost, true));
+		}
+
+		Arrays.sort(partial, 0, partialCount);
+		for (int p = 0; p < partialCount; p++)
+		{
+			int i = (int) partial[p];
+			offers.add(new ShopOffer(shops[i], items[i], stocks[i], totalCost(prices[i], stocks[i]), false));
+		}
+		return offers;
+	}
+
+	private static int compareCost(long cost, int rank, long otherCost, int otherRank)
+	{
+		return cost != otherCost ? Long.compare(cost, otherCost) : Integer.compare(rank, otherRank);
+	}
+
+	/**
+	 * Number of shops on the ladder
+	 */
+	int size()
+	{
+		return shops.length;
+	}
+}
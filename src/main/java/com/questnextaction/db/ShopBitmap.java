@@ -0,0 +1,392 @@
+package com.questnextaction.db;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of shop indexes, laid out like a roaring bitmap.
+ *
+ * Indexes are split into chunks of 65536 by their high 16 bits. A chunk holding at most
+ * {@link #ARRAY_LIMIT} indexes stores their low 16 bits as a sorted char array; a fuller chunk
+ * stores a 65536-bit bitmap. Sparse items (a few shops) cost a couple of bytes per shop, while
+ * items sold almost everywhere cost at most 8 KB per chunk, and intersections and unions work a
+ * chunk at a time with word operations or merges. A bitmap is immutable once built.
+ */
+final class ShopBitmap
+{
+	/**
+	 * Most indexes an array chunk holds; above this a bitmap chunk is smaller
+	 */
+	static final int ARRAY_LIMIT = 4096;
+
+	private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+
+	static final ShopBitmap EMPTY = new ShopBitmap(new char[0], new char[0][], new long[0][], new int[0], 0);
+
+	private final char[] keys;
+	private final char[][] arrays;
+	private final long[][] bitmaps;
+	private final int[] cardinalities;
+	private final int cardinality;
+
+	private ShopBitmap(char[] keys, char[][] arrays, long[][] bitmaps, int[] cardinalities, int cardinality)
+	{
+		this.keys = keys;
+		this.arrays = arrays;
+		this.bitmaps = bitmaps;
+		this.cardinalities = cardinalities;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Bitmap of the first {@code length} values of an ascending array without repeats
+	 */
+	static ShopBitmap of(int[] values, int length)
+	{
+		Chunks chunks = new Chunks();
+		int start = 0;
+		while (start < length)
+		{
+			char key = (char) (values[start] >>> 16);
+			int end = start;
+			while (end < length && values[end] >>> 16 == key)
+			{
+				end++;
+			}
+
+			int count = end - start;
+			if (count <= ARRAY_LIMIT)
+			{
+				char[] array = new char[count];
+				for (int i = 0; i < count; i++)
+				{
+					array[i] = (char) values[start + i];
+				}
+				chunks.add(key, array, null, count);
+			}
+			else
+			{
+				long[] bitmap = new long[BITMAP_WORDS];
+				for (int i = start; i < end; i++)
+				{
+					bitmap[(values[i] & 0xFFFF) >>> 6] |= 1L << values[i];
+				}
+				chunks.add(key, null, bitmap, count);
+			}
+			start = end;
+		}
+		return chunks.build();
+	}
+
+	/**
+	 * Number of indexes in the set
+	 */
+	int cardinality()
+	{
+		return cardinality;
+	}
+
+	boolean isEmpty()
+	{
+		return cardinality == 0;
+	}
+
+	boolean contains(int index)
+	{
+		int chunk = Arrays.binarySearch(keys, (char) (index >>> 16));
+		if (chunk < 0 || index < 0)
+		{
+			return false;
+		}
+		char low = (char) index;
+		return arrays[chunk] != null
+			? Arrays.binarySearch(arrays[chunk], low) >= 0
+			: (bitmaps[chunk][low >>> 6] & 1L << low) != 0;
+	}
+
+	/**
+	 * Call the action with each index, in ascending order
+	 */
+	void forEach(IntConsumer action)
+	{
+		for (int chunk = 0; chunk < keys.length; chunk++)
+		{
+			int high = keys[chunk] << 16;
+			if (arrays[chunk] != null)
+			{
+				for (char low : arrays[chunk])
+				{
+					action.accept(high | low);
+				}
+			}
+			else
+			{
+				long[] bitmap = bitmaps[chunk];
+				for (int w = 0; w < bitmap.length; w++)
+				{
+					for (long word = bitmap[w]; word != 0; word &= word - 1)
+					{
+						action.accept(high | w << 6 | Long.numberOfTrailingZeros(word));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indexes in both sets
+	 */
+	static ShopBitmap and(ShopBitmap a, ShopBitmap b)
+	{
+		if (a.isEmpty() || b.isEmpty())
+		{
+			return EMPTY;
+		}
+
+		Chunks chunks = new Chunks();
+		int i = 0;
+		int j = 0;
+		while (i < a.keys.length && j < b.keys.length)
+		{
+			if (a.keys[i] < b.keys[j])
+			{
+				i++;
+			}
+			else if (a.keys[i] > b.keys[j])
+			{
+				j++;
+			}
+			else
+			{
+				chunks.addAnd(a.keys[i], a.arrays[i], a.bitmaps[i], b.arrays[j], b.bitmaps[j]);
+				i++;
+				j++;
+			}
+		}
+		return chunks.build();
+	}
+
+	/**
+	 * Indexes in either set
+	 */
+	static ShopBitmap or(ShopBitmap a, ShopBitmap b)
+	{
+		if (a.isEmpty())
+		{
+			return b;
+		}
+		if (b.isEmpty())
+		{
+			return a;
+		}
+
+		Chunks chunks = new Chunks();
+		int i = 0;
+		int j = 0;
+		while (i < a.keys.length || j < b.keys.length)
+		{
+			if (j == b.keys.length || i < a.keys.length && a.keys[i] < b.keys[j])
+			{
+				chunks.add(a.keys[i], a.arrays[i], a.bitmaps[i], a.cardinalities[i]);
+				i++;
+			}
+			else if (i == a.keys.length || a.keys[i] > b.keys[j])
+			{
+				chunks.add(b.keys[j], b.arrays[j], b.bitmaps[j], b.cardinalities[j]);
+				j++;
+			}
+			else
+			{
+				chunks.addOr(a.keys[i], a.arrays[i], a.bitmaps[i], b.arrays[j], b.bitmaps[j]);
+				i++;
+				j++;
+			}
+		}
+		return chunks.build();
+	}
+
+	/**
+	 * Chunks of a bitmap being built, in ascending key order. Chunks of the inputs are shared, not
+	 * copied, since they are never modified.
+	 */
+	private static final class Chunks
+	{
+		private char[] keys = new char[4];
+		private char[][] arrays = new char[4][];
+		private long[][] bitmaps = new long[4][];
+		private int[] cardinalities = new int[4];
+		private int size;
+		private int cardinality;
+
+		void add(char key, char[] array, long[] bitmap, int count)
+		{
+			if (count == 0)
+			{
+				return;
+			}
+			if (size == keys.length)
+			{
+				keys = Arrays.copyOf(keys, size * 2);
+				arrays = Arrays.copyOf(arrays, size * 2);
+				bitmaps = Arrays.copyOf(bitmaps, size * 2);
+				cardinalities = Arrays.copyOf(cardinalities, size * 2);
+			}
+			keys[size] = key;
+			arrays[size] = array;
+			bitmaps[size] = bitmap;
+			cardinalities[size] = count;
+			size++;
+			cardinality += count;
+		}
+
+		void addAnd(char key, char[] a, long[] aBits, char[] b, long[] bBits)
+		{
+			if (a != null && b != null)
+			{
+				char[] both = new char[Math.min(a.length, b.length)];
+				int count = 0;
+				int i = 0;
+				int j = 0;
+				while (i < a.length && j < b.length)
+				{
+					if (a[i] < b[j])
+					{
+						i++;
+					}
+					else if (a[i] > b[j])
+					{
+						j++;
+					}
+					else
+					{
+						both[count++] = a[i];
+						i++;
+						j++;
+					}
+				}
+				add(key, Arrays.copyOf(both, count), null, count);
+			}
+			else if (a != null || b != null)
+			{
+				char[] array = a != null ? a : b;
+				long[] bitmap = a != null ? bBits : aBits;
+				char[] both = new char[array.length];
+				int count = 0;
+				for (char low : array)
+				{
+					if ((bitmap[low >>> 6] & 1L << low) != 0)
+					{
+						both[count++] = low;
+					}
+				}
+				add(key, Arrays.copyOf(both, count), null, count);
+			}
+			else
+			{
+				long[] both = new long[BITMAP_WORDS];
+				int count = 0;
+				for (int w = 0; w < BITMAP_WORDS; w++)
+				{
+					both[w] = aBits[w] & bBits[w];
+					count += Long.bitCount(both[w]);
+				}
+				addBitmap(key, both, count);
+			}
+		}
+
+		void addOr(char key, char[] a, long[] aBits, char[] b, long[] bBits)
+		{
+			if (a != null && b != null && a.length + b.length <= ARRAY_LIMIT)
+			{
+				char[] either = new char[a.length + b.length];
+				int count = 0;
+				int i = 0;
+				int j = 0;
+				while (i < a.length || j < b.length)
+				{
+					if (j == b.length || i < a.length && a[i] < b[j])
+					{
+						either[count++] = a[i++];
+					}
+					else if (i == a.length || a[i] > b[j])
+					{
+						either[count++] = b[j++];
+					}
+					else
+					{
+						either[count++] = a[i];
+						i++;
+						j++;
+					}
+				}
+				add(key, Arrays.copyOf(either, count), null, count);
+				return;
+			}
+
+			long[] either = aBits != null ? aBits.clone() : new long[BITMAP_WORDS];
+			if (aBits == null)
+			{
+				setAll(either, a);
+			}
+			if (bBits != null)
+			{
+				for (int w = 0; w < BITMAP_WORDS; w++)
+				{
+					either[w] |= bBits[w];
+				}
+			}
+			else
+			{
+				setAll(either, b);
+			}
+
+			int count = 0;
+			for (long word : either)
+			{
+				count += Long.bitCount(word);
+			}
+			addBitmap(key, either, count);
+		}
+
+		/**
+		 * Add a bitmap chunk, as an array chunk if it has become sparse enough
+		 */
+		private void addBitmap(char key, long[] bitmap, int count)
+		{
+			if (count > ARRAY_LIMIT)
+			{
+				add(key, null, bitmap, count);
+				return;
+			}
+
+			char[] array = new char[count];
+			int i = 0;
+			for (int w = 0; w < bitmap.length; w++)
+			{
+				for (long word = bitmap[w]; word != 0; word &= word - 1)
+				{
+					array[i++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+				}
+			}
+			add(key, array, null, count);
+		}
+
+		private static void setAll(long[] bitmap, char[] array)
+		{
+			for (char low : array)
+			{
+				bitmap[low >>> 6] |= 1L << low;
+			}
+		}
+
+		ShopBitmap build()
+		{
+			if (cardinality == 0)
+			{
+				return EMPTY;
+			}
+			return new ShopBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(arrays, size),
+				Arrays.copyOf(bitmaps, size), Arrays.copyOf(cardinalities, size), cardinality);
+		}
+	}
+}
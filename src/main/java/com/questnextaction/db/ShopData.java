@@ -0,0 +1,458 @@
+package com.questnextaction.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * One version of the loaded shop data and every index derived from it.
+ *
+ * A ShopData is never modified once built, and the collections it hands out are read-only, so any
+ * number of threads can read one without locking. Changes produce a new instance via
+ * {@link #withChanges(Map)}, so a reload can be published by swapping a single reference.
+ *
+ * Applying changes is not fully incremental: it costs time linear in the total number of shop
+ * items, as the inventory columns and item ID index are rebuilt over all shops in one pass each,
+ * on every edit to the user's shops file and every region pack loaded or evicted. The per-item
+ * shop lists, price ladders and coverage bitmaps are only rebuilt for the items sold by changed
+ * shops (the coverage bitmaps for every item if a shop was removed, as that moves the shops after
+ * it), and the name and spatial indexes only when their input changed.
+ *
+ * A full build runs the independent index builders as tasks on a fork-join pool. Every index is
+ * a function of the shop list alone, so the result does not depend on the pool's parallelism.
+ *
+ * When shops are loaded per region, the data also records which regions it holds, and item names
+ * from the region directory stay searchable while the shops selling them are not loaded.
+ */
+final class ShopData
+{
+	static final ShopData EMPTY = build(new ArrayList<>(), new HashMap<>(), new HashMap<>(), new ItemCatalog());
+
+	/**
+	 * Fewer shops than this are indexed on the calling thread, where forking would cost more than it saves
+	 */
+	private static final int PARALLEL_BUILD_SHOPS = 2000;
+
+	private final List<Shop> shops;
+	private final Map<String, Shop> shopsById;
+	private final Map<String, Integer> positions;
+	private final Map<String, List<Shop>> itemToShops;
+	private final ItemCatalog catalog;
+	private final ItemIdIndex itemIdIndex;
+	private final List<Shop>[] shopsByItemSlot;
+	private final ItemCoverageIndex coverageIndex;
+	private final ItemNameIndex nameIndex;
+	private final FuzzyItemIndex fuzzyIndex;
+	private final ShopSpatialIndex spatialIndex;
+	private final Map<String, PriceLadder> priceLadders;
+	private final Set<String> fixedNames;
+	private final boolean[] loadedRegions;
+
+	private ShopData(List<Shop> shops, Map<String, Shop> shopsById, Map<String, Integer> positions,
+		Map<String, List<Shop>> itemToShops, ItemCatalog catalog, ItemIdIndex itemIdIndex, ItemCoverageIndex coverageIndex, ItemNameIndex nameIndex,
+		FuzzyItemIndex fuzzyIndex, ShopSpatialIndex spatialIndex, Map<String, PriceLadder> priceLadders,
+		Set<String> fixedNames, boolean[] loadedRegions)
+	{
+		this.shops = shops;
+		this.shopsById = Collections.unmodifiableMap(shopsById);
+		this.positions = positions;
+		this.itemToShops = Collections.unmodifiableMap(itemToShops);
+		this.catalog = catalog;
+		this.itemIdIndex = itemIdIndex;
+		this.shopsByItemSlot = buildShopsByItemSlot(itemIdIndex, shops);
+		this.coverageIndex = coverageIndex;
+		this.nameIndex = nameIndex;
+		this.fuzzyIndex = fuzzyIndex;
+		this.spatialIndex = spatialIndex;
+		this.priceLadders = priceLadders;
+		this.fixedNames = fixedNames;
+		this.loadedRegions = loadedRegions;
+	}
+
+	private ShopData(ShopData data, boolean[] loadedRegions)
+	{
+		this.shops = data.shops;
+		this.shopsById = data.shopsById;
+		this.positions = data.positions;
+		this.itemToShops = data.itemToShops;
+		this.catalog = data.catalog;
+		this.itemIdIndex = data.itemIdIndex;
+		this.shopsByItemSlot = data.shopsByItemSlot;
+		this.coverageIndex = data.coverageIndex;
+		this.nameIndex = data.nameIndex;
+		this.fuzzyIndex = data.fuzzyIndex;
+		this.spatialIndex = data.spatialIndex;
+		this.priceLadders = data.priceLadders;
+		this.fixedNames = data.fixedNames;
+		this.loadedRegions = loadedRegions;
+	}
+
+	/**
+	 * Build the indexes for freshly loaded shops on the common fork-join pool
+	 */
+	static ShopData build(List<Shop> shops, Map<String, Shop> shopsById, Map<String, List<Shop>> itemToShops,
+		ItemCatalog catalog)
+	{
+		return build(shops, shopsById, itemToShops, catalog, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Build the indexes for freshly loaded shops, side by side on the given pool
+	 */
+	static ShopData build(List<Shop> shops, Map<String, Shop> shopsById, Map<String, List<Shop>> itemToShops,
+		ItemCatalog catalog, ForkJoinPool pool)
+	{
+		itemToShops.replaceAll((item, itemShops) -> Collections.unmodifiableList(itemShops));
+		ShopInventoryColumns columns = ShopInventoryColumns.build(shops);
+		Set<String> names = itemToShops.keySet();
+
+		// The builders only read the shops and columns; the spatial index and price ladders also
+		// fork their own subtasks when they run on the pool
+		ForkJoinTask<ItemIdIndex> itemIdIndex = ForkJoinTask.adapt(() -> ItemIdIndex.build(columns));
+		ForkJoinTask<ItemCoverageIndex> coverageIndex = ForkJoinTask.adapt(() -> ItemCoverageIndex.build(columns));
+		ForkJoinTask<ItemNameIndex> nameIndex = ForkJoinTask.adapt(() -> ItemNameIndex.build(names));
+		ForkJoinTask<FuzzyItemIndex> fuzzyIndex = ForkJoinTask.adapt(() -> FuzzyItemIndex.build(names));
+		ForkJoinTask<ShopSpatialIndex> spatialIndex = ForkJoinTask.adapt(() -> ShopSpatialIndex.build(shops));
+		ForkJoinTask<Map<String, PriceLadder>> priceLadders =
+			ForkJoinTask.adapt(() -> PriceLadder.buildAll(columns, shops, null));
+		List<ForkJoinTask<?>> builders = Arrays.asList(itemIdIndex, coverageIndex, nameIndex, fuzzyIndex,
+			spatialIndex, priceLadders);
+
+		if (shops.size() < PARALLEL_BUILD_SHOPS)
+		{
+			builders.forEach(ForkJoinTask::invoke);
+		}
+		else
+		{
+			pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(builders)));
+		}
+
+		return new ShopData(shops, shopsById, positionsOf(shops, shopsById), itemToShops, catalog,
+			itemIdIndex.join(), coverageIndex.join(),
+			nameIndex.join(), fuzzyIndex.join(), spatialIndex.join(), priceLadders.join(),
+			Collections.emptySet(), null);
+	}
+
+	/**
+	 * Data with no regions loaded yet, whose item names are those of the region directory
+	 */
+	static ShopData forRegions(ShopRegionDirectory directory)
+	{
+		Set<String> names = directory.itemNames();
+		List<Shop> shops = new ArrayList<>();
+		ShopInventoryColumns columns = ShopInventoryColumns.build(shops);
+		return new ShopData(shops, new HashMap<>(), new HashMap<>(), new HashMap<>(), directory.getCatalog(),
+			ItemIdIndex.build(columns), ItemCoverageIndex.build(columns),
+			ItemNameIndex.build(names), FuzzyItemIndex.build(names), ShopSpatialIndex.build(shops),
+			new HashMap<>(), names, new boolean[directory.regionCount()]);
+	}
+
+	/**
+	 * Position in the shop list of each shop by ID, for the shop {@code shopsById} holds
+	 */
+	private static Map<String, Integer> positionsOf(List<Shop> shops, Map<String, Shop> shopsById)
+	{
+		Map<String, Integer> positions = new HashMap<>((int) (shops.size() / 0.75f) + 1);
+		for (int i = 0; i < shops.size(); i++)
+		{
+			Shop shop = shops.get(i);
+			if (shop.getId() != null && shopsById.get(shop.getId()) == shop)
+			{
+				positions.put(shop.getId(), i);
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * A lookup list per item ID slot, so lookups by item ID do not allocate
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Shop>[] buildShopsByItemSlot(ItemIdIndex itemIdIndex, List<Shop> shops)
+	{
+		List<Shop>[] shopsByItemSlot = new List[itemIdIndex.capacity()];
+		for (int slot = 0; slot < shopsByItemSlot.length; slot++)
+		{
+			int[] shopIndexes = itemIdIndex.valueAt(slot);
+			if (shopIndexes != null)
+			{
+				Shop[] itemShops = new Shop[shopIndexes.length];
+				for (int i = 0; i < shopIndexes.length; i++)
+				{
+					itemShops[i] = shops.get(shopIndexes[i]);
+				}
+				shopsByItemSlot[slot] = Collections.unmodifiableList(Arrays.asList(itemShops));
+			}
+		}
+		return shopsByItemSlot;
+	}
+
+	/**
+	 * Apply shop changes keyed by shop ID: a shop replaces the one with its ID or is added at the
+	 * end, and a null value removes the shop. Returns this instance if nothing actually changed.
+	 * Otherwise the inventory columns and item ID index are rebuilt over all shops.
+	 */
+	ShopData withChanges(Map<String, Shop> changes)
+	{
+		return withChanges(changes, loadedRegions);
+	}
+
+	/**
+	 * Apply shop changes that load or evict regions, recording which regions are now loaded
+	 */
+	ShopData withChanges(Map<String, Shop> changes, boolean[] loadedRegions)
+	{
+		Map<String, Shop> effective = new LinkedHashMap<>();
+		for (Map.Entry<String, Shop> change : changes.entrySet())
+		{
+			if (!Objects.equals(shopsById.get(change.getKey()), change.getValue()))
+			{
+				effective.put(change.getKey(), change.getValue());
+			}
+		}
+
+		if (effective.isEmpty())
+		{
+			return Arrays.equals(loadedRegions, this.loadedRegions) ? this : new ShopData(this, loadedRegions);
+		}
+
+		List<Shop> newShops = new ArrayList<>(shops);
+		Map<String, Shop> newShopsById = new HashMap<>(shopsById);
+		Map<String, Integer> newPositions = new HashMap<>(positions);
+		boolean removed = false;
+		Map<String, List<Shop>> newItemToShops = new HashMap<>(itemToShops);
+		Set<String> touchedItems = new HashSet<>();
+		boolean locationsChanged = false;
+
+		for (Map.Entry<String, Shop> change : effective.entrySet())
+		{
+			Shop oldShop = shopsById.get(change.getKey());
+			Shop newShop = change.getValue();
+
+			if (oldShop != null)
+			{
+				touchedItems.addAll(itemKeys(oldShop));
+			}
+			if (newShop != null)
+			{
+				touchedItems.addAll(itemKeys(newShop));
+			}
+
+			// Removed shops leave a gap that is closed once all changes are applied, so positions stay valid
+			Integer position = oldShop != null ? positions.get(change.getKey()) : null;
+			if (newShop == null)
+			{
+				if (position != null)
+				{
+					newShops.set(position, null);
+					removed = true;
+				}
+				newShopsById.remove(change.getKey());
+			}
+			else if (position != null)
+			{
+				newShops.set(position, newShop);
+				newShopsById.put(change.getKey(), newShop);
+			}
+			else
+			{
+				newPositions.put(change.getKey(), newShops.size());
+				newShops.add(newShop);
+				newShopsById.put(change.getKey(), newShop);
+			}
+
+			locationsChanged |= oldShop == null || newShop == null
+				|| !Objects.equals(oldShop.getWorldPoint(), newShop.getWorldPoint());
+		}
+
+		if (removed)
+		{
+			newShops.removeIf(Objects::isNull);
+			newPositions = positionsOf(newShops, newShopsById);
+		}
+
+		// Only the lists of items sold by a changed shop need rebuilding; they keep shop order
+		ShopInventoryColumns columns = ShopInventoryColumns.build(newShops);
+		boolean[] touchedNames = new boolean[columns.nameCount()];
+		for (String item : touchedItems)
+		{
+			newItemToShops.remove(item);
+			int nameId = columns.nameIdOf(item);
+			if (nameId != ShopInventoryColumns.NO_NAME)
+			{
+				touchedNames[nameId] = true;
+			}
+		}
+		for (int shop = 0; shop < columns.shopCount(); shop++)
+		{
+			for (int row = columns.shopOffset(shop); row < columns.shopOffset(shop + 1); row++)
+			{
+				int nameId = columns.nameId(row);
+				if (nameId != ShopInventoryColumns.NO_NAME && touchedNames[nameId])
+				{
+					newItemToShops.computeIfAbsent(columns.name(nameId), k -> new ArrayList<>()).add(newShops.get(shop));
+				}
+			}
+		}
+		for (String item : touchedItems)
+		{
+			newItemToShops.computeIfPresent(item, (k, itemShops) -> Collections.unmodifiableList(itemShops));
+		}
+
+		// The catalog is only copied if a name is new, which loading a region pack usually is not
+		ItemCatalog newCatalog = catalog;
+		for (Shop shop : effective.values())
+		{
+			if (shop != null)
+			{
+				for (ShopItem shopItem : shop.getItems())
+				{
+					String name = shopItem.getName();
+					if (name != null && !name.equals(newCatalog.getName(shopItem.getItemId())))
+					{
+						newCatalog = newCatalog == catalog ? catalog.copy() : newCatalog;
+						newCatalog.addName(shopItem.getItemId(), name);
+					}
+				}
+			}
+		}
+
+		// The name indexes only depend on which item names exist, and only touched names can change
+		boolean namesChanged = false;
+		for (String item : touchedItems)
+		{
+			namesChanged |= !fixedNames.contains(item)
+				&& itemToShops.containsKey(item) != newItemToShops.containsKey(item);
+		}
+
+		Map<String, PriceLadder> newPriceLadders = new HashMap<>(priceLadders);
+		newPriceLadders.keySet().removeAll(touchedItems);
+		newPriceLadders.putAll(PriceLadder.buildAll(columns, newShops, touchedItems));
+
+		Set<String> names = namesChanged ? searchableNames(newItemToShops) : null;
+		return new ShopData(newShops, newShopsById, newPositions, newItemToShops, newCatalog,
+			ItemIdIndex.build(columns),
+			removed ? ItemCoverageIndex.build(columns) : coverageIndex.withItems(columns, touchedNames, touchedItems),
+			namesChanged ? ItemNameIndex.build(names) : nameIndex,
+			namesChanged ? FuzzyItemIndex.build(names) : fuzzyIndex,
+			locationsChanged ? ShopSpatialIndex.build(newShops) : spatialIndex,
+			newPriceLadders, fixedNames, loadedRegions);
+	}
+
+	private Set<String> searchableNames(Map<String, List<Shop>> itemToShops)
+	{
+		if (fixedNames.isEmpty())
+		{
+			return itemToShops.keySet();
+		}
+
+		Set<String> names = new HashSet<>(fixedNames);
+		names.addAll(itemToShops.keySet());
+		return names;
+	}
+
+	private static Set<String> itemKeys(Shop shop)
+	{
+		Set<String> keys = new HashSet<>();
+		for (ShopItem item : shop.getItems())
+		{
+			if (item.getName() != null)
+			{
+				keys.add(item.getName().toLowerCase());
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Read-only view of the shops. Each call returns a new view of the same list.
+	 */
+	List<Shop> getShops()
+	{
+		return Collections.unmodifiableList(shops);
+	}
+
+	Map<String, Shop> getShopsById()
+	{
+		return shopsById;
+	}
+
+	Map<String, List<Shop>> getItemToShops()
+	{
+		return itemToShops;
+	}
+
+	ItemCatalog getCatalog()
+	{
+		return catalog;
+	}
+
+	/**
+	 * Shops selling an item ID, or null if none do
+	 */
+	List<Shop> getShopsByItemId(int itemId)
+	{
+		int slot = itemIdIndex.slotOf(itemId);
+		return slot >= 0 ? shopsByItemSlot[slot] : null;
+	}
+
+	/**
+	 * Which shops sell each item, as bitmaps of positions in {@link #getShops()}
+	 */
+	ItemCoverageIndex getCoverageIndex()
+	{
+		return coverageIndex;
+	}
+
+	/**
+	 * Read-only list of the shops at the positions in a bitmap of this data's coverage index,
+	 * in shop order
+	 */
+	List<Shop> shopsAt(ShopBitmap positions)
+	{
+		Shop[] result = new Shop[positions.cardinality()];
+		int[] next = {0};
+		positions.forEach(position -> result[next[0]++] = shops.get(position));
+		return Collections.unmodifiableList(Arrays.asList(result));
+	}
+
+	/**
+	 * Shops selling an item by price, by lowercased name, or null if no shop has it in stock
+	 */
+	PriceLadder getPriceLadder(String key)
+	{
+		return priceLadders.get(key);
+	}
+
+	/**
+	 * Whether a region is loaded, when shops are loaded per region
+	 */
+	boolean hasRegion(int ordinal)
+	{
+		return loadedRegions == null || loadedRegions[ordinal];
+	}
+
+	ItemNameIndex getNameIndex()
+	{
+		return nameIndex;
+	}
+
+	FuzzyItemIndex getFuzzyIndex()
+	{
+		return fuzzyIndex;
+	}
+
+	ShopSpatialIndex getSpatialIndex()
+	{
+		return spatialIndex;
+	}
+}
@@ -0,0 +1,170 @@
+package com.questnextaction.db;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.coords.WorldPoint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Converts shops data to the version 2 format read by {@link ShopJsonParser}.
+ *
+ * Version 2 names each item once in a catalog keyed by item ID rather than in every shop selling
+ * it, lists a shop's items as {@code [itemId, stock, price]} and packs its location into one int.
+ * Files in either format can be converted. An item ID with more than one name cannot be written
+ * as version 2, so such a file is rejected.
+ */
+@Slf4j
+public final class ShopDataConverter
+{
+	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+	private ShopDataConverter()
+	{
+	}
+
+	/**
+	 * Write shops in the version 2 format: the item catalog one item per line, then one shop per line
+	 */
+	static void write(List<Shop> shops, Writer out) throws IOException
+	{
+		Map<Integer, String> names = itemNames(shops);
+
+		out.write("{\n  \"version\": " + ShopJsonParser.VERSION + ",\n  \"items\": {");
+		String separator = "\n    ";
+		for (Map.Entry<Integer, String> entry : names.entrySet())
+		{
+			out.write(separator + '"' + entry.getKey() + "\": " + GSON.toJson(entry.getValue()));
+			separator = ",\n    ";
+		}
+		out.write("\n  },\n  \"shops\": [");
+
+		separator = "\n    ";
+		for (Shop shop : shops)
+		{
+			out.write(separator);
+			writeShop(shop, out);
+			separator = ",\n    ";
+		}
+		out.write("\n  ]\n}\n");
+		out.flush();
+	}
+
+	/**
+	 * The name of every item ID sold, in item ID order
+	 */
+	private static Map<Integer, String> itemNames(List<Shop> shops)
+	{
+		Map<Integer, String> names = new TreeMap<>();
+		for (Shop shop : shops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				if (!names.containsKey(item.getItemId()))
+				{
+					names.put(item.getItemId(), item.getName());
+				}
+				else if (!Objects.equals(names.get(item.getItemId()), item.getName()))
+				{
+					throw new IllegalArgumentException("Item " + item.getItemId() + " is named both '"
+						+ names.get(item.getItemId()) + "' and '" + item.getName() + "' in shop " + shop.getId());
+				}
+			}
+		}
+		return names;
+	}
+
+	private static void writeShop(Shop shop, Writer out) throws IOException
+	{
+		// Each shop is a complete JSON value, so it gets its own writer on the shared output
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject();
+		writeString(json, "id", shop.getId());
+		writeString(json, "name", shop.getName());
+		writeString(json, "owner", shop.getOwner());
+		writeString(json, "location", shop.getLocation());
+
+		WorldPoint point = shop.getWorldPoint();
+		if (point != null)
+		{
+			if (ShopJsonParser.canPackCoord(point.getX(), point.getY(), point.getPlane()))
+			{
+				json.name("coord").value(ShopJsonParser.packCoord(point.getX(), point.getY(), point.getPlane()));
+			}
+			else
+			{
+				json.name("x").value(point.getX());
+				json.name("y").value(point.getY());
+				json.name("plane").value(point.getPlane());
+			}
+		}
+
+		json.name("items").beginArray();
+		for (ShopItem item : shop.getItems())
+		{
+			json.beginArray().value(item.getItemId()).value(item.getStock()).value(item.getPrice()).endArray();
+		}
+		json.endArray();
+		json.endObject();
+		json.flush();
+	}
+
+	private static void writeString(JsonWriter json, String name, String value) throws IOException
+	{
+		// Missing fields are read back as null, so nulls are left out
+		if (value != null)
+		{
+			json.name(name).value(value);
+		}
+	}
+
+	/**
+	 * Build-time entry point: convert a shops file in either format to version 2. The input is
+	 * read in full before the output is written, so a file can be converted in place.
+	 *
+	 * Usage: ShopDataConverter &lt;input.json&gt; &lt;output.json&gt;
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2)
+		{
+			System.err.println("Usage: ShopDataConverter <input.json> <output.json>");
+			System.exit(1);
+		}
+
+		Path source = Paths.get(args[0]);
+		Path target = Paths.get(args[1]);
+		long sourceSize = Files.size(source);
+
+		List<Shop> shops;
+		try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8))
+		{
+			shops = ShopJsonParser.readShops(reader);
+		}
+
+		if (target.getParent() != null)
+		{
+			Files.createDirectories(target.getParent());
+		}
+
+		try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8))
+		{
+			write(shops, writer);
+		}
+
+		log.info("Converted {} shops from {} ({} bytes) into {} ({} bytes)",
+			shops.size(), source, sourceSize, target, Files.size(target));
+	}
+}
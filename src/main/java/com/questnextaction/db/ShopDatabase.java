@@ -1,98 +1,586 @@
 package com.questnextaction.db;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.coords.WorldPoint;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Database of shops and items they sell
  * Similar to the approach used by "Not Enough Runes" plugin
+ *
+ * All read state lives in one immutable {@link ShopData} that is swapped when the data changes, so
+ * queries never lock and may be made from any thread. Returned lists are read-only, and the shops
+ * in them are shared and must not be modified.
+ *
+ * When shops are loaded per region, a query that needs a region pack that is not loaded reads it
+ * on the calling thread. Code on the Swing event thread should run such queries through
+ * {@link #query(Function)} instead.
  */
 @Slf4j
 @Singleton
 public class ShopDatabase
 {
 	private static final String SHOPS_DATA_FILE = "/com/questnextaction/data/shops.json";
+	private static final String SHOPS_SNAPSHOT_FILE = "/com/questnextaction/data/shops.bin";
+	private static final String SHOP_REGIONS_DIR = "/com/questnextaction/data/regions/";
 
-	private List<Shop> shops = new ArrayList<>();
-	private Map<String, List<Shop>> itemToShopsMap = new HashMap<>();
-	private Map<String, Shop> shopsByIdMap = new HashMap<>();
+	/**
+	 * Encoded size of the region packs kept in memory before the least recently used are evicted
+	 */
+	static final long DEFAULT_REGION_CACHE_BYTES = 1024 * 1024;
+
+	private static final int NO_PLAYER_REGION = Integer.MIN_VALUE;
+
+	/**
+	 * Time a fuzzy search may take before returning what it has, so autocomplete stays responsive
+	 */
+	private static final long FUZZY_SEARCH_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * Time the shopping list planner may spend improving its first plan
+	 */
+	private static final long PLAN_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	/**
+	 * Items sold by at most this many shops are ranked directly instead of searching the spatial index
+	 */
+	private static final int NEAREST_SCAN_LIMIT = 32;
+
+	/**
+	 * Current shop data. Replaced as a whole when the data changes, so readers take one
+	 * consistent version without locking.
+	 */
+	private volatile ShopData data = ShopData.EMPTY;
+
+	/**
+	 * Shop data as bundled with the plugin, and the shops currently overridden by the user's file
+	 */
+	private ShopData bundledData = ShopData.EMPTY;
+	private Map<String, Shop> overrides = new LinkedHashMap<>();
+	private boolean bundledDataLoaded;
+	private ShopFileWatcher shopFileWatcher;
+
+	/**
+	 * Changed whenever a shops file starts or stops being watched, so that a file read by a
+	 * watcher that has since been replaced or stopped is not applied
+	 */
+	private long shopFileGeneration;
+
+	/**
+	 * Where region packs are read from, and the packs currently loaded. The cache is null when
+	 * there are no region packs and all shops are loaded up front.
+	 */
+	private final ShopRegionDirectory.PackReader packReader;
+	private final long regionCacheBytes;
+	private volatile ShopRegionCache regionCache;
+	private volatile int playerRegionId = NO_PLAYER_REGION;
+
+	private final Executor executor;
+
+	/**
+	 * Completed once the bundled data has been loaded
+	 */
+	private final CompletableFuture<Void> ready = new CompletableFuture<>();
 
+	/**
+	 * Create a database and load it on the calling thread
+	 */
 	public ShopDatabase()
 	{
-		loadShopsData();
+		this(Runnable::run);
+	}
+
+	/**
+	 * Create a database that loads in the background, so injecting it does not block plugin startup
+	 */
+	@Inject
+	public ShopDatabase(ScheduledExecutorService executor)
+	{
+		this((Executor) executor);
+	}
+
+	private ShopDatabase(Executor executor)
+	{
+		this.executor = executor;
+		this.packReader = name -> CompiledShopData.readResource(SHOP_REGIONS_DIR + name);
+		this.regionCacheBytes = DEFAULT_REGION_CACHE_BYTES;
+		executor.execute(this::load);
+	}
+
+	/**
+	 * Create a database that loads region packs from the given reader, on the calling thread
+	 */
+	ShopDatabase(ShopRegionDirectory.PackReader packReader, long regionCacheBytes)
+	{
+		this.executor = Runnable::run;
+		this.packReader = packReader;
+		this.regionCacheBytes = regionCacheBytes;
+		load();
+	}
+
+	/**
+	 * Create a database holding the shops read from a UTF-8 shops.json in place of the bundled
+	 * data, before returning
+	 */
+	ShopDatabase(ByteBuffer shopsJson) throws IOException
+	{
+		this.executor = Runnable::run;
+		this.packReader = name -> null;
+		this.regionCacheBytes = DEFAULT_REGION_CACHE_BYTES;
+		bundledData = readShopsData(shopsJson);
+		bundledDataLoaded = true;
+		data = bundledData;
+		ready.complete(null);
+	}
+
+	private void load()
+	{
+		try
+		{
+			long sourceChecksum = sourceChecksum();
+			ShopRegionDirectory directory;
+			ShopData loaded;
+			try
+			{
+				directory = loadRegionDirectory(sourceChecksum);
+				loaded = directory != null ? ShopData.forRegions(directory) : null;
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Failed to load shop regions, loading all shops instead", e);
+				directory = null;
+				loaded = null;
+			}
+			if (loaded == null)
+			{
+				loaded = loadShopsData(sourceChecksum);
+			}
+
+			synchronized (this)
+			{
+				regionCache = directory != null ? new ShopRegionCache(directory, regionCacheBytes) : null;
+				bundledData = loaded;
+				bundledDataLoaded = true;
+				try
+				{
+					data = loaded.withChanges(overrides);
+				}
+				catch (RuntimeException e)
+				{
+					// Cleared so that the next read of the file applies all of it
+					log.error("Failed to apply the shop data file, using the bundled shops", e);
+					overrides = new LinkedHashMap<>();
+					data = loaded;
+				}
+			}
+			pinPlayerRegion();
+		}
+		catch (RuntimeException e)
+		{
+			log.error("Failed to load shops data, no shops will be found", e);
+		}
+		finally
+		{
+			ready.complete(null);
+		}
+	}
+
+	/**
+	 * Whether shop data has finished loading. Until then queries return empty results.
+	 */
+	public boolean isReady()
+	{
+		return ready.isDone();
+	}
+
+	/**
+	 * Future completed once shop data has finished loading
+	 */
+	public CompletableFuture<Void> getReadyFuture()
+	{
+		return ready.copy();
+	}
+
+	/**
+	 * Checksum of the bundled shops.json that the snapshot and region packs must have been built
+	 * from, read once per load
+	 */
+	private static long sourceChecksum()
+	{
+		try
+		{
+			return CompiledShopData.checksumResource(SHOPS_DATA_FILE);
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to checksum shops data", e);
+			return CompiledShopData.NO_SOURCE;
+		}
+	}
+
+	/**
+	 * Read the region directory, if the shop data was split into region packs at build time
+	 */
+	private ShopRegionDirectory loadRegionDirectory(long sourceChecksum)
+	{
+		ShopRegionDirectory directory = ShopRegionDirectory.load(packReader, sourceChecksum);
+		if (directory != null)
+		{
+			log.debug("Loaded shop region directory with {} regions and {} items",
+				directory.regionCount(), directory.itemNames().size());
+		}
+		return directory;
 	}
 
 	/**
-	 * Load shops data from JSON file
+	 * Load shops data, preferring the precompiled snapshot and falling back to JSON
 	 */
-	private void loadShopsData()
+	private ShopData loadShopsData(long sourceChecksum)
 	{
-		try (InputStream is = ShopDatabase.class.getResourceAsStream(SHOPS_DATA_FILE))
+		CompiledShopData compiled = CompiledShopData.load(SHOPS_SNAPSHOT_FILE, sourceChecksum);
+		if (compiled != null)
+		{
+			Map<String, Shop> shopsById = new HashMap<>();
+			for (Shop shop : compiled.getShops())
+			{
+				shopsById.put(shop.getId(), shop);
+			}
+
+			log.debug("Loaded {} shops with {} unique items from snapshot",
+				compiled.getShops().size(), compiled.getItemIndex().size());
+			return ShopData.build(compiled.getShops(), shopsById, compiled.getItemIndex(), compiled.getCatalog());
+		}
+
+		try
 		{
-			if (is == null)
+			ByteBuffer json = CompiledShopData.readResource(SHOPS_DATA_FILE);
+			if (json == null)
 			{
 				log.warn("Shops data file not found: {}", SHOPS_DATA_FILE);
-				return;
+				return ShopData.EMPTY;
 			}
 
-			BufferedReader reader = new BufferedReader(
-				new InputStreamReader(is, StandardCharsets.UTF_8));
+			return readShopsData(json);
+		}
+		catch (Exception e)
+		{
+			log.error("Failed to load shops data", e);
+			return ShopData.EMPTY;
+		}
+	}
+
+	/**
+	 * Parse shops in the shops.json format and index them, in parallel on the common pool
+	 */
+	private static ShopData readShopsData(ByteBuffer json) throws IOException
+	{
+		List<Shop> shops = new ArrayList<>();
+		Map<String, Shop> shopsById = new HashMap<>();
+		Map<String, List<Shop>> itemToShops = new HashMap<>();
+		ItemCatalog catalog = new ItemCatalog();
+		ShopJsonParser.parse(json, ForkJoinPool.commonPool(), catalog, shops, shopsById, itemToShops);
+		catalog.trim();
 
-			Gson gson = new Gson();
-			Type listType = new TypeToken<List<ShopData>>(){}.getType();
-			List<ShopData> shopDataList = gson.fromJson(reader, listType);
+		log.debug("Loaded {} shops with {} unique items", shops.size(), itemToShops.size());
+		return ShopData.build(shops, shopsById, itemToShops, catalog);
+	}
 
-			// Convert ShopData to Shop objects
-			for (ShopData data : shopDataList)
+	/**
+	 * Watch a shops file that overrides the bundled data, applying its changes as it is edited.
+	 * The file may be in either version of the shops.json format; its shops replace bundled shops
+	 * with the same ID or are added to them. Any previously watched file is no longer watched.
+	 */
+	public synchronized void watchShopFile(Path file)
+	{
+		stopWatchingShopFile();
+
+		long generation = ++shopFileGeneration;
+		try
+		{
+			shopFileWatcher = new ShopFileWatcher(file, () ->
 			{
-				Shop shop = new Shop();
-				shop.setId(data.getId());
-				shop.setName(data.getName());
-				shop.setOwner(data.getOwner());
-				shop.setLocation(data.getLocation());
+				// Overrides are applied on top of the bundled data, so wait for it
+				ready.join();
+				reloadShopFile(file, generation);
+			});
+			log.debug("Watching shop data file {}", file);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to watch shop data file {}", file, e);
+		}
+	}
+
+	/**
+	 * Stop watching the shops file and go back to the bundled data
+	 */
+	public synchronized void stopWatchingShopFile()
+	{
+		if (shopFileWatcher != null)
+		{
+			shopFileWatcher.close();
+			shopFileWatcher = null;
+		}
+
+		// A watcher callback that is still running is not waited for, but its file is not applied
+		applyOverrides(new LinkedHashMap<>(), ++shopFileGeneration);
+	}
 
-				if (data.getX() != null && data.getY() != null && data.getPlane() != null)
+	synchronized long shopFileGeneration()
+	{
+		return shopFileGeneration;
+	}
+
+	/**
+	 * Read the shops file as if it were being watched now
+	 */
+	void reloadShopFile(Path file)
+	{
+		reloadShopFile(file, shopFileGeneration());
+	}
+
+	/**
+	 * Read the shops file and apply the shops that changed since it was last read, unless the file
+	 * watched has changed since the given generation. A missing file removes all overrides; a file
+	 * that fails to parse is ignored. The file is parsed without holding the lock, so queries are
+	 * not held up by a large file.
+	 */
+	void reloadShopFile(Path file, long generation)
+	{
+		Map<String, Shop> newOverrides = new LinkedHashMap<>();
+		if (Files.exists(file))
+		{
+			try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+			{
+				for (Shop shop : ShopJsonParser.readShops(reader))
 				{
-					shop.setCoordinates(data.getX(), data.getY(), data.getPlane());
+					if (shop.getId() != null)
+					{
+						newOverrides.put(shop.getId(), shop);
+					}
 				}
+			}
+			catch (IOException | RuntimeException e)
+			{
+				log.warn("Failed to read shop data file {}, keeping the current data", file, e);
+				return;
+			}
+		}
 
-				shop.setItems(data.getItems());
-				shops.add(shop);
-				shopsByIdMap.put(shop.getId(), shop);
+		applyOverrides(newOverrides, generation);
+	}
 
-				// Index items for quick lookup
-				for (ShopItem item : shop.getItems())
+	private synchronized void applyOverrides(Map<String, Shop> newOverrides, long generation)
+	{
+		if (generation != shopFileGeneration)
+		{
+			log.debug("Ignoring shop data file read before it stopped being watched");
+			return;
+		}
+
+		// Changed and added shops take effect; shops no longer overridden revert to the bundled version
+		Map<String, Shop> changes = new LinkedHashMap<>();
+		for (Shop shop : newOverrides.values())
+		{
+			if (!shop.equals(overrides.get(shop.getId())))
+			{
+				changes.put(shop.getId(), shop);
+			}
+		}
+		for (String id : overrides.keySet())
+		{
+			if (!newOverrides.containsKey(id))
+			{
+				changes.put(id, bundledShop(id));
+			}
+		}
+
+		overrides = newOverrides;
+		// Before the bundled data is loaded the overrides are applied by load()
+		if (!changes.isEmpty() && bundledDataLoaded)
+		{
+			data = data.withChanges(changes);
+			log.debug("Applied {} shop changes", changes.size());
+		}
+	}
+
+	/**
+	 * The bundled version of a shop, or null if there is none or its region is not loaded
+	 */
+	private Shop bundledShop(String id)
+	{
+		ShopRegionCache cache = regionCache;
+		return cache != null ? cache.shop(id) : bundledData.getShopsById().get(id);
+	}
+
+	/**
+	 * Set the region the player is in, given by {@link WorldPoint#getRegionID()}. Its shops are
+	 * loaded in the background and kept loaded while the player stays there.
+	 */
+	public void setPlayerRegion(int regionId)
+	{
+		if (regionId != playerRegionId)
+		{
+			playerRegionId = regionId;
+			pinPlayerRegion();
+		}
+	}
+
+	private void pinPlayerRegion()
+	{
+		ShopRegionCache cache = regionCache;
+		int regionId = playerRegionId;
+		if (cache == null || regionId == NO_PLAYER_REGION)
+		{
+			return;
+		}
+
+		int ordinal = cache.getDirectory().ordinalOf(regionId);
+		cache.pin(ordinal);
+		if (ordinal >= 0 && !data.hasRegion(ordinal))
+		{
+			executor.execute(() -> withRegions(new int[]{ordinal}));
+		}
+	}
+
+	/**
+	 * Current data with the given regions loaded. Does not allocate if they already are.
+	 */
+	private ShopData withRegions(int[] ordinals)
+	{
+		ShopData current = data;
+		ShopRegionCache cache = regionCache;
+		if (cache == null)
+		{
+			return current;
+		}
+
+		boolean loaded = true;
+		for (int ordinal : ordinals)
+		{
+			if (ordinal >= 0)
+			{
+				cache.touch(ordinal);
+				loaded &= current.hasRegion(ordinal);
+			}
+		}
+		return loaded ? current : loadRegions(cache, ordinals);
+	}
+
+	private synchronized ShopData loadRegions(ShopRegionCache cache, int[] ordinals)
+	{
+		// Overridden shops keep their user version whether or not their region is loaded
+		Map<String, Shop> changes = new LinkedHashMap<>();
+		for (int ordinal : ordinals)
+		{
+			if (ordinal >= 0 && cache.pack(ordinal) == null)
+			{
+				for (Shop shop : cache.load(ordinal))
 				{
-					String itemName = item.getName().toLowerCase();
-					itemToShopsMap.computeIfAbsent(itemName, k -> new ArrayList<>()).add(shop);
+					if (!overrides.containsKey(shop.getId()))
+					{
+						changes.put(shop.getId(), shop);
+					}
 				}
 			}
-
-			log.debug("Loaded {} shops with {} unique items", shops.size(), itemToShopsMap.size());
 		}
-		catch (Exception e)
+		for (Shop shop : cache.evict(ordinals))
 		{
-			log.error("Failed to load shops data", e);
+			if (!overrides.containsKey(shop.getId()))
+			{
+				changes.put(shop.getId(), null);
+			}
 		}
+
+		data = data.withChanges(changes, cache.loadedRegions());
+		return data;
+	}
+
+	/**
+	 * Run a query on the background executor once the shop data has loaded, so that any region
+	 * packs it needs are read there rather than on the calling thread
+	 */
+	public <T> CompletableFuture<T> query(Function<ShopDatabase, T> query)
+	{
+		return ready.thenApplyAsync(ignored -> query.apply(this), executor);
 	}
 
 	/**
-	 * Get all shops
+	 * Get all shops, as a read-only list that later changes do not affect. When shops are loaded
+	 * per region, the packs that are not loaded are read one at a time and not kept, so this
+	 * does not undo the cap on the memory the loaded packs take.
+	 *
+	 * The result is not cached, as keeping it would hold every shop in memory, so with region packs
+	 * each call reads and decodes every pack that is not loaded. Do not call it on the client
+	 * thread or the Swing event thread; use {@link #query(Function)} instead.
 	 */
 	public List<Shop> getAllShops()
 	{
-		return new ArrayList<>(shops);
+		ShopRegionCache cache = regionCache;
+		if (cache == null)
+		{
+			return data.getShops();
+		}
+
+		Map<String, Shop> currentOverrides;
+		synchronized (this)
+		{
+			currentOverrides = overrides;
+		}
+
+		// Overridden shops take the place of the bundled ones, and shops only the user's file has go last
+		ShopRegionDirectory directory = cache.getDirectory();
+		Map<String, Shop> added = new LinkedHashMap<>(currentOverrides);
+		List<Shop> shops = new ArrayList<>();
+		for (int ordinal = 0; ordinal < directory.regionCount(); ordinal++)
+		{
+			for (Shop shop : regionShops(cache, ordinal))
+			{
+				Shop override = added.remove(shop.getId());
+				shops.add(override != null ? override : shop);
+			}
+		}
+		shops.addAll(added.values());
+		return Collections.unmodifiableList(shops);
+	}
+
+	/**
+	 * The bundled shops of a region, from its pack if it is loaded and otherwise read without
+	 * loading it
+	 */
+	private static List<Shop> regionShops(ShopRegionCache cache, int ordinal)
+	{
+		List<Shop> pack = cache.pack(ordinal);
+		if (pack != null)
+		{
+			return pack;
+		}
+
+		try
+		{
+			return cache.getDirectory().readPack(ordinal);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Failed to read shop region {}", cache.getDirectory().regionId(ordinal), e);
+			return Collections.emptyList();
+		}
 	}
 
 	/**
@@ -100,7 +588,11 @@ public class ShopDatabase
 	 */
 	public Shop getShopById(String id)
 	{
-		return shopsByIdMap.get(id);
+		ShopRegionCache cache = regionCache;
+		ShopData data = cache != null && id != null
+			? withRegions(new int[]{cache.getDirectory().ordinalOfShop(id)})
+			: this.data;
+		return data.getShopsById().get(id);
 	}
 
 	/**
@@ -108,7 +600,176 @@ public class ShopDatabase
 	 */
 	public List<Shop> findShopsByItem(String itemName)
 	{
-		return itemToShopsMap.getOrDefault(itemName.toLowerCase(), Collections.emptyList());
+		if (itemName == null)
+		{
+			return Collections.emptyList();
+		}
+
+		String key = itemName.toLowerCase();
+		return itemRegions(key).getItemToShops().getOrDefault(key, Collections.emptyList());
+	}
+
+	/**
+	 * Current data with the regions selling an item loaded
+	 */
+	private ShopData itemRegions(String key)
+	{
+		ShopRegionCache cache = regionCache;
+		return cache != null ? withRegions(cache.getDirectory().ordinalsOfItem(key)) : data;
+	}
+
+	/**
+	 * Find shops that sell every one of the items, in shop order. The shops selling each item are
+	 * kept as bitmaps, so this intersects them without building a list per item.
+	 */
+	public List<Shop> findShopsSellingAll(Collection<String> itemNames)
+	{
+		Set<String> keys = itemKeys(itemNames);
+		if (keys.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		ShopData data = itemsRegions(keys, true);
+		return data.shopsAt(data.getCoverageIndex().sellingAll(keys));
+	}
+
+	/**
+	 * Find shops that sell at least one of the items, in shop order
+	 */
+	public List<Shop> findShopsSellingAny(Collection<String> itemNames)
+	{
+		Set<String> keys = itemKeys(itemNames);
+		if (keys.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		ShopData data = itemsRegions(keys, false);
+		return data.shopsAt(data.getCoverageIndex().sellingAny(keys));
+	}
+
+	private static Set<String> itemKeys(Collection<String> itemNames)
+	{
+		Set<String> keys = new LinkedHashSet<>();
+		if (itemNames != null)
+		{
+			for (String name : itemNames)
+			{
+				if (name != null)
+				{
+					keys.add(name.toLowerCase());
+				}
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Current data with the regions that may hold shops selling all, or any, of the items loaded
+	 */
+	private ShopData itemsRegions(Set<String> keys, boolean all)
+	{
+		ShopRegionCache cache = regionCache;
+		return cache != null ? withRegions(cache.getDirectory().ordinalsOfItems(keys, all)) : data;
+	}
+
+	/**
+	 * Find where buying a quantity of an item costs least, cheapest first. The cost includes the
+	 * price rising as a shop's stock runs down. Shops with enough stock come first; shops that can
+	 * only sell part of the quantity follow, most units first.
+	 */
+	public List<ShopOffer> findCheapestShops(String itemName, int quantity)
+	{
+		if (itemName == null || quantity <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		String key = itemName.toLowerCase();
+		PriceLadder ladder = itemRegions(key).getPriceLadder(key);
+		return ladder != null ? ladder.cheapest(quantity) : Collections.emptyList();
+	}
+
+	/**
+	 * Find shops that sell an item by its game item ID; the returned list is read-only.
+	 * Once the regions with shops selling the item are loaded this does not allocate, so it is safe
+	 * to call from game event handlers. Before then, when shops are loaded per region, their packs
+	 * are read and decoded on the calling thread.
+	 */
+	public List<Shop> findShopsByItemId(int itemId)
+	{
+		ShopRegionCache cache = regionCache;
+		ShopData data = cache != null ? withRegions(cache.getDirectory().ordinalsOfItemId(itemId)) : this.data;
+		List<Shop> shops = data.getShopsByItemId(itemId);
+		return shops != null ? shops : Collections.emptyList();
+	}
+
+	/**
+	 * Find the shops selling an item that are nearest to a point, nearest first.
+	 * Only shops on the same plane as the point are considered.
+	 */
+	public List<Shop> nearestShopsSelling(String itemName, WorldPoint point, int k)
+	{
+		if (itemName == null || point == null || k <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		String key = itemName.toLowerCase();
+		ShopData data = itemRegions(key);
+		List<Shop> selling = data.getItemToShops().getOrDefault(key, Collections.emptyList());
+		if (selling.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		if (selling.size() <= NEAREST_SCAN_LIMIT)
+		{
+			return selling.stream()
+				.distinct()
+				.filter(shop -> shop.getWorldPoint() != null && shop.getWorldPoint().getPlane() == point.getPlane())
+				.sorted(Comparator.comparingInt(shop -> shop.getWorldPoint().distanceTo(point)))
+				.limit(k)
+				.collect(Collectors.toList());
+		}
+
+		Set<Shop> sellers = Collections.newSetFromMap(new IdentityHashMap<>());
+		sellers.addAll(selling);
+		return data.getSpatialIndex().nearest(point, Math.min(k, sellers.size()), sellers::contains);
+	}
+
+	/**
+	 * Plan a small set of shops that together sell every item on a list, preferring shops near the
+	 * player. Each item is listed under the first shop on the route that sells it.
+	 *
+	 * @param start where the player is, or null to only minimise the number of shops
+	 */
+	public ShoppingPlan planShoppingList(Collection<String> itemNames, WorldPoint start)
+	{
+		if (itemNames == null)
+		{
+			return new ShoppingPlan(Collections.emptyList(), Collections.emptyList());
+		}
+
+		return ShoppingListPlanner.plan(itemNames, this::findShopsByItem, start, PLAN_BUDGET_NANOS);
+	}
+
+	/**
+	 * Find shops within a number of tiles of a point on the same plane, nearest first
+	 */
+	public List<Shop> shopsWithin(WorldPoint point, int radius)
+	{
+		if (point == null)
+		{
+			return Collections.emptyList();
+		}
+
+		ShopRegionCache cache = regionCache;
+		ShopData data = cache != null && radius >= 0
+			? withRegions(cache.getDirectory().ordinalsWithin(point.getX(), point.getY(), radius))
+			: this.data;
+		return data.getSpatialIndex().within(point, radius);
 	}
 
 	/**
@@ -121,44 +782,52 @@ public class ShopDatabase
 			return Collections.emptyList();
 		}
 
-		String lowerQuery = query.toLowerCase();
-		return itemToShopsMap.keySet().stream()
-			.filter(item -> item.contains(lowerQuery))
-			.sorted()
-			.collect(Collectors.toList());
+		return data.getNameIndex().search(query.toLowerCase());
 	}
 
 	/**
-	 * Get all unique item names sold in shops
+	 * Search for items by name, tolerating typos and unfinished words.
+	 * Results are ranked best match first, e.g. "tinderbx" finds "tinderbox".
 	 */
-	public List<String> getAllItemNames()
+	public List<String> searchItemsFuzzy(String query, int limit)
 	{
-		return itemToShopsMap.keySet().stream()
-			.sorted()
-			.collect(Collectors.toList());
+		if (query == null || query.trim().isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		return data.getFuzzyIndex().search(query.toLowerCase(), limit, FUZZY_SEARCH_BUDGET_NANOS);
 	}
 
 	/**
-	 * Data transfer object for JSON deserialization
+	 * Current version of the data, which changes when the shops file is edited
 	 */
-	private static class ShopData
+	ShopData getData()
 	{
-		private String id;
-		private String name;
-		private String owner;
-		private String location;
-		private Integer x;
-		private Integer y;
-		private Integer plane;
-		private List<ShopItem> items;
+		return data;
+	}
+
+	/**
+	 * Start a type-ahead search that reuses results between keystrokes
+	 */
+	public ItemSearchSession newSearchSession()
+	{
+		return new ItemSearchSession(this, ItemSearchSession.DEFAULT_CAPACITY);
+	}
 
-		public String getId() { return id; }
-		public String getName() { return name; }
-		public String getOwner() { return owner; }
-		public String getLocation() { return location; }
-		public Integer getX() { return x; }
-		public Integer getY() { return y; }
-		public Integer getPlane() { return plane; }
-		public List<ShopItem> getItems() { return items; }
+	/**
+	 * Get the display name of an item by its game item ID, or null if no shop sells it
+	 */
+	public String getItemName(int itemId)
+	{
+		return data.getCatalog().getName(itemId);
+	}
+
+	/**
+	 * Get all unique item names sold in shops
+	 */
+	public List<String> getAllItemNames()
+	{
+		return data.getNameIndex().names();
 	}
 }
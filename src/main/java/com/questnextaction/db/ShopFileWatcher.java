@@ -0,0 +1,125 @@
+package com.questnextaction.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a callback on a background thread whenever a file is created, modified or deleted.
+ *
+ * The callback also runs once at start. Editors often save in several steps (truncate, write,
+ * rename), so changes are only reported once the file has been quiet for a short while.
+ */
+@Slf4j
+final class ShopFileWatcher implements AutoCloseable
+{
+	static final long SETTLE_MILLIS = 200;
+
+	private final Path file;
+	private final Runnable onChange;
+	private final WatchService watchService;
+	private final Thread thread;
+
+	ShopFileWatcher(Path file, Runnable onChange) throws IOException
+	{
+		this.file = file.toAbsolutePath();
+		this.onChange = onChange;
+
+		Path directory = this.file.getParent();
+		watchService = directory.getFileSystem().newWatchService();
+		try
+		{
+			directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		}
+		catch (IOException e)
+		{
+			watchService.close();
+			throw e;
+		}
+
+		thread = new Thread(this::run, "shop-data-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void run()
+	{
+		try
+		{
+			notifyChange();
+			while (true)
+			{
+				if (!isRelevant(watchService.take()))
+				{
+					continue;
+				}
+
+				// Wait for the file to settle before reading it
+				WatchKey key;
+				while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+				{
+					isRelevant(key);
+				}
+
+				notifyChange();
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e)
+		{
+			log.debug("Stopped watching {}", file);
+		}
+	}
+
+	/**
+	 * Whether a key's events concern the watched file. The key is reset so it keeps reporting.
+	 */
+	private boolean isRelevant(WatchKey key)
+	{
+		boolean relevant = false;
+		for (WatchEvent<?> event : key.pollEvents())
+		{
+			relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW
+				|| file.getFileName().equals(event.context());
+		}
+		key.reset();
+		return relevant;
+	}
+
+	private void notifyChange()
+	{
+		try
+		{
+			onChange.run();
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("Failed to apply changes to {}", file, e);
+		}
+	}
+
+	/**
+	 * Stop watching. Does not wait for a callback that is already running, so the owner must
+	 * ignore what such a callback reports.
+	 */
+	@Override
+	public void close()
+	{
+		try
+		{
+			watchService.close();
+		}
+		catch (IOException e)
+		{
+			log.debug("Failed to close watch service for {}", file, e);
+		}
+		thread.interrupt();
+	}
+}
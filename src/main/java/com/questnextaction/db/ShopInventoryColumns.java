@@ -0,0 +1,162 @@
+package com.questnextaction.db;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every listing of a shop list laid out as parallel primitive columns.
+ *
+ * Listing {@code i} of shop {@code s} is at row {@code shopOffset(s) + i}. Item names are stored as
+ * ids into a table of distinct lowercased names, so each name is lowercased once per build rather
+ * than once per listing per index. The index builders in {@link ShopData} scan these columns instead
+ * of walking shop and item objects, which keeps their loops over int arrays. {@link Shop} and
+ * {@link ShopItem} stay the public model; the columns are a read-only view built alongside them.
+ */
+final class ShopInventoryColumns
+{
+	/**
+	 * Name id of listings without a name
+	 */
+	static final int NO_NAME = -1;
+
+	private final int[] shopOffsets;
+	private final int[] itemIds;
+	private final int[] prices;
+	private final int[] stocks;
+	private final int[] nameIds;
+	private final String[] names;
+	private final Map<String, Integer> nameIdsByKey;
+
+	private ShopInventoryColumns(int[] shopOffsets, int[] itemIds, int[] prices, int[] stocks, int[] nameIds,
+		String[] names, Map<String, Integer> nameIdsByKey)
+	{
+		this.shopOffsets = shopOffsets;
+		this.itemIds = itemIds;
+		this.prices = prices;
+		this.stocks = stocks;
+		this.nameIds = nameIds;
+		this.names = names;
+		this.nameIdsByKey = nameIdsByKey;
+	}
+
+	static ShopInventoryColumns build(List<Shop> shops)
+	{
+		int[] shopOffsets = new int[shops.size() + 1];
+		for (int s = 0; s < shops.size(); s++)
+		{
+			shopOffsets[s + 1] = shopOffsets[s] + shops.get(s).getItems().size();
+		}
+
+		int rows = shopOffsets[shops.size()];
+		int[] itemIds = new int[rows];
+		int[] prices = new int[rows];
+		int[] stocks = new int[rows];
+		int[] nameIds = new int[rows];
+
+		// Listings share name strings through the item catalog, so most lookups hit the first map
+		Map<String, Integer> idsByName = new HashMap<>();
+		Map<String, Integer> idsByKey = new HashMap<>();
+		String[] names = new String[16];
+
+		int row = 0;
+		for (Shop shop : shops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				itemIds[row] = item.getItemId();
+				prices[row] = item.getPrice();
+				stocks[row] = item.getStock();
+
+				String name = item.getName();
+				Integer id = name != null ? idsByName.get(name) : Integer.valueOf(NO_NAME);
+				if (id == null)
+				{
+					String key = name.toLowerCase();
+					id = idsByKey.get(key);
+					if (id == null)
+					{
+						id = idsByKey.size();
+						idsByKey.put(key, id);
+						if (id == names.length)
+						{
+							names = Arrays.copyOf(names, id * 2);
+						}
+						names[id] = key;
+					}
+					idsByName.put(name, id);
+				}
+				nameIds[row++] = id;
+			}
+		}
+
+		return new ShopInventoryColumns(shopOffsets, itemIds, prices, stocks, nameIds,
+			Arrays.copyOf(names, idsByKey.size()), idsByKey);
+	}
+
+	int shopCount()
+	{
+		return shopOffsets.length - 1;
+	}
+
+	/**
+	 * First row of a shop's listings; the shop's rows end where the next shop's begin
+	 */
+	int shopOffset(int shop)
+	{
+		return shopOffsets[shop];
+	}
+
+	/**
+	 * Number of listings across all shops
+	 */
+	int rowCount()
+	{
+		return itemIds.length;
+	}
+
+	int itemId(int row)
+	{
+		return itemIds[row];
+	}
+
+	int price(int row)
+	{
+		return prices[row];
+	}
+
+	int stock(int row)
+	{
+		return stocks[row];
+	}
+
+	/**
+	 * Id of a listing's lowercased name, or {@link #NO_NAME}
+	 */
+	int nameId(int row)
+	{
+		return nameIds[row];
+	}
+
+	/**
+	 * Number of distinct lowercased names
+	 */
+	int nameCount()
+	{
+		return names.length;
+	}
+
+	String name(int nameId)
+	{
+		return names[nameId];
+	}
+
+	/**
+	 * Id of a lowercased name, or {@link #NO_NAME} if no listing has it
+	 */
+	int nameIdOf(String key)
+	{
+		return nameIdsByKey.getOrDefault(key, NO_NAME);
+	}
+}
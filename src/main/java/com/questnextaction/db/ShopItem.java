@@ -4,6 +4,9 @@ import lombok.Data;
 
 /**
  * Represents an item sold in a shop
+ *
+ * Items loaded by {@link ShopDatabase} are shared between shops that sell the same item at the
+ * same stock and price (see {@link ItemCatalog}), so they should not be modified.
  */
 @Data
 public class ShopItem
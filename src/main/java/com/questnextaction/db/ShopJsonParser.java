@@ -0,0 +1,666 @@
+package com.questnextaction.db;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming parser for shops.json.
+ *
+ * Reads the file token by token and builds {@link Shop}/{@link ShopItem} objects and the
+ * lookup indexes in a single pass, without reflection or an intermediate DTO list. Items and
+ * repeated strings are shared through an {@link ItemCatalog}.
+ *
+ * Two formats are read. Version 1 is an array of shops, each listing its items in full:
+ * <pre>
+ * [{"id": "...", "name": "...", "owner": "...", "location": "...", "x": 3212, "y": 3247, "plane": 0,
+ *   "items": [{"itemId": 1931, "name": "Pot", "stock": 5, "price": 1}, ...]}, ...]
+ * </pre>
+ * Version 2, written by {@link ShopDataConverter}, names each item once in a catalog keyed by item
+ * ID, which must come before the shops. Shops list {@code [itemId, stock, price]} and pack their
+ * location into one {@code coord} (see {@link #packCoord(int, int, int)}):
+ * <pre>
+ * {"version": 2, "items": {"1931": "Pot", ...},
+ *  "shops": [{"id": "...", "name": "...", "owner": "...", "location": "...", "coord": 3330207,
+ *    "items": [[1931, 5, 1], ...]}, ...]}
+ * </pre>
+ *
+ * A file held in memory can also be parsed in shards on a fork-join pool: the array of shops is
+ * cut between shops, the shards are parsed at the same time sharing one catalog, and their shops
+ * are merged in file order.
+ */
+final class ShopJsonParser
+{
+	/**
+	 * Newest format version, the one {@link ShopDataConverter} writes
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Smallest shard worth parsing on its own, so small files are parsed in one go
+	 */
+	private static final int MIN_SHARD_BYTES = 256 * 1024;
+
+	/**
+	 * Shards per thread of the pool, so a slow shard does not leave the other threads idle
+	 */
+	private static final int SHARDS_PER_THREAD = 4;
+
+	private static final byte[] OPEN_ARRAY = {'['};
+	private static final byte[] CLOSE_ARRAY = {']'};
+	private static final byte[] EMPTY_ARRAY = {'[', ']'};
+	private static final byte[] SHOPS_KEY = "shops".getBytes(StandardCharsets.US_ASCII);
+
+	private ShopJsonParser()
+	{
+	}
+
+	/**
+	 * Pack a location into one int the way the game packs coordinates: 2 bits of plane and 14 bits
+	 * each of x and y
+	 */
+	static int packCoord(int x, int y, int plane)
+	{
+		return plane << 28 | x << 14 | y;
+	}
+
+	/**
+	 * Whether a location fits in a packed coordinate
+	 */
+	static boolean canPackCoord(int x, int y, int plane)
+	{
+		return x >= 0 && x < 1 << 14 && y >= 0 && y < 1 << 14 && plane >= 0 && plane < 4;
+	}
+
+	/**
+	 * Parse shops into a list, without building the lookup indexes
+	 */
+	static List<Shop> readShops(Reader reader) throws IOException
+	{
+		List<Shop> shops = new ArrayList<>();
+		parse(reader, new ItemCatalog(), shops, new HashMap<>(), new HashMap<>());
+		return shops;
+	}
+
+	/**
+	 * Parse shops, adding each one to the list and the id and lowercased item name indexes
+	 */
+	static void parse(Reader reader, ItemCatalog catalog, List<Shop> shops, Map<String, Shop> shopsById,
+		Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		readDocument(new JsonReader(reader), catalog, shops, shopsById, itemIndex);
+	}
+
+	/**
+	 * Parse a file in either format, returning the item names of its catalog, or null for version 1
+	 */
+	private static Map<Integer, String> readDocument(JsonReader json, ItemCatalog catalog, List<Shop> shops,
+		Map<String, Shop> shopsById, Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		if (json.peek() == JsonToken.BEGIN_ARRAY)
+		{
+			readShopArray(json, catalog, null, shops, shopsById, itemIndex);
+			return null;
+		}
+
+		Map<Integer, String> names = null;
+		json.beginObject();
+		while (json.hasNext())
+		{
+			switch (json.nextName())
+			{
+				case "version":
+					int version = json.nextInt();
+					if (version != VERSION)
+					{
+						throw new IOException("Unsupported shops data version " + version);
+					}
+					break;
+				case "items":
+					names = readItemNames(json, catalog);
+					break;
+				case "shops":
+					if (names == null)
+					{
+						throw new IOException("The item catalog must come before the shops");
+					}
+					readShopArray(json, catalog, names, shops, shopsById, itemIndex);
+					break;
+				default:
+					json.skipValue();
+					break;
+			}
+		}
+		json.endObject();
+		return names != null ? names : Collections.emptyMap();
+	}
+
+	private static Map<Integer, String> readItemNames(JsonReader json, ItemCatalog catalog) throws IOException
+	{
+		Map<Integer, String> names = new HashMap<>();
+		json.beginObject();
+		while (json.hasNext())
+		{
+			String key = json.nextName();
+			try
+			{
+				names.put(Integer.parseInt(key), catalog.intern(nextString(json)));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("Invalid item ID " + key + " at " + json.getPath(), e);
+			}
+		}
+		json.endObject();
+		return names;
+	}
+
+	/**
+	 * Parse an array of shops. Item names are looked up in the catalog names of a version 2 file.
+	 */
+	private static void readShopArray(JsonReader json, ItemCatalog catalog, Map<Integer, String> names,
+		List<Shop> shops, Map<String, Shop> shopsById, Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		json.beginArray();
+		while (json.hasNext())
+		{
+			Shop shop = readShop(json, catalog, names, itemIndex);
+			shops.add(shop);
+			shopsById.put(shop.getId(), shop);
+		}
+		json.endArray();
+	}
+
+	/**
+	 * Parse shops from UTF-8 JSON in memory, on the pool if the file is large enough to split.
+	 * The result is the same as {@link #parse(Reader, ItemCatalog, List, Map, Map)} whatever the
+	 * parallelism of the pool.
+	 */
+	static void parse(ByteBuffer json, ForkJoinPool pool, ItemCatalog catalog, List<Shop> shops,
+		Map<String, Shop> shopsById, Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		// Splitting only pays off if the shards can be parsed at the same time
+		int parallelism = pool.getParallelism();
+		int shards = parallelism > 1
+			? Math.min(parallelism * SHARDS_PER_THREAD, json.remaining() / MIN_SHARD_BYTES)
+			: 1;
+		parse(json, pool, shards, catalog, shops, shopsById, itemIndex);
+	}
+
+	/**
+	 * Parse shops from UTF-8 JSON in memory, split into at most the given number of shards
+	 */
+	static void parse(ByteBuffer json, ForkJoinPool pool, int shards, ItemCatalog catalog, List<Shop> shops,
+		Map<String, Shop> shopsById, Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		Layout layout = shards > 1 ? layout(json, shards) : null;
+		if (layout == null || layout.cuts.length == 0)
+		{
+			parse(reader(range(json, json.position(), json.limit())), catalog, shops, shopsById, itemIndex);
+			return;
+		}
+
+		// The file with an empty array of shops is parsed first, for the item catalog of version 2
+		Map<Integer, String> names = readDocument(new JsonReader(reader(range(json, json.position(), layout.start),
+				new ByteArrayInputStream(EMPTY_ARRAY), range(json, layout.end + 1, json.limit()))),
+			catalog, shops, shopsById, itemIndex);
+
+		// Shard i runs from the comma before it to the comma after it, bracketed to make an array
+		List<Callable<Shard>> tasks = new ArrayList<>();
+		for (int i = 0; i <= layout.cuts.length; i++)
+		{
+			int from = i > 0 ? layout.cuts[i - 1] + 1 : layout.start + 1;
+			int to = i < layout.cuts.length ? layout.cuts[i] : layout.end;
+			tasks.add(() -> Shard.parse(reader(new ByteArrayInputStream(OPEN_ARRAY), range(json, from, to),
+				new ByteArrayInputStream(CLOSE_ARRAY)), catalog, names));
+		}
+
+		try
+		{
+			for (Future<Shard> shard : pool.invokeAll(tasks))
+			{
+				shard.get().mergeInto(catalog, shops, shopsById, itemIndex);
+			}
+		}
+		catch (ExecutionException e)
+		{
+			// The pool wraps what the shard threw, so report the parse error itself
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+			{
+				if (cause instanceof IOException)
+				{
+					throw (IOException) cause;
+				}
+			}
+			throw new IOException("Failed to parse shops", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing shops", e);
+		}
+	}
+
+	/**
+	 * Where the array of shops is in a file, and the commas between shops to cut it at
+	 */
+	static final class Layout
+	{
+		/**
+		 * Positions of the array's brackets
+		 */
+		final int start;
+		final int end;
+
+		final int[] cuts;
+
+		private Layout(int start, int end, int[] cuts)
+		{
+			this.start = start;
+			this.end = end;
+			this.cuts = cuts;
+		}
+	}
+
+	/**
+	 * Find the array of shops, the top-level array of version 1 or the {@code shops} member of
+	 * version 2, and the commas to cut it at into pieces of about equal size. Null if there is no
+	 * complete array of shops.
+	 */
+	static Layout layout(ByteBuffer json, int shards)
+	{
+		int position = json.position();
+		int end = json.limit();
+		while (position < end && Character.isWhitespace(json.get(position)))
+		{
+			position++;
+		}
+		if (position == end || json.get(position) != '[' && json.get(position) != '{')
+		{
+			return null;
+		}
+		boolean version1 = json.get(position) == '[';
+
+		int[] cuts = new int[Math.max(shards - 1, 0)];
+		int count = 0;
+		long step = 0;
+		long next = 0;
+		int arrayStart = -1;
+		int arrayDepth = 0;
+		int depth = 0;
+		boolean inString = false;
+		boolean escaped = false;
+		int stringStart = 0;
+		int keyStart = 0;
+		int keyEnd = 0;
+
+		// Structural characters are ASCII, so scanning bytes is safe for UTF-8. The bytes are
+		// copied out in chunks, which is much faster than reading a buffer byte by byte.
+		byte[] chunk = new byte[64 * 1024];
+		ByteBuffer bytes = json.duplicate();
+		bytes.limit(end).position(position);
+		while (bytes.hasRemaining())
+		{
+			int offset = bytes.position();
+			int length = Math.min(chunk.length, bytes.remaining());
+			bytes.get(chunk, 0, length);
+
+			for (int i = 0; i < length; i++)
+			{
+				byte b = chunk[i];
+				if (inString)
+				{
+					if (escaped)
+					{
+						escaped = false;
+					}
+					else if (b == '\\')
+					{
+						escaped = true;
+					}
+					else if (b == '"')
+					{
+						inString = false;
+						if (depth == 1)
+						{
+							// A string ending at the top level before an array is that array's key
+							keyStart = stringStart;
+							keyEnd = offset + i;
+						}
+					}
+				}
+				else if (b == '"')
+				{
+					inString = true;
+					stringStart = offset + i + 1;
+				}
+				else if (b == '[' || b == '{')
+				{
+					depth++;
+					if (arrayStart < 0 && b == '['
+						&& (version1 ? depth == 1 : depth == 2 && matches(json, keyStart, keyEnd, SHOPS_KEY)))
+					{
+						arrayStart = offset + i;
+						arrayDepth = depth;
+						step = (end - arrayStart) / Math.max(shards, 1);
+						next = arrayStart + step;
+					}
+				}
+				else if (b == ']' || b == '}')
+				{
+					if (arrayStart >= 0 && depth == arrayDepth)
+					{
+						return new Layout(arrayStart, offset + i, Arrays.copyOf(cuts, count));
+					}
+					if (--depth == 0)
+					{
+						return null;
+					}
+				}
+				else if (b == ',' && arrayStart >= 0 && depth == arrayDepth
+					&& offset + i >= next && count < cuts.length)
+				{
+					cuts[count++] = offset + i;
+					next = offset + i + step;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean matches(ByteBuffer json, int from, int to, byte[] expected)
+	{
+		if (to - from != expected.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++)
+		{
+			if (json.get(from + i) != expected[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stream over a range of the JSON
+	 */
+	private static InputStream range(ByteBuffer json, int from, int to)
+	{
+		ByteBuffer range = json.duplicate();
+		range.limit(to).position(from);
+		return new ByteBufferInputStream(range);
+	}
+
+	/**
+	 * UTF-8 reader over pieces of JSON, one after the other
+	 */
+	private static Reader reader(InputStream... parts)
+	{
+		InputStream in = parts.length == 1
+			? parts[0]
+			: new SequenceInputStream(Collections.enumeration(Arrays.asList(parts)));
+		return new InputStreamReader(in, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Shops parsed from one shard, with items shared through a shard of the catalog
+	 */
+	private static final class Shard
+	{
+		private final ItemCatalog catalog;
+		private final List<Shop> shops = new ArrayList<>();
+		private final Map<String, List<Shop>> itemIndex = new HashMap<>();
+
+		private Shard(ItemCatalog catalog)
+		{
+			this.catalog = catalog;
+		}
+
+		static Shard parse(Reader reader, ItemCatalog catalog, Map<Integer, String> names) throws IOException
+		{
+			Shard shard = new Shard(catalog.shard());
+			readShopArray(new JsonReader(reader), shard.catalog, names, shard.shops, new HashMap<>(), shard.itemIndex);
+			return shard;
+		}
+
+		/**
+		 * Add the shard's shops after those already merged, in the order a single pass would have
+		 */
+		void mergeInto(ItemCatalog allItems, List<Shop> allShops, Map<String, Shop> shopsById,
+			Map<String, List<Shop>> itemIndex)
+		{
+			allItems.addNames(catalog);
+			for (Shop shop : shops)
+			{
+				allShops.add(shop);
+				shopsById.put(shop.getId(), shop);
+			}
+			for (Map.Entry<String, List<Shop>> entry : this.itemIndex.entrySet())
+			{
+				itemIndex.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Input stream over the remaining bytes of a buffer
+	 */
+	private static final class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length)
+		{
+			if (length == 0)
+			{
+				return 0;
+			}
+			if (!buffer.hasRemaining())
+			{
+				return -1;
+			}
+
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+	}
+
+	private static Shop readShop(JsonReader json, ItemCatalog catalog, Map<Integer, String> names,
+		Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		Shop shop = new Shop();
+		List<ShopItem> items = new ArrayList<>();
+		Integer x = null;
+		Integer y = null;
+		Integer plane = null;
+
+		json.beginObject();
+		while (json.hasNext())
+		{
+			switch (json.nextName())
+			{
+				case "id":
+					shop.setId(nextString(json));
+					break;
+				case "name":
+					shop.setName(nextString(json));
+					break;
+				case "owner":
+					shop.setOwner(catalog.intern(nextString(json)));
+					break;
+				case "location":
+					shop.setLocation(catalog.intern(nextString(json)));
+					break;
+				case "x":
+					x = nextInteger(json);
+					break;
+				case "y":
+					y = nextInteger(json);
+					break;
+				case "plane":
+					plane = nextInteger(json);
+					break;
+				case "coord":
+					Integer coord = nextInteger(json);
+					if (coord != null)
+					{
+						x = coord >>> 14 & 0x3fff;
+						y = coord & 0x3fff;
+						plane = coord >>> 28 & 0x3;
+					}
+					break;
+				case "items":
+					readItems(json, catalog, names, shop, items, itemIndex);
+					break;
+				default:
+					json.skipValue();
+					break;
+			}
+		}
+		json.endObject();
+
+		if (x != null && y != null && plane != null)
+		{
+			shop.setCoordinates(x, y, plane);
+		}
+
+		shop.setItems(items);
+		return shop;
+	}
+
+	private static void readItems(JsonReader json, ItemCatalog catalog, Map<Integer, String> names, Shop shop,
+		List<ShopItem> items, Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		if (json.peek() == JsonToken.NULL)
+		{
+			json.nextNull();
+			return;
+		}
+
+		json.beginArray();
+		while (json.hasNext())
+		{
+			ShopItem item = json.peek() == JsonToken.BEGIN_ARRAY
+				? readItemReference(json, catalog, names)
+				: readItem(json, catalog);
+			items.add(item);
+
+			// Index items for quick lookup
+			if (item.getName() != null)
+			{
+				itemIndex.computeIfAbsent(item.getName().toLowerCase(), k -> new ArrayList<>()).add(shop);
+			}
+		}
+		json.endArray();
+	}
+
+	private static ShopItem readItem(JsonReader json, ItemCatalog catalog) throws IOException
+	{
+		int itemId = 0;
+		String name = null;
+		int stock = 0;
+		int price = 0;
+
+		json.beginObject();
+		while (json.hasNext())
+		{
+			switch (json.nextName())
+			{
+				case "itemId":
+					itemId = nextInt(json);
+					break;
+				case "name":
+					name = nextString(json);
+					break;
+				case "stock":
+					stock = nextInt(json);
+					break;
+				case "price":
+					price = nextInt(json);
+					break;
+				default:
+					json.skipValue();
+					break;
+			}
+		}
+		json.endObject();
+
+		return catalog.item(itemId, name, stock, price);
+	}
+
+	/**
+	 * Parse a version 2 item, {@code [itemId, stock, price]}, naming it from the item catalog
+	 */
+	private static ShopItem readItemReference(JsonReader json, ItemCatalog catalog, Map<Integer, String> names)
+		throws IOException
+	{
+		json.beginArray();
+		int itemId = json.nextInt();
+		int stock = json.nextInt();
+		int price = json.nextInt();
+		json.endArray();
+
+		return catalog.item(itemId, names != null ? names.get(itemId) : null, stock, price);
+	}
+
+	private static String nextString(JsonReader json) throws IOException
+	{
+		if (json.peek() == JsonToken.NULL)
+		{
+			json.nextNull();
+			return null;
+		}
+		return json.nextString();
+	}
+
+	private static Integer nextInteger(JsonReader json) throws IOException
+	{
+		if (json.peek() == JsonToken.NULL)
+		{
+			json.nextNull();
+			return null;
+		}
+		return json.nextInt();
+	}
+
+	private static int nextInt(JsonReader json) throws IOException
+	{
+		Integer value = nextInteger(json);
+		return value != null ? value : 0;
+	}
+}
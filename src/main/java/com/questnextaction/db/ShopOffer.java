@@ -0,0 +1,35 @@
+package com.questnextaction.db;
+
+import lombok.Value;
+
+/**
+ * What buying an item at a shop costs, as returned by {@link ShopDatabase#findCheapestShops(String, int)}
+ */
+@Value
+public class ShopOffer
+{
+	/**
+	 * Shop selling the item
+	 */
+	Shop shop;
+
+	/**
+	 * The item as the shop lists it, with its base stock and price
+	 */
+	ShopItem item;
+
+	/**
+	 * Units that can be bought in one visit, at most the quantity asked for
+	 */
+	int quantity;
+
+	/**
+	 * Total cost in coins of buying {@link #quantity} units, including the price rise as stock runs down
+	 */
+	long totalCost;
+
+	/**
+	 * Whether the shop has enough stock for the whole quantity asked for
+	 */
+	boolean complete;
+}
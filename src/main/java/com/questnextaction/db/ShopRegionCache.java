@@ -0,0 +1,182 @@
+package com.questnextaction.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Region packs currently in memory, evicted least recently used first once they exceed a byte cap.
+ *
+ * The size of a pack is its encoded size, which is close enough to compare packs with each other.
+ * The region the player is in is pinned and never evicted. Loading and eviction must be done under
+ * the owner's lock; {@link #touch(int)} may be called from any thread, and a touch lost to a race
+ * only makes the eviction order slightly less exact. The packs are published through an atomic
+ * array, so {@link #pack(int)} and {@link #shop(String)} may also be called from any thread.
+ */
+@Slf4j
+final class ShopRegionCache
+{
+	private final ShopRegionDirectory directory;
+	private final long capacityBytes;
+	private final AtomicReferenceArray<List<Shop>> packs;
+	private final long[] lastUsed;
+	private long clock;
+	private long residentBytes;
+	private volatile int pinned = -1;
+
+	ShopRegionCache(ShopRegionDirectory directory, long capacityBytes)
+	{
+		this.directory = directory;
+		this.capacityBytes = capacityBytes;
+		this.packs = new AtomicReferenceArray<>(directory.regionCount());
+		this.lastUsed = new long[directory.regionCount()];
+	}
+
+	ShopRegionDirectory getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * Record that a region was used
+	 */
+	void touch(int ordinal)
+	{
+		lastUsed[ordinal] = ++clock;
+	}
+
+	/**
+	 * Keep a region loaded until another one is pinned, or unpin with -1
+	 */
+	void pin(int ordinal)
+	{
+		pinned = ordinal;
+	}
+
+	int getPinned()
+	{
+		return pinned;
+	}
+
+	/**
+	 * Shops of a loaded region, or null if it is not loaded
+	 */
+	List<Shop> pack(int ordinal)
+	{
+		return packs.get(ordinal);
+	}
+
+	/**
+	 * Load a region's pack. A pack that fails to load is treated as empty rather than retried
+	 * by every query.
+	 */
+	List<Shop> load(int ordinal)
+	{
+		List<Shop> shops;
+		try
+		{
+			shops = directory.readPack(ordinal);
+			residentBytes += directory.packSize(ordinal);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Failed to load shop region {}", directory.regionId(ordinal), e);
+			shops = Collections.emptyList();
+		}
+
+		packs.set(ordinal, shops);
+		touch(ordinal);
+		log.debug("Loaded {} shops in region {}", shops.size(), directory.regionId(ordinal));
+		return shops;
+	}
+
+	/**
+	 * Evict least recently used regions, other than the pinned one and those kept, until the loaded
+	 * packs fit the cap
+	 *
+	 * @return the shops of the evicted regions
+	 */
+	List<Shop> evict(int[] keep)
+	{
+		List<Shop> evicted = new ArrayList<>();
+		while (residentBytes > capacityBytes)
+		{
+			int victim = -1;
+			for (int ordinal = 0; ordinal < packs.length(); ordinal++)
+			{
+				if (packs.get(ordinal) != null && ordinal != pinned && !contains(keep, ordinal)
+					&& (victim < 0 || lastUsed[ordinal] < lastUsed[victim]))
+				{
+					victim = ordinal;
+				}
+			}
+
+			if (victim < 0)
+			{
+				break;
+			}
+
+			evicted.addAll(packs.getAndSet(victim, null));
+			residentBytes -= directory.packSize(victim);
+			log.debug("Evicted shop region {}", directory.regionId(victim));
+		}
+		return evicted;
+	}
+
+	private static boolean contains(int[] ordinals, int ordinal)
+	{
+		for (int o : ordinals)
+		{
+			if (o == ordinal)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The bundled version of a shop, or null if its region is not loaded
+	 */
+	Shop shop(String id)
+	{
+		int ordinal = directory.ordinalOfShop(id);
+		List<Shop> pack = ordinal >= 0 ? packs.get(ordinal) : null;
+		if (pack != null)
+		{
+			for (Shop shop : pack)
+			{
+				if (id.equals(shop.getId()))
+				{
+					return shop;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Which regions are loaded, indexed by ordinal
+	 */
+	boolean[] loadedRegions()
+	{
+		boolean[] loaded = new boolean[packs.length()];
+		for (int ordinal = 0; ordinal < loaded.length; ordinal++)
+		{
+			loaded[ordinal] = packs.get(ordinal) != null;
+		}
+		return loaded;
+	}
+
+	/**
+	 * Encoded size of the loaded packs
+	 */
+	long residentBytes()
+	{
+		return residentBytes;
+	}
+}
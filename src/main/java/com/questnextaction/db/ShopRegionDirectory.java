@@ -0,0 +1,452 @@
+package com.questnextaction.db;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Directory of the shop data split into one pack per map region.
+ *
+ * Each region pack is a {@link CompiledShopData} snapshot holding the shops in that region, keyed by
+ * {@link net.runelite.api.coords.WorldPoint#getRegionID()}; shops without a location share one extra
+ * pack. The directory itself is small and always loaded: it maps shop IDs, item names and item IDs
+ * to the regions that sell them, so a query only needs to load the packs it touches. Regions are
+ * referred to by their ordinal in the directory.
+ */
+@Slf4j
+final class ShopRegionDirectory
+{
+	static final int MAGIC = 0x51535244; // "QSRD"
+	static final int VERSION = 1;
+
+	static final String DIRECTORY_FILE = "directory.bin";
+
+	/**
+	 * Region of shops that have no location
+	 */
+	static final int NO_REGION = -1;
+
+	private static final int[] NO_REGIONS = new int[0];
+
+	/**
+	 * Reads a pack or the directory by file name
+	 */
+	@FunctionalInterface
+	interface PackReader
+	{
+		ByteBuffer read(String name) throws IOException;
+	}
+
+	private final PackReader reader;
+	private final int[] regionIds;
+	private final int[] packSizes;
+	private final ItemIdIndex ordinalsByRegionId;
+	private final Map<String, Integer> regionByShop;
+	private final Map<String, int[]> regionsByItem;
+	private final ItemIdIndex regionsByItemId;
+	private final ItemCatalog catalog;
+
+	private ShopRegionDirectory(PackReader reader, int[] regionIds, int[] packSizes,
+		Map<String, Integer> regionByShop, Map<String, int[]> regionsByItem, ItemIdIndex regionsByItemId,
+		ItemCatalog catalog)
+	{
+		this.reader = reader;
+		this.regionIds = regionIds;
+		this.packSizes = packSizes;
+		this.regionByShop = regionByShop;
+		this.regionsByItem = regionsByItem;
+		this.regionsByItemId = regionsByItemId;
+		this.catalog = catalog;
+
+		ItemIdIndex ordinals = ItemIdIndex.create();
+		for (int ordinal = 0; ordinal < regionIds.length; ordinal++)
+		{
+			ordinals.add(regionIds[ordinal], ordinal);
+		}
+		this.ordinalsByRegionId = ordinals.trimToSize();
+	}
+
+	/**
+	 * Read the directory, returning null if it is missing, unreadable or was not built from
+	 * source data with the given checksum
+	 */
+	static ShopRegionDirectory load(PackReader reader, long sourceChecksum)
+	{
+		try
+		{
+			ByteBuffer buffer = reader.read(DIRECTORY_FILE);
+			if (buffer == null)
+			{
+				return null;
+			}
+
+			ShopRegionDirectory directory = read(reader, buffer, sourceChecksum);
+			if (directory == null)
+			{
+				log.debug("Shop region directory is stale, ignoring it");
+			}
+			return directory;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Failed to read shop region directory", e);
+			return null;
+		}
+	}
+
+	private static ShopRegionDirectory read(PackReader reader, ByteBuffer buffer, long sourceChecksum)
+		throws IOException
+	{
+		if (buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not a shop region directory");
+		}
+
+		int version = buffer.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported shop region directory version " + version);
+		}
+
+		long checksum = buffer.getLong();
+		if (sourceChecksum != CompiledShopData.NO_SOURCE && checksum != sourceChecksum)
+		{
+			return null;
+		}
+
+		int regionCount = buffer.getInt();
+		int[] regionIds = new int[regionCount];
+		int[] packSizes = new int[regionCount];
+		for (int i = 0; i < regionCount; i++)
+		{
+			regionIds[i] = buffer.getInt();
+			packSizes[i] = buffer.getInt();
+		}
+
+		int shopCount = buffer.getInt();
+		Map<String, Integer> regionByShop = new HashMap<>((int) (shopCount / 0.75f) + 1);
+		for (int i = 0; i < shopCount; i++)
+		{
+			regionByShop.put(readString(buffer), buffer.getInt());
+		}
+
+		int nameCount = buffer.getInt();
+		Map<String, int[]> regionsByItem = new HashMap<>((int) (nameCount / 0.75f) + 1);
+		for (int i = 0; i < nameCount; i++)
+		{
+			regionsByItem.put(readString(buffer), readInts(buffer));
+		}
+
+		int itemCount = buffer.getInt();
+		ItemCatalog catalog = new ItemCatalog();
+		ItemIdIndex regionsByItemId = ItemIdIndex.create();
+		for (int i = 0; i < itemCount; i++)
+		{
+			int itemId = buffer.getInt();
+			String name = readString(buffer);
+			if (!name.isEmpty())
+			{
+				catalog.addName(itemId, name);
+			}
+			for (int ordinal : readInts(buffer))
+			{
+				regionsByItemId.add(itemId, ordinal);
+			}
+		}
+
+		return new ShopRegionDirectory(reader, regionIds, packSizes, regionByShop, regionsByItem,
+			regionsByItemId.trimToSize(), catalog);
+	}
+
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int[] readInts(ByteBuffer buffer)
+	{
+		int[] values = new int[buffer.getInt()];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = buffer.getInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Region a shop is packed into, or {@link #NO_REGION} if it has no location
+	 */
+	static int regionOf(Shop shop)
+	{
+		return shop.getWorldPoint() != null ? shop.getWorldPoint().getRegionID() : NO_REGION;
+	}
+
+	/**
+	 * File name of a region's pack
+	 */
+	static String packName(int regionId)
+	{
+		return regionId == NO_REGION ? "unlocated.bin" : "region-" + regionId + ".bin";
+	}
+
+	/**
+	 * Number of regions with shops
+	 */
+	int regionCount()
+	{
+		return regionIds.length;
+	}
+
+	/**
+	 * Region ID of an ordinal
+	 */
+	int regionId(int ordinal)
+	{
+		return regionIds[ordinal];
+	}
+
+	/**
+	 * Size of a region's pack in bytes, used to estimate the memory it takes once loaded
+	 */
+	int packSize(int ordinal)
+	{
+		return packSizes[ordinal];
+	}
+
+	/**
+	 * Ordinal of a region ID, or -1 if no shop is in that region
+	 */
+	int ordinalOf(int regionId)
+	{
+		int[] ordinals = ordinalsByRegionId.get(regionId);
+		return ordinals.length > 0 ? ordinals[0] : -1;
+	}
+
+	/**
+	 * Ordinal of the region holding a shop, or -1 if there is no such shop
+	 */
+	int ordinalOfShop(String shopId)
+	{
+		Integer ordinal = regionByShop.get(shopId);
+		return ordinal != null ? ordinal : -1;
+	}
+
+	/**
+	 * Ordinals of the regions with shops selling an item, by lowercased name
+	 */
+	int[] ordinalsOfItem(String key)
+	{
+		return regionsByItem.getOrDefault(key, NO_REGIONS);
+	}
+
+	/**
+	 * Ordinals of the regions with shops selling every one of the items, or at least one of them,
+	 * by lowercased name. A shop selling them all must lie in a region listed for each item.
+	 */
+	int[] ordinalsOfItems(Set<String> keys, boolean all)
+	{
+		int[] counts = new int[regionIds.length];
+		for (String key : keys)
+		{
+			for (int ordinal : ordinalsOfItem(key))
+			{
+				counts[ordinal]++;
+			}
+		}
+
+		int needed = all ? keys.size() : 1;
+		return IntStream.range(0, counts.length).filter(ordinal -> counts[ordinal] >= needed).toArray();
+	}
+
+	/**
+	 * Ordinals of the regions with shops selling an item, by item ID. Does not allocate.
+	 */
+	int[] ordinalsOfItemId(int itemId)
+	{
+		return regionsByItemId.get(itemId);
+	}
+
+	/**
+	 * Ordinals of the regions overlapping the square within {@code radius} tiles of a point
+	 */
+	int[] ordinalsWithin(int x, int y, int radius)
+	{
+		int[] ordinals = new int[regionIds.length];
+		int count = 0;
+		for (int ordinal = 0; ordinal < regionIds.length; ordinal++)
+		{
+			int regionId = regionIds[ordinal];
+			if (regionId == NO_REGION)
+			{
+				continue;
+			}
+
+			// Regions are 64x64 tiles, numbered by their x and y in the high and low byte
+			long minX = (long) (regionId >> 8) << 6;
+			long minY = (long) (regionId & 0xFF) << 6;
+			if (minX <= (long) x + radius && minX + 63 >= (long) x - radius
+				&& minY <= (long) y + radius && minY + 63 >= (long) y - radius)
+			{
+				ordinals[count++] = ordinal;
+			}
+		}
+		return Arrays.copyOf(ordinals, count);
+	}
+
+	/**
+	 * Lowercased names of every item sold in any region
+	 */
+	Set<String> itemNames()
+	{
+		return Collections.unmodifiableSet(regionsByItem.keySet());
+	}
+
+	/**
+	 * Display names of every item sold in any region
+	 */
+	ItemCatalog getCatalog()
+	{
+		return catalog;
+	}
+
+	/**
+	 * Read a region's pack, sharing its item names with the directory
+	 */
+	List<Shop> readPack(int ordinal) throws IOException
+	{
+		ByteBuffer buffer = reader.read(packName(regionIds[ordinal]));
+		if (buffer == null)
+		{
+			throw new IOException("Missing shop region pack " + packName(regionIds[ordinal]));
+		}
+		List<Shop> shops = CompiledShopData.read(buffer).getShops();
+
+		// Share item names with the directory rather than keeping a copy per pack
+		for (Shop shop : shops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				String name = catalog.getName(item.getItemId());
+				if (name != null && name.equals(item.getName()))
+				{
+					item.setName(name);
+				}
+			}
+		}
+		return shops;
+	}
+
+	/**
+	 * Split shops into region packs and write them with their directory into a directory
+	 */
+	static void write(List<Shop> shops, long sourceChecksum, Path target) throws IOException
+	{
+		Map<Integer, List<Shop>> byRegion = new TreeMap<>();
+		for (Shop shop : shops)
+		{
+			byRegion.computeIfAbsent(regionOf(shop), k -> new ArrayList<>()).add(shop);
+		}
+
+		Files.createDirectories(target);
+
+		Map<Integer, Integer> ordinals = new HashMap<>();
+		List<int[]> regions = new ArrayList<>();
+		for (Map.Entry<Integer, List<Shop>> entry : byRegion.entrySet())
+		{
+			ByteArrayOutputStream pack = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(pack))
+			{
+				CompiledShopData.write(entry.getValue(), sourceChecksum, out);
+			}
+			Files.write(target.resolve(packName(entry.getKey())), pack.toByteArray());
+
+			ordinals.put(entry.getKey(), regions.size());
+			regions.add(new int[]{entry.getKey(), pack.size()});
+		}
+
+		Map<String, Integer> regionByShop = new LinkedHashMap<>();
+		Map<String, Set<Integer>> regionsByItem = new TreeMap<>();
+		Map<Integer, String> names = new TreeMap<>();
+		Map<Integer, Set<Integer>> regionsByItemId = new TreeMap<>();
+		for (Shop shop : shops)
+		{
+			int ordinal = ordinals.get(regionOf(shop));
+			regionByShop.put(shop.getId(), ordinal);
+			for (ShopItem item : shop.getItems())
+			{
+				if (item.getName() != null)
+				{
+					regionsByItem.computeIfAbsent(item.getName().toLowerCase(), k -> new TreeSet<>()).add(ordinal);
+					names.putIfAbsent(item.getItemId(), item.getName());
+				}
+				regionsByItemId.computeIfAbsent(item.getItemId(), k -> new TreeSet<>()).add(ordinal);
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			Files.newOutputStream(target.resolve(DIRECTORY_FILE)))))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceChecksum);
+
+			out.writeInt(regions.size());
+			for (int[] region : regions)
+			{
+				out.writeInt(region[0]);
+				out.writeInt(region[1]);
+			}
+
+			out.writeInt(regionByShop.size());
+			for (Map.Entry<String, Integer> entry : regionByShop.entrySet())
+			{
+				writeString(out, entry.getKey());
+				out.writeInt(entry.getValue());
+			}
+
+			out.writeInt(regionsByItem.size());
+			for (Map.Entry<String, Set<Integer>> entry : regionsByItem.entrySet())
+			{
+				writeString(out, entry.getKey());
+				writeInts(out, entry.getValue());
+			}
+
+			out.writeInt(regionsByItemId.size());
+			for (Map.Entry<Integer, Set<Integer>> entry : regionsByItemId.entrySet())
+			{
+				out.writeInt(entry.getKey());
+				writeString(out, names.getOrDefault(entry.getKey(), ""));
+				writeInts(out, entry.getValue());
+			}
+		}
+
+		log.info("Split {} shops into {} region packs in {}", shops.size(), regions.size(), target);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeInts(DataOutputStream out, Set<Integer> values) throws IOException
+	{
+		out.writeInt(values.size());
+		for (int value : values)
+		{
+			out.writeInt(value);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index of shop locations, one 2-d tree per plane.
+ *
+ * Each tree is stored implicitly in an array: a range's middle element is the node, split on x
+ * or y by depth, and the halves either side are its subtrees. Distances are the tile distance
+ * used by {@link WorldPoint#distanceTo(WorldPoint)}, so shops on another plane are never near.
+ * Nearest and radius queries visit O(log n) nodes for evenly spread shops.
+ */
+final class ShopSpatialIndex
+{
+	/**
+	 * Subtrees at least this large are laid out as separate tasks when built on a fork-join pool
+	 */
+	private static final int PARALLEL_SUBTREE = 8192;
+
+	private final Map<Integer, Shop[]> trees;
+
+	private ShopSpatialIndex(Map<Integer, Shop[]> trees)
+	{
+		this.trees = trees;
+	}
+
+	/**
+	 * Index the shops that have a location
+	 */
+	static ShopSpatialIndex build(List<Shop> shops)
+	{
+		Map<Integer, List<Shop>> byPlane = new HashMap<>();
+		for (Shop shop : shops)
+		{
+			if (shop.getWorldPoint() != null)
+			{
+				byPlane.computeIfAbsent(shop.getWorldPoint().getPlane(), k -> new ArrayList<>()).add(shop);
+			}
+		}
+
+		Map<Integer, Shop[]> trees = new HashMap<>();
+		for (Map.Entry<Integer, List<Shop>> entry : byPlane.entrySet())
+		{
+			Shop[] tree = entry.getValue().toArray(new Shop[0]);
+			arrange(tree, 0, tree.length, 0);
+			trees.put(entry.getKey(), tree);
+		}
+
+		return new ShopSpatialIndex(trees);
+	}
+
+	/**
+	 * Lay out a range as a subtree: sort on the split axis and recurse into both halves
+	 */
+	private static void arrange(Shop[] tree, int from, int to, int depth)
+	{
+		if (to - from <= 1)
+		{
+			return;
+		}
+
+		Arrays.sort(tree, from, to, Comparator.comparingInt(shop -> coordinate(shop, depth)));
+		int mid = (from + to) >>> 1;
+		if (to - from >= PARALLEL_SUBTREE && ForkJoinTask.inForkJoinPool())
+		{
+			// The halves do not overlap, so laying them out concurrently gives the same tree
+			ForkJoinTask.invokeAll(
+				ForkJoinTask.adapt(() -> arrange(tree, from, mid, depth + 1)),
+				ForkJoinTask.adapt(() -> arrange(tree, mid + 1, to, depth + 1)));
+		}
+		else
+		{
+			arrange(tree, from, mid, depth + 1);
+			arrange(tree, mid + 1, to, depth + 1);
+		}
+	}
+
+	private static int coordinate(Shop shop, int depth)
+	{
+		WorldPoint point = shop.getWorldPoint();
+		return (depth & 1) == 0 ? point.getX() : point.getY();
+	}
+
+	/**
+	 * Up to {@code k} shops accepted by the filter, nearest first
+	 */
+	List<Shop> nearest(WorldPoint point, int k, Predicate<Shop> filter)
+	{
+		Shop[] tree = trees.get(point.getPlane());
+		if (tree == null || k <= 0)
+		{
+			return new ArrayList<>();
+		}
+
+		// There can be no more results than shops, however many are asked for
+		Nearest nearest = new Nearest(point, Math.min(k, tree.length), filter);
+		nearest.search(tree, 0, tree.length, 0);
+		return nearest.result();
+	}
+
+	/**
+	 * Shops within {@code radius} tiles of a point on the same plane, nearest first
+	 */
+	List<Shop> within(WorldPoint point, int radius)
+	{
+		List<Shop> result = new ArrayList<>();
+		Shop[] tree = trees.get(point.getPlane());
+		if (tree != null && radius >= 0)
+		{
+			within(tree, 0, tree.length, 0, point, radius, result);
+			result.sort(Comparator.comparingInt(shop -> shop.getWorldPoint().distanceTo(point)));
+		}
+		return result;
+	}
+
+	private static void within(Shop[] tree, int from, int to, int depth, WorldPoint point, int radius,
+		List<Shop> result)
+	{
+		if (from >= to)
+		{
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		Shop shop = tree[mid];
+		if (shop.getWorldPoint().distanceTo(point) <= radius)
+		{
+			result.add(shop);
+		}
+
+		int split = coordinate(shop, depth);
+		int target = (depth & 1) == 0 ? point.getX() : point.getY();
+		if (target - radius <= split)
+		{
+			within(tree, from, mid, depth + 1, point, radius, result);
+		}
+		if (target + radius >= split)
+		{
+			within(tree, mid + 1, to, depth + 1, point, radius, result);
+		}
+	}
+
+	/**
+	 * Bounded k-nearest search, keeping the best shops found so far sorted by distance
+	 */
+	private static final class Nearest
+	{
+		private final WorldPoint point;
+		private final Predicate<Shop> filter;
+		private final Shop[] shops;
+		private final int[] distances;
+		private int size;
+
+		Nearest(WorldPoint point, int k, Predicate<Shop> filter)
+		{
+			this.point = point;
+			this.filter = filter;
+			this.shops = new Shop[k];
+			this.distances = new int[k];
+		}
+
+		/**
+		 * Distance a shop must beat to be kept
+		 */
+		private int bound()
+		{
+			return size < shops.length ? Integer.MAX_VALUE : distances[size - 1];
+		}
+
+		void search(Shop[] tree, int from, int to, int depth)
+		{
+			if (from >= to)
+			{
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			Shop shop = tree[mid];
+			int distance = shop.getWorldPoint().distanceTo(point);
+			if (distance < bound() && filter.test(shop))
+			{
+				offer(shop, distance);
+			}
+
+			// Visit the side containing the point first, the other only if it can hold a closer shop
+			int delta = ((depth & 1) == 0 ? point.getX() : point.getY()) - coordinate(shop, depth);
+			if (delta < 0)
+			{
+				search(tree, from, mid, depth + 1);
+				if (-delta < bound())
+				{
+					search(tree, mid + 1, to, depth + 1);
+				}
+			}
+			else
+			{
+				search(tree, mid + 1, to, depth + 1);
+				if (delta < bound())
+				{
+					search(tree, from, mid, depth + 1);
+				}
+			}
+		}
+
+		private void offer(Shop shop, int distance)
+		{
+			int i = size < shops.length ? size++ : size - 1;
+			while (i > 0 && distances[i - 1] > distance)
+			{
+				shops[i] = shops[i - 1];
+				distances[i] = distances[i - 1];
+				i--;
+			}
+			shops[i] = shop;
+			distances[i] = distance;
+		}
+
+		List<Shop> result()
+		{
+			return new ArrayList<>(Arrays.asList(shops).subList(0, size));
+		}
+	}
+}
@@ -0,0 +1,413 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Picks a small set of shops that together sell every item on a shopping list.
+ *
+ * This is weighted set cover: each shop costs a fixed {@link #VISIT_COST} plus its distance from
+ * the player, so fewer shops are preferred and, among those, nearer ones. The items a shop sells
+ * are a bitset over the list, so coverage tests are a few word operations. Shops selling exactly
+ * the same items are reduced to the cheapest one.
+ *
+ * A greedy pass picks the shop with the best new items per cost until everything is covered. Local
+ * search then drops shops made redundant and replaces one or two shops by a single cheaper one that
+ * covers what only they sold, until nothing improves or the time budget runs out. Shops are visited
+ * nearest first.
+ */
+final class ShoppingListPlanner
+{
+	/**
+	 * Cost of visiting one more shop, in tiles of travel
+	 */
+	static final int VISIT_COST = 64;
+
+	/**
+	 * Distance used for shops without a location or on another plane
+	 */
+	static final int UNKNOWN_DISTANCE = 4096;
+
+	private final int itemCount;
+	private final int words;
+	private final Shop[] shops;
+	private final long[][] coverage;
+	private final long[] costs;
+	private final long[] target;
+	private final long deadline;
+
+	private ShoppingListPlanner(int itemCount, Shop[] shops, long[][] coverage, long[] costs, long deadline)
+	{
+		this.itemCount = itemCount;
+		this.words = (itemCount + 63) >>> 6;
+		this.shops = shops;
+		this.coverage = coverage;
+		this.costs = costs;
+		this.deadline = deadline;
+
+		target = new long[words];
+		for (long[] bits : coverage)
+		{
+			or(target, bits);
+		}
+	}
+
+	/**
+	 * Plan which shops to visit to buy the items
+	 *
+	 * @param itemNames items to buy
+	 * @param sellers shops selling an item, by lowercased name
+	 * @param start where the player is, or null to only minimise the number of shops
+	 * @param budgetNanos time after which local search stops improving the greedy plan
+	 */
+	static ShoppingPlan plan(Collection<String> itemNames, Function<String, List<Shop>> sellers, WorldPoint start,
+		long budgetNanos)
+	{
+		long deadline = System.nanoTime() + budgetNanos;
+
+		// One bit per distinct item, keeping the name the caller used
+		Map<String, String> items = new LinkedHashMap<>();
+		for (String name : itemNames)
+		{
+			if (name != null && !name.trim().isEmpty())
+			{
+				items.putIfAbsent(name.trim().toLowerCase(), name.trim());
+			}
+		}
+		String[] names = items.values().toArray(new String[0]);
+		int words = (names.length + 63) >>> 6;
+
+		Map<Shop, long[]> coverageByShop = new IdentityHashMap<>();
+		List<Shop> candidates = new ArrayList<>();
+		List<String> unavailable = new ArrayList<>();
+		int item = 0;
+		for (String key : items.keySet())
+		{
+			List<Shop> selling = sellers.apply(key);
+			if (selling.isEmpty())
+			{
+				unavailable.add(names[item]);
+			}
+			for (Shop shop : selling)
+			{
+				long[] bits = coverageByShop.get(shop);
+				if (bits == null)
+				{
+					bits = new long[words];
+					coverageByShop.put(shop, bits);
+					candidates.add(shop);
+				}
+				bits[item >>> 6] |= 1L << item;
+			}
+			item++;
+		}
+
+		// Of the shops selling exactly the same items, only the cheapest is worth visiting
+		Map<Coverage, Shop> cheapest = new LinkedHashMap<>();
+		for (Shop shop : candidates)
+		{
+			cheapest.merge(new Coverage(coverageByShop.get(shop)), shop,
+				(a, b) -> cost(a, start) <= cost(b, start) ? a : b);
+		}
+
+		Shop[] shops = new Shop[cheapest.size()];
+		long[][] coverage = new long[shops.length][];
+		long[] costs = new long[shops.length];
+		int i = 0;
+		for (Map.Entry<Coverage, Shop> entry : cheapest.entrySet())
+		{
+			shops[i] = entry.getValue();
+			coverage[i] = entry.getKey().bits;
+			costs[i] = cost(shops[i], start);
+			i++;
+		}
+
+		ShoppingListPlanner planner = new ShoppingListPlanner(names.length, shops, coverage, costs, deadline);
+		List<Integer> chosen = planner.greedy();
+		planner.improve(chosen);
+		return planner.toPlan(chosen, names, start, unavailable);
+	}
+
+	private static long cost(Shop shop, WorldPoint start)
+	{
+		return VISIT_COST + distance(start, shop.getWorldPoint());
+	}
+
+	private static int distance(WorldPoint from, WorldPoint to)
+	{
+		if (from == null)
+		{
+			return 0;
+		}
+		if (to == null || to.getPlane() != from.getPlane())
+		{
+			return UNKNOWN_DISTANCE;
+		}
+		return Math.min(from.distanceTo(to), UNKNOWN_DISTANCE);
+	}
+
+	/**
+	 * Repeatedly pick the shop with the most uncovered items per cost
+	 */
+	private List<Integer> greedy()
+	{
+		List<Integer> chosen = new ArrayList<>();
+		long[] covered = new long[words];
+		while (!Arrays.equals(covered, target))
+		{
+			int best = -1;
+			int bestNew = 0;
+			for (int shop = 0; shop < shops.length; shop++)
+			{
+				int added = countNotIn(coverage[shop], covered);
+				// added / cost > bestNew / bestCost, without dividing
+				if (added > 0 && (best < 0 || added * costs[best] > bestNew * costs[shop]))
+				{
+					best = shop;
+					bestNew = added;
+				}
+			}
+
+			chosen.add(best);
+			or(covered, coverage[best]);
+		}
+		return chosen;
+	}
+
+	/**
+	 * Local search: drop redundant shops, then replace one or two shops by a single cheaper one
+	 * that covers the items only they sold
+	 */
+	private void improve(List<Integer> chosen)
+	{
+		dropRedundant(chosen);
+
+		boolean improved = true;
+		while (improved && System.nanoTime() < deadline)
+		{
+			improved = false;
+			int[] counts = coverCounts(chosen);
+
+			for (int a = 0; a < chosen.size() && !improved; a++)
+			{
+				for (int b = a; b < chosen.size() && !improved; b++)
+				{
+					int first = chosen.get(a);
+					int second = chosen.get(b);
+					long[] needed = soleCoverage(counts, first, second);
+					long saved = first == second ? costs[first] : costs[first] + costs[second];
+
+					int replacement = cheapestCovering(needed, saved, chosen);
+					if (replacement >= 0)
+					{
+						chosen.remove(Integer.valueOf(first));
+						chosen.remove(Integer.valueOf(second));
+						chosen.add(replacement);
+						dropRedundant(chosen);
+						improved = true;
+					}
+				}
+
+				if (System.nanoTime() >= deadline)
+				{
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove shops whose items the others all sell, most expensive first
+	 */
+	private void dropRedundant(List<Integer> chosen)
+	{
+		chosen.sort((a, b) -> Long.compare(costs[b], costs[a]));
+		int[] counts = coverCounts(chosen);
+		for (int i = 0; i < chosen.size(); i++)
+		{
+			int shop = chosen.get(i);
+			if (isZero(soleCoverage(counts, shop, shop)))
+			{
+				forEachItem(coverage[shop], item -> counts[item]--);
+				chosen.remove(i--);
+			}
+		}
+	}
+
+	/**
+	 * How many chosen shops sell each item
+	 */
+	private int[] coverCounts(List<Integer> chosen)
+	{
+		int[] counts = new int[itemCount];
+		for (int shop : chosen)
+		{
+			forEachItem(coverage[shop], item -> counts[item]++);
+		}
+		return counts;
+	}
+
+	/**
+	 * Items sold by no chosen shop other than the given one or two
+	 */
+	private long[] soleCoverage(int[] counts, int first, int second)
+	{
+		long[] sole = new long[words];
+		forEachItem(coverage[first], item ->
+		{
+			int others = counts[item] - (first != second && has(coverage[second], item) ? 2 : 1);
+			if (others == 0)
+			{
+				sole[item >>> 6] |= 1L << item;
+			}
+		});
+		if (first != second)
+		{
+			forEachItem(coverage[second], item ->
+			{
+				if (counts[item] - (has(coverage[first], item) ? 2 : 1) == 0)
+				{
+					sole[item >>> 6] |= 1L << item;
+				}
+			});
+		}
+		return sole;
+	}
+
+	/**
+	 * Cheapest shop not yet chosen that sells all the needed items and costs less than the limit, or -1
+	 */
+	private int cheapestCovering(long[] needed, long limit, List<Integer> chosen)
+	{
+		int best = -1;
+		for (int shop = 0; shop < shops.length; shop++)
+		{
+			if (costs[shop] < limit && (best < 0 || costs[shop] < costs[best])
+				&& countNotIn(needed, coverage[shop]) == 0 && !chosen.contains(shop))
+			{
+				best = shop;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Visit the chosen shops nearest first, buying each item at the first shop that sells it
+	 */
+	private ShoppingPlan toPlan(List<Integer> chosen, String[] names, WorldPoint start, List<String> unavailable)
+	{
+		List<Integer> remaining = new ArrayList<>(chosen);
+		List<ShoppingPlan.Visit> visits = new ArrayList<>();
+		long[] bought = new long[words];
+		WorldPoint position = start;
+		while (!remaining.isEmpty())
+		{
+			int next = remaining.get(0);
+			for (int shop : remaining)
+			{
+				if (distance(position, shops[shop].getWorldPoint()) < distance(position, shops[next].getWorldPoint()))
+				{
+					next = shop;
+				}
+			}
+			remaining.remove(Integer.valueOf(next));
+
+			List<String> items = new ArrayList<>();
+			for (int item = 0; item < itemCount; item++)
+			{
+				if (has(coverage[next], item) && !has(bought, item))
+				{
+					items.add(names[item]);
+					bought[item >>> 6] |= 1L << item;
+				}
+			}
+			visits.add(new ShoppingPlan.Visit(shops[next], items));
+			position = shops[next].getWorldPoint() != null ? shops[next].getWorldPoint() : position;
+		}
+
+		return new ShoppingPlan(visits, unavailable);
+	}
+
+	private static void or(long[] into, long[] bits)
+	{
+		for (int w = 0; w < into.length; w++)
+		{
+			into[w] |= bits[w];
+		}
+	}
+
+	/**
+	 * Number of items in {@code bits} that are not in {@code mask}
+	 */
+	private static int countNotIn(long[] bits, long[] mask)
+	{
+		int count = 0;
+		for (int w = 0; w < bits.length; w++)
+		{
+			count += Long.bitCount(bits[w] & ~mask[w]);
+		}
+		return count;
+	}
+
+	private static boolean isZero(long[] bits)
+	{
+		for (long word : bits)
+		{
+			if (word != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean has(long[] bits, int item)
+	{
+		return (bits[item >>> 6] & 1L << item) != 0;
+	}
+
+	private static void forEachItem(long[] bits, IntConsumer action)
+	{
+		for (int w = 0; w < bits.length; w++)
+		{
+			for (long word = bits[w]; word != 0; word &= word - 1)
+			{
+				action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+	}
+
+	/**
+	 * Item bitset usable as a map key
+	 */
+	private static final class Coverage
+	{
+		private final long[] bits;
+
+		Coverage(long[] bits)
+		{
+			this.bits = bits;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof Coverage && Arrays.equals(bits, ((Coverage) o).bits);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Arrays.hashCode(bits);
+		}
+	}
+}
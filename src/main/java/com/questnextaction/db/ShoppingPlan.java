@@ -0,0 +1,33 @@
+package com.questnextaction.db;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Shops to visit to buy a list of items, as planned by {@link ShopDatabase#planShoppingList}
+ */
+@Value
+public class ShoppingPlan
+{
+	/**
+	 * Shops to visit, in the order to visit them
+	 */
+	List<Visit> visits;
+
+	/**
+	 * Items no shop sells
+	 */
+	List<String> unavailableItems;
+
+	/**
+	 * A shop on the plan and the items to buy there
+	 */
+	@Value
+	public static class Visit
+	{
+		Shop shop;
+
+		List<String> items;
+	}
+}
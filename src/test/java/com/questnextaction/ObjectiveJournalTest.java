@@ -0,0 +1,310 @@
+package com.questnextaction;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for journalling objectives and replaying them after a crash
+ */
+public class ObjectiveJournalTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Objective travel(String id, boolean active)
+	{
+		WorldPoint location = new WorldPoint(3200, 3200, 0);
+		return Objective.builder()
+			.id(id)
+			.type(ObjectiveType.TRAVEL)
+			.task("Go to " + id)
+			.locationName("Somewhere")
+			.location(location)
+			.regionId(location.getRegionID())
+			.active(active)
+			.build();
+	}
+
+	private Path directory()
+	{
+		return folder.getRoot().toPath().resolve("profile");
+	}
+
+	private Map<String, Objective> replay() throws IOException
+	{
+		Map<String, Objective> objectives = new LinkedHashMap<>();
+		ObjectiveJournal.open(directory(), objectives).close();
+		return objectives;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		Objective buy = Objective.builder()
+			.id("buy_pot")
+			.type(ObjectiveType.BUY)
+			.task("Buy 2 x Pot")
+			.locationName("2 shops")
+			.location(new WorldPoint(3212, 3247, 0))
+			.possibleLocation(new WorldPoint(3212, 3247, 0))
+			.possibleLocation(new WorldPoint(3217, 3414, 1))
+			.regionId(12850)
+			.active(true)
+			.itemName("Pot")
+			.quantity(2)
+			.build();
+		Objective bare = Objective.builder()
+			.id("bare")
+			.type(ObjectiveType.TALK)
+			.task("Talk to Bob")
+			.build();
+
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			assertTrue("Nothing should have been saved yet", journal.isCreated());
+			journal.put(travel("removed", false));
+			journal.put(buy);
+			journal.put(bare);
+			journal.remove("removed");
+		}
+
+		Map<String, Objective> objectives = new LinkedHashMap<>();
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), objectives))
+		{
+			assertFalse(journal.isCreated());
+		}
+		assertEquals(Arrays.asList(buy, bare), new ArrayList<>(objectives.values()));
+		assertNull(objectives.get("bare").getLocation());
+		assertNull(objectives.get("bare").getQuantity());
+	}
+
+	@Test
+	public void testTornRecordIsDropped() throws IOException
+	{
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("kept", false));
+			journal.put(travel("torn", false));
+		}
+
+		Path journalFile = directory().resolve(ObjectiveJournal.JOURNAL_FILE);
+		long size = Files.size(journalFile);
+		try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw"))
+		{
+			file.setLength(size - 5);
+		}
+
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("after", true));
+		}
+
+		Map<String, Objective> objectives = replay();
+		assertEquals("New records should be appended over the torn one",
+			Arrays.asList("kept", "after"), new ArrayList<>(objectives.keySet()));
+	}
+
+	@Test
+	public void testCorruptRecordIsDropped() throws IOException
+	{
+		Path journalFile = directory().resolve(ObjectiveJournal.JOURNAL_FILE);
+		long corrupt;
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("kept", false));
+			corrupt = Files.size(journalFile) + 10;
+			journal.put(travel("corrupt", false));
+			journal.put(travel("later", false));
+		}
+
+		byte[] bytes = Files.readAllBytes(journalFile);
+		bytes[(int) corrupt] ^= 0x55;
+		Files.write(journalFile, bytes);
+
+		assertEquals("Records from the corrupt one on should be dropped",
+			Arrays.asList("kept"), new ArrayList<>(replay().keySet()));
+	}
+
+	@Test
+	public void testUnknownChangeIsDropped() throws IOException
+	{
+		Path journalFile = directory().resolve(ObjectiveJournal.JOURNAL_FILE);
+		long unknown;
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("kept", false));
+			unknown = Files.size(journalFile);
+			journal.remove("kept");
+		}
+
+		// A change of a type this version does not know, with a valid checksum
+		byte[] bytes = Files.readAllBytes(journalFile);
+		ByteBuffer record = ByteBuffer.wrap(bytes, (int) unknown, bytes.length - (int) unknown);
+		int length = record.getInt();
+		bytes[(int) unknown + 4] = 99;
+		CRC32 crc = new CRC32();
+		crc.update(bytes, (int) unknown + 4, length);
+		ByteBuffer.wrap(bytes).putInt((int) unknown + 4 + length, (int) crc.getValue());
+		Files.write(journalFile, bytes);
+
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("after", true));
+		}
+
+		assertEquals("New records should be appended over the unknown one",
+			Arrays.asList("kept", "after"), new ArrayList<>(replay().keySet()));
+	}
+
+	@Test
+	public void testCorruptSnapshotIsMovedAside() throws IOException
+	{
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("lost", false));
+			journal.compact(() -> Arrays.asList(travel("lost", false)));
+		}
+
+		Path snapshotFile = directory().resolve(ObjectiveJournal.SNAPSHOT_FILE);
+		byte[] bytes = Files.readAllBytes(snapshotFile);
+		bytes[0] ^= 0x55;
+		Files.write(snapshotFile, bytes);
+
+		Map<String, Objective> objectives = new LinkedHashMap<>();
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), objectives))
+		{
+			assertTrue(objectives.isEmpty());
+			journal.put(travel("after", true));
+		}
+
+		assertTrue("The corrupt snapshot should be kept",
+			Files.exists(directory().resolve(ObjectiveJournal.SNAPSHOT_FILE + ObjectiveJournal.CORRUPT_SUFFIX)));
+		assertEquals("Changes should still be saved",
+			Arrays.asList("after"), new ArrayList<>(replay().keySet()));
+	}
+
+	@Test
+	public void testUnknownJournalVersionIsMovedAside() throws IOException
+	{
+		Path journalFile = directory().resolve(ObjectiveJournal.JOURNAL_FILE);
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("lost", false));
+		}
+
+		byte[] bytes = Files.readAllBytes(journalFile);
+		ByteBuffer.wrap(bytes).putInt(4, ObjectiveJournal.VERSION + 1);
+		Files.write(journalFile, bytes);
+
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("after", true));
+		}
+
+		assertTrue(Files.exists(directory().resolve(ObjectiveJournal.JOURNAL_FILE + ObjectiveJournal.CORRUPT_SUFFIX)));
+		assertEquals(Arrays.asList("after"), new ArrayList<>(replay().keySet()));
+	}
+
+	@Test
+	public void testCompactionKeepsObjectives() throws IOException
+	{
+		Map<String, Objective> current = new LinkedHashMap<>();
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			for (int i = 0; i < 2000; i++)
+			{
+				Objective objective = travel("objective_" + (i % 10), i % 2 == 0);
+				current.put(objective.getId(), objective);
+				journal.put(objective);
+			}
+			journal.remove("objective_3");
+			current.remove("objective_3");
+			assertTrue(journal.needsCompaction(1024));
+
+			journal.compact(() -> new ArrayList<>(current.values()));
+			assertFalse("Compacting should empty the journal", journal.needsCompaction(0));
+
+			journal.put(travel("after", true));
+			current.put("after", travel("after", true));
+		}
+
+		assertTrue("The journal should hold only the change after compacting",
+			Files.size(directory().resolve(ObjectiveJournal.JOURNAL_FILE)) < 200);
+		assertEquals(current, replay());
+	}
+
+	@Test
+	public void testChangesDuringCompactionAreKept() throws IOException
+	{
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.put(travel("first", false));
+			Map<String, Objective> current = new LinkedHashMap<>();
+			current.put("first", travel("first", false));
+
+			journal.compact(() ->
+			{
+				List<Objective> snapshot = new ArrayList<>(current.values());
+				// Made while the snapshot is written
+				try
+				{
+					journal.put(travel("second", true));
+					journal.remove("first");
+				}
+				catch (IOException e)
+				{
+					throw new AssertionError(e);
+				}
+				return snapshot;
+			});
+		}
+
+		Map<String, Objective> objectives = replay();
+		assertEquals(Arrays.asList("second"), new ArrayList<>(objectives.keySet()));
+	}
+
+	@Test
+	public void testOldJournalReplaysOverNewSnapshot() throws IOException
+	{
+		Map<String, Objective> current = new LinkedHashMap<>();
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			for (String id : Arrays.asList("a", "b", "c"))
+			{
+				current.put(id, travel(id, false));
+				journal.put(current.get(id));
+			}
+			journal.remove("b");
+			current.remove("b");
+			current.put("a", travel("a", true));
+			journal.put(current.get("a"));
+		}
+
+		// As left by a crash after the new snapshot was moved into place, but not the new journal
+		Path journalFile = directory().resolve(ObjectiveJournal.JOURNAL_FILE);
+		byte[] oldJournal = Files.readAllBytes(journalFile);
+		try (ObjectiveJournal journal = ObjectiveJournal.open(directory(), new LinkedHashMap<>()))
+		{
+			journal.compact(() -> new ArrayList<>(current.values()));
+		}
+		Files.write(journalFile, oldJournal);
+
+		assertEquals(current, replay());
+	}
+}
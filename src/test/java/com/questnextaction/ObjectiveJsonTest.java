@@ -0,0 +1,88 @@
+package com.questnextaction;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for reading and writing saved objectives
+ */
+public class ObjectiveJsonTest
+{
+	private static String write(Collection<Objective> objectives) throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		ObjectiveJson.write(objectives, writer);
+		return writer.toString();
+	}
+
+	private static List<Objective> read(String json) throws IOException
+	{
+		List<Objective> objectives = new ArrayList<>();
+		ObjectiveJson.read(new StringReader(json), objectives::add);
+		return objectives;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		Objective buy = Objective.builder()
+			.id("buy_pot")
+			.type(ObjectiveType.BUY)
+			.task("Buy 2 x Pot")
+			.locationName("2 shops")
+			.location(new WorldPoint(3212, 3247, 0))
+			.possibleLocation(new WorldPoint(3212, 3247, 0))
+			.possibleLocation(new WorldPoint(3217, 3414, 1))
+			.regionId(12850)
+			.active(true)
+			.itemName("Pot")
+			.quantity(2)
+			.build();
+		Objective bare = Objective.builder()
+			.id("bare")
+			.type(ObjectiveType.TALK)
+			.task("Talk to \"Bob\"")
+			.build();
+
+		List<Objective> read = read(write(Arrays.asList(buy, bare)));
+
+		assertEquals(Arrays.asList(buy, bare), read);
+		assertNull(read.get(1).getLocation());
+		assertNull(read.get(1).getQuantity());
+	}
+
+	@Test
+	public void testSkipsUnknownTypesAndFields() throws IOException
+	{
+		List<Objective> read = read("{\"version\": 1, \"future\": [1, 2], \"objectives\": ["
+			+ "{\"id\": \"a\", \"type\": \"TELEPORT\", \"task\": \"Teleport\"},"
+			+ "{\"type\": \"TALK\", \"task\": \"No ID\"},"
+			+ "{\"id\": \"b\", \"type\": \"TRAVEL\", \"task\": \"Walk\", \"colour\": \"red\"}]}");
+
+		assertEquals(1, read.size());
+		assertEquals("b", read.get(0).getId());
+		assertEquals(ObjectiveType.TRAVEL, read.get(0).getType());
+	}
+
+	@Test(expected = IOException.class)
+	public void testNewerVersionThrows() throws IOException
+	{
+		read("{\"version\": " + (ObjectiveJson.VERSION + 1) + ", \"objectives\": []}");
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedThrows() throws IOException
+	{
+		read("{\"version\": 1, \"objectives\": {\"id\": \"a\"}}");
+	}
+}
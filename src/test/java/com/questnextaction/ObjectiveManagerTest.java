@@ -0,0 +1,293 @@
+package com.questnextaction;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ObjectiveManager
+ */
+public class ObjectiveManagerTest
+{
+	private ObjectiveManager manager;
+
+	@Before
+	public void setUp()
+	{
+		manager = new ObjectiveManager();
+	}
+
+	private static Objective travel(String id, boolean active)
+	{
+		WorldPoint location = new WorldPoint(3200, 3200, 0);
+		return Objective.builder()
+			.id(id)
+			.type(ObjectiveType.TRAVEL)
+			.task("Go to " + id)
+			.locationName("Somewhere")
+			.location(location)
+			.regionId(location.getRegionID())
+			.active(active)
+			.build();
+	}
+
+	@Test
+	public void testSampleObjectives()
+	{
+		assertEquals(3, manager.getAllObjectives().size());
+		assertTrue("Samples start inactive", manager.getActiveObjectives().isEmpty());
+		assertEquals("Talk to Cook", manager.getObjective("cooks_assistant_1").getTask());
+	}
+
+	@Test
+	public void testAddToggleRemove()
+	{
+		manager.addObjective(travel("test", false));
+		assertEquals(4, manager.getAllObjectives().size());
+		assertFalse(manager.getObjective("test").isActive());
+
+		manager.toggleObjective("test");
+		assertTrue(manager.getObjective("test").isActive());
+		assertEquals(1, manager.getActiveObjectives().size());
+
+		manager.removeObjective("test");
+		assertNull(manager.getObjective("test"));
+		assertTrue(manager.getActiveObjectives().isEmpty());
+
+		manager.toggleObjective("missing");
+		manager.removeObjective("missing");
+		assertEquals(3, manager.getAllObjectives().size());
+	}
+
+	@Test
+	public void testReadsAreUnaffectedByLaterChanges()
+	{
+		Collection<Objective> before = manager.getAllObjectives();
+		manager.addObjective(travel("test", true));
+		manager.removeObjective("collect_wool");
+
+		assertEquals("An earlier read should not see later changes", 3, before.size());
+		assertTrue(before.stream().noneMatch(objective -> objective.getId().equals("test")));
+		assertEquals(3, manager.getAllObjectives().size());
+	}
+
+	@Test
+	public void testVersionChangesOnlyWithObjectives()
+	{
+		long version = manager.getVersion();
+		List<Objective> active = manager.getActiveObjectives();
+		assertSame("Reads should reuse the active list", active, manager.getActiveObjectives());
+
+		manager.toggleObjective("missing");
+		manager.removeObjective("missing");
+		assertEquals("Changing nothing should keep the version", version, manager.getVersion());
+		assertSame(active, manager.getActiveObjectives());
+
+		manager.toggleObjective("go_to_varrock");
+		assertTrue(manager.getVersion() > version);
+		assertEquals(0, active.size());
+		assertEquals(1, manager.getActiveObjectives().size());
+
+		version = manager.getVersion();
+		manager.addObjective(travel("test", false));
+		assertTrue(manager.getVersion() > version);
+
+		version = manager.getVersion();
+		manager.removeObjective("test");
+		assertTrue(manager.getVersion() > version);
+	}
+
+	@Test
+	public void testActiveObjectivesDoNotAllocate()
+	{
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < 100; i++)
+		{
+			manager.addObjective(travel("objective_" + i, i % 10 == 0));
+		}
+
+		// Read the way the overlays do each frame, once to warm up and then measured
+		int found = 0;
+		for (int i = 0; i < 100_000; i++)
+		{
+			found += countActive();
+		}
+		found = 0;
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 100_000; i++)
+		{
+			found += countActive();
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(100_000 * 10, found);
+		// Any per-call allocation would add up to megabytes over 100k calls
+		assertTrue("Reading active objectives should not allocate, allocated " + allocated + " bytes",
+			allocated < 64 * 1024);
+	}
+
+	private int countActive()
+	{
+		int count = 0;
+		List<Objective> active = manager.getActiveObjectives();
+		for (int i = 0; i < active.size(); i++)
+		{
+			count += active.get(i).isActive() ? 1 : 0;
+		}
+		return count;
+	}
+
+	@Test
+	public void testListenersHearEachChange()
+	{
+		List<String> events = new ArrayList<>();
+		ObjectiveListener listener = new ObjectiveListener()
+		{
+			@Override
+			public void onObjectiveAdded(ObjectiveAdded event)
+			{
+				events.add("added " + event.getObjective().getId());
+			}
+
+			@Override
+			public void onObjectiveRemoved(ObjectiveRemoved event)
+			{
+				events.add("removed " + event.getObjective().getId());
+			}
+
+			@Override
+			public void onObjectiveToggled(ObjectiveToggled event)
+			{
+				assertSame("The change should be visible before listeners hear of it",
+					event.getObjective(), manager.getObjective(event.getObjective().getId()));
+				events.add("toggled " + event.getObjective().getId() + " " + event.getObjective().isActive());
+			}
+
+			@Override
+			public void onObjectiveUpdated(ObjectiveUpdated event)
+			{
+				events.add("updated " + event.getPrevious().getTask() + " -> " + event.getObjective().getTask());
+			}
+		};
+		manager.addListener(listener);
+
+		manager.addObjective(travel("test", false));
+		manager.toggleObjective("test");
+		manager.addObjective("test", ObjectiveType.TALK, "Talk", "Somewhere", null);
+		manager.removeObjective("test");
+		manager.toggleObjective("missing");
+		manager.removeObjective("missing");
+		manager.removeListener(listener);
+		manager.addObjective(travel("unheard", false));
+
+		assertEquals(Arrays.asList("added test", "toggled test true", "updated Go to test -> Talk", "removed test"),
+			events);
+	}
+
+	@Test
+	public void testFailingListenerDoesNotStopChange()
+	{
+		List<String> added = new ArrayList<>();
+		manager.addListener(new ObjectiveListener()
+		{
+			@Override
+			public void onObjectiveAdded(ObjectiveAdded event)
+			{
+				throw new IllegalStateException("broken");
+			}
+		});
+		manager.addListener(new ObjectiveListener()
+		{
+			@Override
+			public void onObjectiveAdded(ObjectiveAdded event)
+			{
+				added.add(event.getObjective().getId());
+			}
+		});
+
+		manager.addObjective(travel("test", false));
+		assertNotNull(manager.getObjective("test"));
+		assertEquals(Collections.singletonList("test"), added);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testActiveObjectivesAreReadOnly()
+	{
+		manager.getActiveObjectives().clear();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testAllObjectivesAreReadOnly()
+	{
+		manager.getAllObjectives().clear();
+	}
+
+	@Test
+	public void testConcurrentReadsAndChanges() throws InterruptedException
+	{
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		// Like the overlays, iterate every objective over and over while the EDT changes them
+		List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			Thread reader = new Thread(() ->
+			{
+				try
+				{
+					while (!done.get())
+					{
+						int active = 0;
+						for (Objective objective : manager.getAllObjectives())
+						{
+							active += objective.isActive() ? 1 : 0;
+						}
+						for (Objective objective : manager.getActiveObjectives())
+						{
+							assertTrue(objective.isActive());
+						}
+						assertTrue(active <= manager.getAllObjectives().size());
+					}
+				}
+				catch (Throwable t)
+				{
+					failure.compareAndSet(null, t);
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+
+		for (int i = 0; i < 5000; i++)
+		{
+			manager.addObjective(travel("objective_" + i, i % 2 == 0));
+			manager.toggleObjective("objective_" + (i / 2));
+			if (i % 3 == 0)
+			{
+				manager.removeObjective("objective_" + (i / 3));
+			}
+		}
+		done.set(true);
+		for (Thread reader : readers)
+		{
+			reader.join();
+		}
+
+		assertNull("Reading while objectives change failed: " + failure.get(), failure.get());
+		assertEquals(3 + 5000 - 1667, manager.getAllObjectives().size());
+	}
+}
@@ -0,0 +1,283 @@
+package com.questnextaction;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for journalling objectives as they change and loading them at login
+ */
+public class ObjectiveStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Map<String, String> legacy = new ConcurrentHashMap<>();
+
+	private ScheduledThreadPoolExecutor executor;
+	private ObjectiveManager manager;
+	private ObjectiveStore store;
+
+	@Before
+	public void setUp()
+	{
+		executor = new ScheduledThreadPoolExecutor(1, runnable -> new Thread(runnable, "objective-store-test"));
+		manager = new ObjectiveManager();
+		store = new ObjectiveStore(manager, folder.getRoot().toPath(), new ObjectiveStore.LegacyStorage()
+		{
+			@Override
+			public String read(String profile)
+			{
+				return legacy.get(profile);
+			}
+
+			@Override
+			public void remove(String profile)
+			{
+				legacy.remove(profile);
+			}
+		}, executor);
+		store.start();
+	}
+
+	@After
+	public void tearDown()
+	{
+		store.stop();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Wait until the executor has run everything scheduled, including anything scheduled meanwhile
+	 */
+	private void settle() throws Exception
+	{
+		do
+		{
+			executor.submit(() -> { }).get();
+		}
+		while (!executor.getQueue().isEmpty() || executor.getActiveCount() > 0);
+	}
+
+	private static Objective travel(String id, boolean active)
+	{
+		WorldPoint location = new WorldPoint(3200, 3200, 0);
+		return Objective.builder()
+			.id(id)
+			.type(ObjectiveType.TRAVEL)
+			.task("Go to " + id)
+			.locationName("Somewhere")
+			.location(location)
+			.regionId(location.getRegionID())
+			.active(active)
+			.build();
+	}
+
+	/**
+	 * The objectives saved for a profile, read while the store does not have its journal open
+	 */
+	private Map<String, Objective> saved(String profile) throws IOException
+	{
+		Map<String, Objective> objectives = new LinkedHashMap<>();
+		ObjectiveJournal.open(store.profileDirectory(profile), objectives).close();
+		return objectives;
+	}
+
+	private void save(String profile, List<Objective> objectives) throws IOException
+	{
+		try (ObjectiveJournal journal = ObjectiveJournal.open(store.profileDirectory(profile), new LinkedHashMap<>()))
+		{
+			journal.compact(() -> objectives);
+		}
+	}
+
+	@Test
+	public void testLoadReplacesObjectives() throws Exception
+	{
+		List<Objective> objectives = new ArrayList<>();
+		for (int i = 0; i < 600; i++)
+		{
+			objectives.add(travel("objective_" + i, i % 3 == 0));
+		}
+		save("profile", objectives);
+
+		store.load("profile");
+		settle();
+
+		assertEquals(600, manager.getAllObjectives().size());
+		assertEquals(200, manager.getActiveObjectives().size());
+		assertNull("Samples should be replaced", manager.getObjective("cooks_assistant_1"));
+		assertEquals(new ArrayList<>(manager.getAllObjectives()), objectives);
+	}
+
+	@Test
+	public void testNothingSavedKeepsSamplesOnFirstLogin() throws Exception
+	{
+		store.load("new");
+		settle();
+		store.stop();
+
+		assertEquals(3, manager.getAllObjectives().size());
+		assertEquals("The samples should be saved for the next login", 3, saved("new").size());
+	}
+
+	@Test
+	public void testChangesAreSavedImmediately() throws Exception
+	{
+		store.load("profile");
+		settle();
+
+		manager.toggleObjective("go_to_varrock");
+		manager.addObjective(travel("test", false));
+		manager.toggleObjective("test");
+		manager.removeObjective("collect_wool");
+		// Closed without waiting for the executor, as after a crash
+		store.stop();
+
+		Map<String, Objective> saved = saved("profile");
+		assertEquals(3, saved.size());
+		assertEquals(manager.getObjective("test"), saved.get("test"));
+		assertTrue(saved.get("test").isActive());
+		assertEquals(manager.getObjective("go_to_varrock"), saved.get("go_to_varrock"));
+	}
+
+	@Test
+	public void testChangesAreWrittenInBackground() throws Exception
+	{
+		store.load("profile");
+		settle();
+		Path journalFile = store.profileDirectory("profile").resolve(ObjectiveJournal.JOURNAL_FILE);
+		long size = Files.size(journalFile);
+
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() ->
+		{
+			try
+			{
+				release.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		});
+		manager.toggleObjective("go_to_varrock");
+		manager.toggleObjective("go_to_varrock");
+		manager.toggleObjective("go_to_varrock");
+		assertEquals("The changing thread should not write to the journal", size, Files.size(journalFile));
+
+		release.countDown();
+		settle();
+		assertTrue(Files.size(journalFile) > size);
+		store.stop();
+		assertTrue(saved("profile").get("go_to_varrock").isActive());
+	}
+
+	@Test
+	public void testNothingIsSavedBeforeLogin() throws Exception
+	{
+		manager.toggleObjective("go_to_varrock");
+		settle();
+
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testSwitchingProfile() throws Exception
+	{
+		save("second", Collections.singletonList(travel("second", true)));
+		store.load("first");
+		settle();
+
+		manager.toggleObjective("go_to_varrock");
+		store.load("second");
+		settle();
+
+		assertEquals(1, manager.getAllObjectives().size());
+		assertNotNull(manager.getObjective("second"));
+
+		store.load("third");
+		settle();
+		assertTrue("Another account's objectives should not carry over", manager.getAllObjectives().isEmpty());
+
+		store.stop();
+		assertTrue(saved("first").get("go_to_varrock").isActive());
+		assertEquals(1, saved("second").size());
+		assertTrue(saved("third").isEmpty());
+	}
+
+	@Test
+	public void testChangesAfterStopAreNotSaved() throws Exception
+	{
+		store.load("profile");
+		settle();
+
+		manager.addObjective(travel("test", false));
+		store.stop();
+		manager.addObjective(travel("after", false));
+		settle();
+
+		Map<String, Objective> saved = saved("profile");
+		assertEquals(4, saved.size());
+		assertNull(saved.get("after"));
+	}
+
+	@Test
+	public void testJournalIsCompacted() throws Exception
+	{
+		store.load("profile");
+		settle();
+
+		for (int i = 0; i < 2000; i++)
+		{
+			manager.toggleObjective("go_to_varrock");
+			// Written one at a time, as changes waiting to be written are saved as one record
+			settle();
+		}
+		manager.toggleObjective("collect_wool");
+		store.stop();
+
+		Path journalFile = store.profileDirectory("profile").resolve(ObjectiveJournal.JOURNAL_FILE);
+		assertTrue("The journal should have been compacted", Files.size(journalFile) < ObjectiveStore.COMPACT_MIN_BYTES);
+		Map<String, Objective> saved = saved("profile");
+		assertEquals(3, saved.size());
+		assertEquals(manager.getObjective("go_to_varrock"), saved.get("go_to_varrock"));
+		assertEquals(manager.getObjective("collect_wool"), saved.get("collect_wool"));
+	}
+
+	@Test
+	public void testConfigObjectivesAreMoved() throws Exception
+	{
+		StringWriter json = new StringWriter();
+		ObjectiveJson.write(Collections.singletonList(travel("from_config", true)), json);
+		legacy.put("profile", json.toString());
+
+		store.load("profile");
+		settle();
+
+		assertEquals(1, manager.getAllObjectives().size());
+		assertNotNull(manager.getObjective("from_config"));
+		assertTrue("The config should be cleared once moved", legacy.isEmpty());
+
+		store.stop();
+		assertNotNull(saved("profile").get("from_config"));
+	}
+}
@@ -0,0 +1,156 @@
+package com.questnextaction.db;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the precompiled binary shop snapshot
+ */
+public class CompiledShopDataTest
+{
+	private static final String SHOPS_DATA_FILE = "/com/questnextaction/data/shops.json";
+
+	private List<Shop> jsonShops;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		try (InputStream is = CompiledShopDataTest.class.getResourceAsStream(SHOPS_DATA_FILE))
+		{
+			assertNotNull("shops.json should be on the classpath", is);
+			jsonShops = ShopJsonParser.readShops(new InputStreamReader(is, StandardCharsets.UTF_8));
+		}
+	}
+
+	private byte[] compile(List<Shop> shops, long checksum) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			CompiledShopData.write(shops, checksum, out);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testRoundTripPreservesShops() throws IOException
+	{
+		CompiledShopData data = CompiledShopData.read(ByteBuffer.wrap(compile(jsonShops, 42)));
+
+		assertEquals("Snapshot should contain the same shops as the JSON", jsonShops, data.getShops());
+	}
+
+	@Test
+	public void testRoundTripPreservesItemIndex() throws IOException
+	{
+		CompiledShopData data = CompiledShopData.read(ByteBuffer.wrap(compile(jsonShops, 42)));
+		Map<String, List<Shop>> index = data.getItemIndex();
+
+		for (Shop shop : jsonShops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				List<Shop> shops = index.get(item.getName().toLowerCase());
+				assertNotNull("Index should contain " + item.getName(), shops);
+				assertTrue("Index entry for " + item.getName() + " should contain " + shop.getId(),
+					shops.stream().anyMatch(s -> s.getId().equals(shop.getId())));
+			}
+		}
+	}
+
+	@Test
+	public void testIndexSharesShopInstances() throws IOException
+	{
+		CompiledShopData data = CompiledShopData.read(ByteBuffer.wrap(compile(jsonShops, 42)));
+
+		for (List<Shop> shops : data.getItemIndex().values())
+		{
+			for (Shop shop : shops)
+			{
+				assertTrue("Indexed shops should be the loaded shop instances",
+					data.getShops().stream().anyMatch(s -> s == shop));
+			}
+		}
+	}
+
+	@Test
+	public void testStaleSnapshotDetected() throws IOException
+	{
+		CompiledShopData data = CompiledShopData.read(ByteBuffer.wrap(compile(jsonShops, 42)));
+
+		assertTrue("Snapshot should match its own source checksum", data.matchesSource(42));
+		assertFalse("Snapshot should not match a different checksum", data.matchesSource(43));
+		assertTrue("Snapshot should be used when there is no source to compare", data.matchesSource(CompiledShopData.NO_SOURCE));
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsWrongMagic() throws IOException
+	{
+		byte[] bytes = compile(jsonShops, 42);
+		bytes[0] = 0;
+		CompiledShopData.read(ByteBuffer.wrap(bytes));
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsUnsupportedVersion() throws IOException
+	{
+		byte[] bytes = compile(jsonShops, 42);
+		bytes[7] = (byte) (CompiledShopData.VERSION + 1);
+		CompiledShopData.read(ByteBuffer.wrap(bytes));
+	}
+
+	@Test
+	public void testMissingSnapshotResource()
+	{
+		assertNull("Missing snapshot should fall back",
+			CompiledShopData.load("/com/questnextaction/data/missing.bin", CompiledShopData.NO_SOURCE));
+	}
+
+	@Test
+	public void testChecksumOfSource() throws IOException
+	{
+		CRC32 crc = new CRC32();
+		try (InputStream in = CompiledShopDataTest.class.getResourceAsStream(SHOPS_DATA_FILE))
+		{
+			crc.update(in.readAllBytes());
+		}
+		assertEquals(crc.getValue(), CompiledShopData.checksumResource(SHOPS_DATA_FILE));
+	}
+
+	@Test
+	public void testChecksumOfMissingResource() throws IOException
+	{
+		assertEquals(CompiledShopData.NO_SOURCE, CompiledShopData.checksumResource("/com/questnextaction/data/missing.json"));
+	}
+
+	@Test
+	public void testNullOwnerAndCoordinatesSurviveRoundTrip() throws IOException
+	{
+		Shop shop = new Shop();
+		shop.setId("no_owner");
+		shop.setName("No Owner");
+		shop.setLocation("Nowhere");
+		shop.setItems(new ArrayList<>());
+
+		CompiledShopData data = CompiledShopData.read(ByteBuffer.wrap(compile(List.of(shop), 1)));
+		Shop loaded = data.getShops().get(0);
+
+		assertNull("Owner should stay null", loaded.getOwner());
+		assertNull("WorldPoint should stay null", loaded.getWorldPoint());
+		assertEquals(shop, loaded);
+	}
+}
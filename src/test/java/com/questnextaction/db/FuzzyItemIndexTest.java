@@ -0,0 +1,169 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for typo-tolerant item search
+ */
+public class FuzzyItemIndexTest
+{
+	private static final long BUDGET = TimeUnit.SECONDS.toNanos(1);
+
+	private final FuzzyItemIndex index = FuzzyItemIndex.build(Arrays.asList(
+		"tinderbox", "bucket", "bucket of water", "bucket of milk", "staff of water", "water rune",
+		"air rune", "rune platebody", "rune scimitar", "iron scimitar", "pot"));
+
+	private List<String> search(String query)
+	{
+		return index.search(query, 10, BUDGET);
+	}
+
+	@Test
+	public void testTypos()
+	{
+		assertEquals("tinderbox", search("tinderbx").get(0));
+		assertEquals("tinderbox", search("tindrebox").get(0));
+		assertEquals("bucket of water", search("bucket of watr").get(0));
+		assertEquals("rune scimitar", search("rune scimtar").get(0));
+	}
+
+	@Test
+	public void testUnfinishedLastWord()
+	{
+		assertEquals(Arrays.asList("bucket of water"), search("bucket of wa"));
+		assertEquals("tinderbox", search("tind").get(0));
+	}
+
+	@Test
+	public void testEveryWordMustMatch()
+	{
+		assertEquals(Arrays.asList("rune platebody"), search("rune plate"));
+		assertTrue(search("dragon scimitar").isEmpty());
+	}
+
+	@Test
+	public void testRanking()
+	{
+		// Names starting with the query rank first, then shorter names
+		assertEquals(Arrays.asList("water rune", "staff of water", "bucket of water"), search("water"));
+		assertEquals(Arrays.asList("bucket", "bucket of milk", "bucket of water"), search("bucket"));
+
+		// Fewer edits rank before shorter names
+		FuzzyItemIndex cabbages = FuzzyItemIndex.build(Arrays.asList("garbage", "cabbages", "cabbage"));
+		assertEquals(Arrays.asList("cabbage", "cabbages", "garbage"), cabbages.search("cabbage", 10, BUDGET));
+	}
+
+	@Test
+	public void testShortWordsMustBeExact()
+	{
+		assertEquals(Arrays.asList("pot"), search("pot"));
+		assertEquals("A short word being typed still matches as a prefix", Arrays.asList("pot"), search("po"));
+		assertTrue("Two letter words should not tolerate typos", search("px").isEmpty());
+	}
+
+	@Test
+	public void testLimit()
+	{
+		assertEquals(2, index.search("rune", 2, BUDGET).size());
+		assertTrue(index.search("rune", 0, BUDGET).isEmpty());
+	}
+
+	@Test
+	public void testSmallest()
+	{
+		long[] values = {9, 3, 7, 1, 8, 2, 6, 5, 4, 0};
+		assertArrayEquals(new long[]{0, 1, 2}, FuzzyItemIndex.smallest(values.clone(), 3));
+		assertArrayEquals(new long[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, FuzzyItemIndex.smallest(values.clone(), 20));
+	}
+
+	@Test
+	public void testDistance()
+	{
+		assertEquals(0, FuzzyItemIndex.distance("rune", "rune"));
+		assertEquals(1, FuzzyItemIndex.distance("watr", "water"));
+		assertEquals(3, FuzzyItemIndex.distance("", "pot"));
+		assertEquals(3, FuzzyItemIndex.distance("kitten", "sitting"));
+	}
+
+	@Test
+	public void testDistanceMatchesDynamicProgram()
+	{
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++)
+		{
+			// Include words longer than 64 characters and non-ASCII characters
+			String a = randomWord(random, random.nextInt(i % 100 == 0 ? 80 : 12));
+			String b = randomWord(random, random.nextInt(i % 100 == 0 ? 80 : 12));
+			assertEquals("Distance between '" + a + "' and '" + b + "'", naiveDistance(a, b), FuzzyItemIndex.distance(a, b));
+		}
+	}
+
+	private static String randomWord(Random random, int length)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+		{
+			sb.append("abcé".charAt(random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+
+	private static int naiveDistance(String a, String b)
+	{
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++)
+		{
+			for (int j = 0; j <= b.length(); j++)
+			{
+				if (i == 0 || j == 0)
+				{
+					d[i][j] = i + j;
+				}
+				else
+				{
+					int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+					d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+
+	@Test
+	public void testSpentBudgetOnlyReturnsFullMatches()
+	{
+		// Budgets short enough to run out after some of the words, where the names matching only
+		// "rune" must not be returned
+		for (long budget = 0; budget < TimeUnit.MILLISECONDS.toNanos(1); budget += 1000)
+		{
+			for (String name : index.search("rune plate", 10, budget))
+			{
+				assertEquals("Budget " + budget, "rune platebody", name);
+			}
+		}
+	}
+
+	@Test
+	public void testSearchesDoNotAffectEachOther()
+	{
+		List<String> first = search("rune");
+		search("water rune");
+		search("bucket of watr");
+		assertEquals(first, search("rune"));
+		assertEquals(Arrays.asList("rune platebody"), search("rune plate"));
+	}
+
+	@Test
+	public void testBlankQuery()
+	{
+		assertTrue(search("").isEmpty());
+		assertTrue(search(" - ").isEmpty());
+	}
+}
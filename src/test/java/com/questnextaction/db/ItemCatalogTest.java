@@ -0,0 +1,91 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the shared item catalog
+ */
+public class ItemCatalogTest
+{
+	@Test
+	public void testIdenticalItemsAreShared()
+	{
+		ItemCatalog catalog = new ItemCatalog();
+
+		ShopItem first = catalog.item(1931, "Pot", 5, 1);
+		ShopItem second = catalog.item(1931, new String("Pot"), 5, 1);
+
+		assertSame("Identical items should be the same instance", first, second);
+		assertEquals(1, catalog.variantCount());
+	}
+
+	@Test
+	public void testPriceVariantsShareName()
+	{
+		ItemCatalog catalog = new ItemCatalog();
+
+		ShopItem cheap = catalog.item(1931, "Pot", 5, 1);
+		ShopItem dear = catalog.item(1931, new String("Pot"), 5, 3);
+
+		assertNotSame("Different prices should be separate items", cheap, dear);
+		assertSame("Variants should share the interned name", cheap.getName(), dear.getName());
+		assertEquals(2, catalog.variantCount());
+		assertEquals(1, catalog.size());
+	}
+
+	@Test
+	public void testNameById()
+	{
+		ItemCatalog catalog = new ItemCatalog();
+		catalog.item(1925, "Bucket", 2, 2);
+
+		assertEquals("Bucket", catalog.getName(1925));
+		assertNull("Unknown item IDs should have no name", catalog.getName(1));
+	}
+
+	@Test
+	public void testInternNull()
+	{
+		assertNull(new ItemCatalog().intern(null));
+	}
+
+	@Test
+	public void testTrimKeepsNames()
+	{
+		ItemCatalog catalog = new ItemCatalog();
+		catalog.item(590, "Tinderbox", 2, 1);
+		catalog.item(590, "Tinderbox", 2, 2);
+		catalog.trim();
+
+		assertEquals("Tinderbox", catalog.getName(590));
+		assertEquals("Variant count should survive trimming", 2, catalog.variantCount());
+	}
+
+	@Test
+	public void testBundledShopsShareItemNames()
+	{
+		ShopDatabase database = new ShopDatabase();
+		List<Shop> potShops = database.findShopsByItem("pot");
+		assertTrue("Need at least two shops selling pots", potShops.size() > 1);
+
+		String name = null;
+		for (Shop shop : potShops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				if (item.getName().equalsIgnoreCase("pot"))
+				{
+					if (name == null)
+					{
+						name = item.getName();
+					}
+					assertSame("Every shop should reference the catalog's name", name, item.getName());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the primitive item ID to shop index
+ */
+public class ItemIdIndexTest
+{
+	private static Shop shop(int... itemIds)
+	{
+		Shop shop = new Shop();
+		List<ShopItem> items = new ArrayList<>();
+		for (int itemId : itemIds)
+		{
+			ShopItem item = new ShopItem();
+			item.setItemId(itemId);
+			item.setName("item " + itemId);
+			items.add(item);
+		}
+		shop.setItems(items);
+		return shop;
+	}
+
+	@Test
+	public void testLookup()
+	{
+		ItemIdIndex index = ItemIdIndex.build(List.of(shop(1931, 1925), shop(1931), shop(590)));
+
+		assertArrayEquals(new int[]{0, 1}, index.get(1931));
+		assertArrayEquals(new int[]{0}, index.get(1925));
+		assertArrayEquals(new int[]{2}, index.get(590));
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	public void testMissingItem()
+	{
+		ItemIdIndex index = ItemIdIndex.build(List.of(shop(1931)));
+
+		assertEquals(0, index.get(1).length);
+		assertEquals(-1, index.slotOf(1));
+	}
+
+	@Test
+	public void testEmptyIndex()
+	{
+		ItemIdIndex index = ItemIdIndex.build(List.of());
+
+		assertEquals(0, index.size());
+		assertEquals(0, index.get(1931).length);
+	}
+
+	@Test
+	public void testShopListingItemTwiceIsIndexedOnce()
+	{
+		ItemIdIndex index = ItemIdIndex.build(List.of(shop(1931, 1931), shop(1931)));
+
+		assertArrayEquals(new int[]{0, 1}, index.get(1931));
+	}
+
+	@Test
+	public void testUnusualKeys()
+	{
+		ItemIdIndex index = ItemIdIndex.build(List.of(shop(0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE)));
+
+		assertArrayEquals(new int[]{0}, index.get(0));
+		assertArrayEquals(new int[]{0}, index.get(-1));
+		assertArrayEquals(new int[]{0}, index.get(Integer.MIN_VALUE));
+		assertArrayEquals(new int[]{0}, index.get(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testManyKeysSurviveRehashing()
+	{
+		List<Shop> shops = new ArrayList<>();
+		for (int i = 0; i < 500; i++)
+		{
+			// Keys that are multiples of a power of two collide without mixing
+			shops.add(shop(i * 1024, i * 1024 + 1));
+		}
+
+		ItemIdIndex index = ItemIdIndex.build(shops);
+
+		assertEquals(1000, index.size());
+		for (int i = 0; i < 500; i++)
+		{
+			assertArrayEquals(new int[]{i}, index.get(i * 1024));
+			assertArrayEquals(new int[]{i}, index.get(i * 1024 + 1));
+			assertEquals(index.get(i * 1024), index.valueAt(index.slotOf(i * 1024)));
+		}
+	}
+}
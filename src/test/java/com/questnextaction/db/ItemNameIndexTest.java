@@ -0,0 +1,101 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the n-gram item name index
+ */
+public class ItemNameIndexTest
+{
+	private static final List<String> NAMES = Arrays.asList(
+		"pot", "bucket", "rune sword", "rune scimitar", "mithril sword", "air rune", "abcxbcd", "aaaa");
+
+	private final ItemNameIndex index = ItemNameIndex.build(NAMES);
+
+	private static List<String> scan(List<String> names, String query)
+	{
+		return names.stream()
+			.filter(name -> name.contains(query))
+			.sorted()
+			.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testResultsAreSorted()
+	{
+		assertEquals(Arrays.asList("air rune", "rune scimitar", "rune sword"), index.search("rune"));
+		assertEquals(Arrays.asList("mithril sword", "rune sword"), index.search("sword"));
+	}
+
+	@Test
+	public void testShortQueries()
+	{
+		assertEquals(scan(NAMES, "r"), index.search("r"));
+		assertEquals(scan(NAMES, "ru"), index.search("ru"));
+		assertEquals(scan(NAMES, " s"), index.search(" s"));
+		assertEquals(Arrays.asList("aaaa"), index.search("aaa"));
+	}
+
+	@Test
+	public void testTrigramsMustBeContiguous()
+	{
+		// "abcxbcd" has both trigrams of "abcd" but does not contain it
+		assertTrue(index.search("abcd").isEmpty());
+		assertEquals(Arrays.asList("abcxbcd"), index.search("abcxb"));
+	}
+
+	@Test
+	public void testNoMatch()
+	{
+		assertTrue(index.search("dragon").isEmpty());
+		assertTrue(index.search("z").isEmpty());
+	}
+
+	@Test
+	public void testNamesAreSortedAndCopied()
+	{
+		List<String> names = index.names();
+		assertEquals(scan(NAMES, ""), names);
+
+		names.clear();
+		assertEquals("Callers should not be able to modify the index", NAMES.size(), index.size());
+	}
+
+	@Test
+	public void testMatchesScanOnRandomNames()
+	{
+		Random random = new Random(42);
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 2000; i++)
+		{
+			names.add(randomWord(random, 3 + random.nextInt(12)));
+		}
+		ItemNameIndex randomIndex = ItemNameIndex.build(names);
+
+		List<String> distinct = names.stream().distinct().collect(Collectors.toList());
+		for (int i = 0; i < 500; i++)
+		{
+			String query = randomWord(random, 1 + random.nextInt(5));
+			assertEquals("Results for '" + query + "'", scan(distinct, query), randomIndex.search(query));
+		}
+	}
+
+	private static String randomWord(Random random, int length)
+	{
+		// A small alphabet so that queries have plenty of partial matches
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+		{
+			sb.append("abcde ".charAt(random.nextInt(6)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,117 @@
+package com.questnextaction.db;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for incremental type-ahead item search
+ */
+public class ItemSearchSessionTest
+{
+	private ShopDatabase shopDatabase;
+	private int databaseSearches;
+
+	@Before
+	public void setUp()
+	{
+		databaseSearches = 0;
+		shopDatabase = new ShopDatabase()
+		{
+			@Override
+			public List<String> searchItems(String query)
+			{
+				databaseSearches++;
+				return super.searchItems(query);
+			}
+		};
+	}
+
+	@Test
+	public void testTypingMatchesFullSearch()
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+		for (String query : new String[]{"r", "ru", "run", "rune", "rune ", "rune s", "rune sw", "RUNE SWORD"})
+		{
+			assertEquals("Results for '" + query + "'", new ShopDatabase().searchItems(query), session.search(query));
+		}
+	}
+
+	@Test
+	public void testExtendingQueryNarrowsPreviousResults()
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+		session.search("pot");
+		session.search("pots");
+		session.search("potsx");
+
+		assertEquals("Only the first keystroke should search the database", 1, databaseSearches);
+	}
+
+	@Test
+	public void testBackspaceReusesCachedResults()
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+		List<String> bu = session.search("bu");
+		session.search("buc");
+		session.search("buck");
+
+		List<String> again = session.search("bu");
+
+		assertSame("Deleting back to a cached query should reuse its result", bu, again);
+		assertEquals(1, databaseSearches);
+	}
+
+	@Test
+	public void testCaseInsensitiveCache()
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+		session.search("Pot");
+		session.search("POT");
+
+		assertEquals(1, databaseSearches);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedQueriesAreEvicted()
+	{
+		ItemSearchSession session = new ItemSearchSession(shopDatabase, 2);
+		session.search("pot");
+		session.search("axe");
+		session.search("rope");
+		session.search("pot");
+
+		assertEquals("Oldest query should have been evicted", 4, databaseSearches);
+	}
+
+	@Test
+	public void testClearForgetsResults()
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+		session.search("pot");
+		session.clear();
+		session.search("pot");
+
+		assertEquals(2, databaseSearches);
+	}
+
+	@Test
+	public void testBlankAndNullQueries()
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+
+		assertTrue(session.search(null).isEmpty());
+		assertTrue(session.search("").isEmpty());
+		assertTrue(session.search("   ").isEmpty());
+		assertEquals(0, databaseSearches);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testResultsAreReadOnly()
+	{
+		shopDatabase.newSearchSession().search("pot").clear();
+	}
+}
@@ -0,0 +1,145 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the per-item price ladders
+ */
+public class PriceLadderTest
+{
+	private static Shop shop(String id, ShopItem... items)
+	{
+		Shop shop = new Shop();
+		shop.setId(id);
+		shop.setItems(Arrays.asList(items));
+		return shop;
+	}
+
+	private static ShopItem item(String name, int stock, int price)
+	{
+		ShopItem item = new ShopItem();
+		item.setItemId(1);
+		item.setName(name);
+		item.setStock(stock);
+		item.setPrice(price);
+		return item;
+	}
+
+	private static List<String> ids(List<ShopOffer> offers)
+	{
+		return offers.stream().map(offer -> offer.getShop().getId()).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testTotalCostIncludesPriceRise()
+	{
+		assertEquals(0, PriceLadder.totalCost(100, 0));
+		assertEquals(100, PriceLadder.totalCost(100, 1));
+		assertEquals("Second unit costs 3% more", 203, PriceLadder.totalCost(100, 2));
+		assertEquals(309, PriceLadder.totalCost(100, 3));
+		assertEquals("Fractions of a coin add up before rounding", 1000 * 1 + 14985, PriceLadder.totalCost(1, 1000));
+	}
+
+	@Test
+	public void testCheapestOrdersByTotalCost()
+	{
+		Map<String, PriceLadder> ladders = PriceLadder.buildAll(Arrays.asList(
+			shop("dear", item("Pot", 10, 5)),
+			shop("cheap", item("Pot", 10, 1)),
+			shop("unlimited", item("Pot", -1, 2))), null);
+
+		List<ShopOffer> offers = ladders.get("pot").cheapest(4);
+
+		assertEquals(Arrays.asList("cheap", "unlimited", "dear"), ids(offers));
+		assertEquals(4, offers.get(0).getTotalCost());
+		assertEquals("Unlimited stock never raises the price", 8, offers.get(1).getTotalCost());
+		assertEquals(5 + 5 + 5 + 5, offers.get(2).getTotalCost());
+		assertTrue(offers.get(2).isComplete());
+	}
+
+	@Test
+	public void testPriceRiseCanMakeUnlimitedStockCheaper()
+	{
+		Map<String, PriceLadder> ladders = PriceLadder.buildAll(Arrays.asList(
+			shop("stocked", item("Rune", 1000, 100)),
+			shop("unlimited", item("Rune", -1, 110))), null);
+
+		assertEquals("stocked", ladders.get("rune").cheapest(1).get(0).getShop().getId());
+		assertEquals("unlimited", ladders.get("rune").cheapest(500).get(0).getShop().getId());
+		assertEquals(PriceLadder.totalCost(100, 500), ladders.get("rune").cheapest(500).get(1).getTotalCost());
+	}
+
+	@Test
+	public void testShopsRunningOutComeLast()
+	{
+		Map<String, PriceLadder> ladders = PriceLadder.buildAll(Arrays.asList(
+			shop("small", item("Pot", 2, 1)),
+			shop("medium", item("Pot", 5, 1)),
+			shop("enough", item("Pot", 20, 9))), null);
+
+		List<ShopOffer> offers = ladders.get("pot").cheapest(10);
+
+		assertEquals(Arrays.asList("enough", "medium", "small"), ids(offers));
+		assertFalse(offers.get(1).isComplete());
+		assertEquals("Only the stock can be bought", 5, offers.get(1).getQuantity());
+		assertEquals(PriceLadder.totalCost(1, 5), offers.get(1).getTotalCost());
+	}
+
+	@Test
+	public void testOutOfStockAndDuplicateListings()
+	{
+		Map<String, PriceLadder> ladders = PriceLadder.buildAll(Arrays.asList(
+			shop("empty", item("Pot", 0, 1)),
+			shop("twice", item("Pot", 5, 4), item("Pot", 5, 3))), null);
+
+		List<ShopOffer> offers = ladders.get("pot").cheapest(1);
+
+		assertEquals("Shops without stock are left out", Arrays.asList("twice"), ids(offers));
+		assertEquals("A shop listing an item twice offers its cheaper listing", 3, offers.get(0).getTotalCost());
+	}
+
+	@Test
+	public void testCheapestMatchesSortingEveryOffer()
+	{
+		Random random = new Random(16);
+		for (int round = 0; round < 50; round++)
+		{
+			List<Shop> shops = new ArrayList<>();
+			for (int i = 0; i < 40; i++)
+			{
+				int stock = random.nextInt(4) == 0 ? -1 : 1 + random.nextInt(30);
+				shops.add(shop("shop " + i, item("Pot", stock, 1 + random.nextInt(50))));
+			}
+			int quantity = 1 + random.nextInt(30);
+
+			List<ShopOffer> offers = PriceLadder.buildAll(shops, null).get("pot").cheapest(quantity);
+
+			List<ShopOffer> expected = new ArrayList<>(offers);
+			expected.sort(Comparator.comparing((ShopOffer offer) -> !offer.isComplete())
+				.thenComparingInt(offer -> offer.isComplete() ? 0 : -offer.getQuantity())
+				.thenComparingLong(ShopOffer::getTotalCost));
+			assertEquals("Round " + round, expected, offers);
+		}
+	}
+
+	@Test
+	public void testOnlyRequestedItemsAreBuilt()
+	{
+		Map<String, PriceLadder> ladders = PriceLadder.buildAll(Arrays.asList(
+			shop("store", item("Pot", 5, 1), item("Bucket", 5, 2))), Collections.singleton("bucket"));
+
+		assertEquals(1, ladders.size());
+		assertEquals(1, ladders.get("bucket").size());
+	}
+}
@@ -0,0 +1,143 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the compressed shop index bitmaps
+ */
+public class ShopBitmapTest
+{
+	private static ShopBitmap bitmap(BitSet bits)
+	{
+		return ShopBitmap.of(bits.stream().toArray(), bits.cardinality());
+	}
+
+	private static BitSet bits(ShopBitmap bitmap)
+	{
+		BitSet bits = new BitSet();
+		bitmap.forEach(bits::set);
+		return bits;
+	}
+
+	/**
+	 * Random set mixing sparse chunks, dense chunks and empty chunks
+	 */
+	private static BitSet random(Random random)
+	{
+		BitSet bits = new BitSet();
+		for (int chunk = 0; chunk < 4; chunk++)
+		{
+			int count = random.nextInt(3) == 0 ? 0 : random.nextBoolean() ? random.nextInt(100) : 4000 + random.nextInt(20000);
+			for (int i = 0; i < count; i++)
+			{
+				bits.set(chunk << 16 | random.nextInt(1 << 16));
+			}
+		}
+		return bits;
+	}
+
+	@Test
+	public void testRoundTrip()
+	{
+		BitSet bits = new BitSet();
+		bits.set(0);
+		bits.set(65535);
+		bits.set(65536);
+		bits.set(200_000, 210_000);
+
+		ShopBitmap bitmap = bitmap(bits);
+
+		assertEquals(bits, bits(bitmap));
+		assertEquals(bits.cardinality(), bitmap.cardinality());
+		assertTrue(bitmap.contains(65536));
+		assertTrue("Bitmap chunk", bitmap.contains(205_000));
+		assertFalse(bitmap.contains(1));
+		assertFalse("Missing chunk", bitmap.contains(150_000));
+		assertFalse(bitmap.contains(-1));
+	}
+
+	@Test
+	public void testAndOrMatchBitSet()
+	{
+		Random random = new Random(15);
+		for (int round = 0; round < 200; round++)
+		{
+			BitSet a = random(random);
+			BitSet b = random(random);
+
+			BitSet and = (BitSet) a.clone();
+			and.and(b);
+			BitSet or = (BitSet) a.clone();
+			or.or(b);
+
+			ShopBitmap bothSet = ShopBitmap.and(bitmap(a), bitmap(b));
+			ShopBitmap eitherSet = ShopBitmap.or(bitmap(a), bitmap(b));
+
+			assertEquals("Intersection in round " + round, and, bits(bothSet));
+			assertEquals(and.cardinality(), bothSet.cardinality());
+			assertEquals("Union in round " + round, or, bits(eitherSet));
+			assertEquals(or.cardinality(), eitherSet.cardinality());
+		}
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		ShopBitmap some = ShopBitmap.of(new int[]{1, 2, 3}, 3);
+
+		assertTrue(ShopBitmap.of(new int[0], 0).isEmpty());
+		assertSame(ShopBitmap.EMPTY, ShopBitmap.and(some, ShopBitmap.of(new int[]{4}, 1)));
+		assertSame(some, ShopBitmap.or(some, ShopBitmap.EMPTY));
+
+		List<Integer> seen = new ArrayList<>();
+		ShopBitmap.EMPTY.forEach(seen::add);
+		assertTrue(seen.isEmpty());
+	}
+
+	@Test
+	public void testCoverageIndex()
+	{
+		List<Shop> shops = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+		{
+			Shop shop = new Shop();
+			List<ShopItem> items = new ArrayList<>();
+			items.add(item("Pot"));
+			if (i % 2 == 0)
+			{
+				items.add(item("Bucket"));
+				items.add(item("bucket"));
+			}
+			if (i % 3 == 0)
+			{
+				items.add(item("Tinderbox"));
+			}
+			shop.setItems(items);
+			shops.add(shop);
+		}
+
+		ItemCoverageIndex index = ItemCoverageIndex.build(shops);
+
+		assertEquals(10, index.get("pot").cardinality());
+		assertEquals("Repeated listings count once", 5, index.get("bucket").cardinality());
+		assertEquals(bits(ShopBitmap.of(new int[]{0, 6}, 2)),
+			bits(index.sellingAll(Arrays.asList("bucket", "tinderbox", "pot"))));
+		assertEquals(7, index.sellingAny(Arrays.asList("bucket", "tinderbox")).cardinality());
+		assertTrue(index.sellingAll(Arrays.asList("pot", "rune")).isEmpty());
+	}
+
+	private static ShopItem item(String name)
+	{
+		ShopItem item = new ShopItem();
+		item.setName(name);
+		return item;
+	}
+}
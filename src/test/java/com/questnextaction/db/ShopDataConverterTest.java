@@ -0,0 +1,134 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for converting shops data to the version 2 format
+ */
+public class ShopDataConverterTest
+{
+	private static final String SHOPS_DATA_FILE = "/com/questnextaction/data/shops.json";
+
+	private static String toVersion1(List<Shop> shops) throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		SyntheticShopData.write(shops, writer);
+		return writer.toString();
+	}
+
+	private static String toVersion2(List<Shop> shops) throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		ShopDataConverter.write(shops, writer);
+		return writer.toString();
+	}
+
+	private static Shop shop(String id, int x, int y, int plane, ShopItem... items)
+	{
+		Shop shop = new Shop();
+		shop.setId(id);
+		shop.setCoordinates(x, y, plane);
+		shop.setItems(new ArrayList<>(Arrays.asList(items)));
+		return shop;
+	}
+
+	private static ShopItem item(int itemId, String name, int stock, int price)
+	{
+		ShopItem item = new ShopItem();
+		item.setItemId(itemId);
+		item.setName(name);
+		item.setStock(stock);
+		item.setPrice(price);
+		return item;
+	}
+
+	@Test
+	public void testRoundTripKeepsEveryShop() throws IOException
+	{
+		String version1 = toVersion1(SyntheticShopData.generate(2000));
+		List<Shop> shops = ShopJsonParser.readShops(new StringReader(version1));
+		String version2 = toVersion2(shops);
+
+		assertEquals(shops, ShopJsonParser.readShops(new StringReader(version2)));
+		assertTrue("Version 2 should be much smaller, " + version2.length() + " vs " + version1.length() + " chars",
+			version2.length() * 2 < version1.length());
+	}
+
+	@Test
+	public void testShardedParseOfVersion2() throws IOException
+	{
+		String version2 = toVersion2(SyntheticShopData.generate(2000));
+		List<Shop> shops = new ArrayList<>();
+		Map<String, List<Shop>> itemIndex = new HashMap<>();
+		ShopJsonParser.parse(new StringReader(version2), new ItemCatalog(), shops, new HashMap<>(), itemIndex);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			ByteBuffer bytes = ByteBuffer.wrap(version2.getBytes(StandardCharsets.UTF_8));
+			assertTrue(ShopJsonParser.layout(bytes, 9).cuts.length > 5);
+
+			List<Shop> sharded = new ArrayList<>();
+			Map<String, List<Shop>> shardedIndex = new HashMap<>();
+			ShopJsonParser.parse(bytes, pool, 9, new ItemCatalog(), sharded, new HashMap<>(), shardedIndex);
+			assertEquals(shops, sharded);
+			assertEquals(itemIndex, shardedIndex);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testLocationsOutsidePackedRangeAreKept() throws IOException
+	{
+		List<Shop> shops = Arrays.asList(
+			shop("packed", 16383, 0, 3, item(1931, "Pot", 5, 1)),
+			shop("wide", 20000, 3200, 0, item(1931, "Pot", 5, 1)));
+
+		String version2 = toVersion2(shops);
+
+		assertTrue(version2.contains("\"coord\":"));
+		assertTrue(version2.contains("\"x\":20000"));
+		assertEquals(shops, ShopJsonParser.readShops(new StringReader(version2)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testItemWithTwoNamesIsRejected() throws IOException
+	{
+		toVersion2(Arrays.asList(
+			shop("a", 3200, 3200, 0, item(1931, "Pot", 5, 1)),
+			shop("b", 3200, 3200, 0, item(1931, "Empty pot", 5, 1))));
+	}
+
+	@Test
+	public void testBundledDataIsVersion2() throws IOException
+	{
+		String bundled;
+		try (InputStream is = ShopDataConverterTest.class.getResourceAsStream(SHOPS_DATA_FILE))
+		{
+			assertNotNull("shops.json should be on the classpath", is);
+			bundled = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+		assertTrue(bundled.startsWith("{\n  \"version\": 2,"));
+		assertEquals("The bundled data should be as the converter writes it", bundled,
+			toVersion2(ShopJsonParser.readShops(new StringReader(bundled))));
+	}
+}
@@ -0,0 +1,166 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for building the shop data indexes on a fork-join pool
+ */
+public class ShopDataTest
+{
+	private static ShopData build(String json, int parallelism) throws IOException
+	{
+		List<Shop> shops = new ArrayList<>();
+		Map<String, Shop> shopsById = new HashMap<>();
+		Map<String, List<Shop>> itemToShops = new HashMap<>();
+		ItemCatalog catalog = new ItemCatalog();
+		ShopJsonParser.parse(new StringReader(json), catalog, shops, shopsById, itemToShops);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			return ShopData.build(shops, shopsById, itemToShops, catalog, pool);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static List<String> ids(List<Shop> shops)
+	{
+		return shops == null ? null : shops.stream().map(Shop::getId).collect(Collectors.toList());
+	}
+
+	private static List<String> offers(PriceLadder ladder, int quantity)
+	{
+		return ladder.cheapest(quantity).stream()
+			.map(offer -> offer.getShop().getId() + ":" + offer.getQuantity() + ":" + offer.getTotalCost())
+			.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testIndexesDoNotDependOnParallelism() throws IOException
+	{
+		// Large enough for the spatial index and price ladders to fork their own subtasks
+		StringWriter writer = new StringWriter();
+		SyntheticShopData.write(SyntheticShopData.generate(20_000), writer);
+		ShopData single = build(writer.toString(), 1);
+		ShopData parallel = build(writer.toString(), 4);
+
+		List<String> names = single.getNameIndex().names();
+		assertEquals(names, parallel.getNameIndex().names());
+		for (String name : names)
+		{
+			assertEquals(name, ids(single.getItemToShops().get(name)), ids(parallel.getItemToShops().get(name)));
+			assertEquals(name, ids(single.shopsAt(single.getCoverageIndex().get(name))),
+				ids(parallel.shopsAt(parallel.getCoverageIndex().get(name))));
+
+			PriceLadder ladder = single.getPriceLadder(name);
+			if (ladder != null)
+			{
+				assertEquals(name, offers(ladder, 1000), offers(parallel.getPriceLadder(name), 1000));
+			}
+		}
+
+		for (Shop shop : single.getShops().subList(0, 100))
+		{
+			int itemId = shop.getItems().get(0).getItemId();
+			assertEquals(ids(single.getShopsByItemId(itemId)), ids(parallel.getShopsByItemId(itemId)));
+
+			WorldPoint point = shop.getWorldPoint();
+			if (point == null)
+			{
+				continue;
+			}
+			assertEquals(ids(single.getSpatialIndex().nearest(point, 25, s -> true)),
+				ids(parallel.getSpatialIndex().nearest(point, 25, s -> true)));
+			assertEquals(ids(single.getSpatialIndex().within(point, 40)),
+				ids(parallel.getSpatialIndex().within(point, 40)));
+		}
+
+		for (String query : new String[]{"rune", "pot", "dragn", "lobstr"})
+		{
+			assertEquals(query, single.getNameIndex().search(query), parallel.getNameIndex().search(query));
+			assertEquals(query, single.getFuzzyIndex().search(query, 10, Long.MAX_VALUE),
+				parallel.getFuzzyIndex().search(query, 10, Long.MAX_VALUE));
+		}
+	}
+
+	private static Shop copy(Shop shop, String id)
+	{
+		Shop copy = new Shop();
+		copy.setId(id);
+		copy.setName(shop.getName());
+		copy.setLocation(shop.getLocation());
+		copy.setWorldPoint(shop.getWorldPoint());
+		copy.setItems(shop.getItems());
+		return copy;
+	}
+
+	@Test
+	public void testChangesMatchFullBuild() throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		SyntheticShopData.write(SyntheticShopData.generate(500), writer);
+		ShopData data = build(writer.toString(), 1);
+		List<Shop> shops = data.getShops();
+
+		// Replaced and added shops keep the other shops' positions; a removal moves them
+		Map<String, Shop> replaced = new LinkedHashMap<>();
+		replaced.put(shops.get(10).getId(), copy(shops.get(20), shops.get(10).getId()));
+		replaced.put("added", copy(shops.get(30), "added"));
+		Map<String, Shop> removedToo = new LinkedHashMap<>(replaced);
+		removedToo.put(shops.get(5).getId(), null);
+
+		for (Map<String, Shop> changes : List.of(replaced, removedToo))
+		{
+			ShopData changed = data.withChanges(changes);
+			ShopData full = ShopData.build(new ArrayList<>(changed.getShops()), new HashMap<>(changed.getShopsById()),
+				new HashMap<>(changed.getItemToShops()), changed.getCatalog());
+			for (String name : full.getNameIndex().names())
+			{
+				assertEquals(name, ids(full.getItemToShops().get(name)), ids(changed.getItemToShops().get(name)));
+				assertEquals(name, ids(full.shopsAt(full.getCoverageIndex().get(name))),
+					ids(changed.shopsAt(changed.getCoverageIndex().get(name))));
+			}
+			for (String name : data.getNameIndex().names())
+			{
+				assertEquals(name, ids(full.shopsAt(full.getCoverageIndex().get(name))),
+					ids(changed.shopsAt(changed.getCoverageIndex().get(name))));
+			}
+		}
+	}
+
+	@Test
+	public void testSmallDataIsBuiltOnCallingThread() throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		SyntheticShopData.write(SyntheticShopData.generate(50), writer);
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		pool.shutdown();
+		ShopData data = build(writer.toString(), 1);
+
+		// A shut-down pool rejects tasks, so this only works if the pool is not used
+		List<Shop> shops = new ArrayList<>(data.getShops());
+		Map<String, Shop> shopsById = new HashMap<>(data.getShopsById());
+		Map<String, List<Shop>> itemToShops = new HashMap<>(data.getItemToShops());
+		ShopData rebuilt = ShopData.build(shops, shopsById, itemToShops, data.getCatalog(), pool);
+		assertEquals(ids(data.getShops()), ids(rebuilt.getShops()));
+		assertEquals(data.getNameIndex().names(), rebuilt.getNameIndex().names());
+	}
+}
@@ -0,0 +1,214 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for loading shops from region packs on demand
+ */
+public class ShopDatabaseRegionTest
+{
+	private static final String SHOPS_DATA_FILE = "/com/questnextaction/data/shops.json";
+
+	// Lumbridge and Varrock are in different regions
+	private static final int LUMBRIDGE_REGION = new WorldPoint(3212, 3247, 0).getRegionID();
+
+	private Path directory;
+	private ShopDatabase fullDatabase;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("regions");
+		List<Shop> shops;
+		try (InputStream is = ShopDatabase.class.getResourceAsStream(SHOPS_DATA_FILE))
+		{
+			shops = ShopJsonParser.readShops(new InputStreamReader(is, StandardCharsets.UTF_8));
+		}
+		ShopRegionDirectory.write(shops, CompiledShopData.checksumResource(SHOPS_DATA_FILE), directory);
+
+		fullDatabase = new ShopDatabase();
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private ShopDatabase regionalDatabase(long cacheBytes)
+	{
+		return new ShopDatabase(name ->
+		{
+			Path file = directory.resolve(name);
+			return Files.exists(file) ? ByteBuffer.wrap(Files.readAllBytes(file)) : null;
+		}, cacheBytes);
+	}
+
+	private static Set<String> ids(List<Shop> shops)
+	{
+		return shops.stream().map(Shop::getId).collect(Collectors.toSet());
+	}
+
+	private static Set<String> loadedIds(ShopDatabase database)
+	{
+		return ids(database.getData().getShops());
+	}
+
+	@Test
+	public void testNoShopsLoadedUntilQueried()
+	{
+		ShopDatabase database = regionalDatabase(ShopDatabase.DEFAULT_REGION_CACHE_BYTES);
+
+		assertTrue("No region should be loaded at start", loadedIds(database).isEmpty());
+		assertEquals("Item names come from the directory", fullDatabase.getAllItemNames(), database.getAllItemNames());
+		assertEquals(fullDatabase.searchItems("rune"), database.searchItems("rune"));
+		assertEquals("Pot", database.getItemName(1931));
+		assertTrue("Searching names should not load shops", loadedIds(database).isEmpty());
+	}
+
+	@Test
+	public void testQueriesMatchFullyLoadedData()
+	{
+		ShopDatabase database = regionalDatabase(0);
+
+		for (String item : fullDatabase.getAllItemNames())
+		{
+			assertEquals("Shops selling " + item, ids(fullDatabase.findShopsByItem(item)), ids(database.findShopsByItem(item)));
+		}
+		for (Shop shop : fullDatabase.getAllShops())
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				assertEquals("Shops selling item " + item.getItemId(), ids(fullDatabase.findShopsByItemId(item.getItemId())),
+					ids(database.findShopsByItemId(item.getItemId())));
+			}
+			assertEquals(shop, database.getShopById(shop.getId()));
+		}
+
+		WorldPoint lumbridge = new WorldPoint(3222, 3218, 0);
+		assertEquals(ids(fullDatabase.shopsWithin(lumbridge, 300)), ids(database.shopsWithin(lumbridge, 300)));
+		assertEquals(ids(fullDatabase.nearestShopsSelling("pot", lumbridge, 3)),
+			ids(database.nearestShopsSelling("pot", lumbridge, 3)));
+		assertEquals(ids(fullDatabase.getAllShops()), ids(database.getAllShops()));
+	}
+
+	@Test
+	public void testQueryLoadsOnlyRegionsItNeeds()
+	{
+		ShopDatabase database = regionalDatabase(ShopDatabase.DEFAULT_REGION_CACHE_BYTES);
+
+		database.getShopById("ardougne_bakers_stall");
+
+		assertEquals("Only the Ardougne region should be loaded", Set.of("ardougne_bakers_stall"), loadedIds(database));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedRegionsAreEvicted()
+	{
+		ShopDatabase database = regionalDatabase(0);
+
+		database.getShopById("lumbridge_general_store");
+		assertTrue(loadedIds(database).contains("lumbridge_combat_shop"));
+
+		database.getShopById("varrock_general_store");
+		assertFalse("Lumbridge should be evicted over the cap", loadedIds(database).contains("lumbridge_general_store"));
+		assertTrue(loadedIds(database).contains("varrock_rune_shop"));
+
+		assertNotNull("An evicted shop should load again", database.getShopById("lumbridge_general_store"));
+	}
+
+	@Test
+	public void testAllShopsDoesNotKeepRegionsLoaded() throws IOException
+	{
+		ShopDatabase database = regionalDatabase(ShopDatabase.DEFAULT_REGION_CACHE_BYTES);
+		Path file = directory.resolve("shops.json");
+		Files.write(file, ("[{\"id\": \"lumbridge_general_store\", \"name\": \"Moved Store\", \"location\": \"Lumbridge\","
+			+ " \"x\": 3211, \"y\": 3246, \"plane\": 0, \"items\": []}]").getBytes(StandardCharsets.UTF_8));
+		database.reloadShopFile(file);
+		database.getShopById("ardougne_bakers_stall");
+
+		List<Shop> shops = database.getAllShops();
+
+		assertEquals(ids(fullDatabase.getAllShops()), ids(shops));
+		assertTrue(shops.stream().anyMatch(shop -> "Moved Store".equals(shop.getName())));
+		assertEquals("Only the region loaded before and the overridden shop should stay loaded",
+			Set.of("ardougne_bakers_stall", "lumbridge_general_store"), loadedIds(database));
+	}
+
+	@Test
+	public void testQueryRunsOnceReady() throws Exception
+	{
+		ShopDatabase database = regionalDatabase(ShopDatabase.DEFAULT_REGION_CACHE_BYTES);
+
+		assertEquals("ardougne_bakers_stall",
+			database.query(db -> db.getShopById("ardougne_bakers_stall").getId()).get());
+	}
+
+	@Test
+	public void testPlayerRegionIsNotEvicted()
+	{
+		ShopDatabase database = regionalDatabase(0);
+
+		database.setPlayerRegion(LUMBRIDGE_REGION);
+		assertTrue("The player's region should load", loadedIds(database).contains("lumbridge_general_store"));
+
+		database.getShopById("varrock_general_store");
+		database.getShopById("falador_general_store");
+		assertTrue("The player's region should stay loaded", loadedIds(database).contains("lumbridge_general_store"));
+	}
+
+	@Test
+	public void testOverrideSurvivesEviction() throws IOException
+	{
+		ShopDatabase database = regionalDatabase(0);
+		Path file = directory.resolve("shops.json");
+		Files.write(file, ("[{\"id\": \"lumbridge_general_store\", \"name\": \"Moved Store\", \"location\": \"Lumbridge\","
+			+ " \"x\": 3211, \"y\": 3246, \"plane\": 0, \"items\": []}]").getBytes(StandardCharsets.UTF_8));
+
+		database.reloadShopFile(file);
+		database.getShopById("lumbridge_combat_shop");
+		database.getShopById("varrock_general_store");
+		assertEquals("Moved Store", database.getShopById("lumbridge_general_store").getName());
+
+		Files.delete(file);
+		database.reloadShopFile(file);
+		assertEquals("Lumbridge General Store", database.getShopById("lumbridge_general_store").getName());
+	}
+
+	@Test
+	public void testStaleDirectoryIsIgnored() throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(directory.resolve("directory.bin"))))
+		{
+			out.writeInt(ShopRegionDirectory.MAGIC);
+			out.writeInt(ShopRegionDirectory.VERSION);
+			out.writeLong(CompiledShopData.checksumResource(SHOPS_DATA_FILE) + 1);
+		}
+
+		ShopDatabase database = regionalDatabase(0);
+
+		assertEquals("Should fall back to loading all shops", 10, loadedIds(database).size());
+	}
+}
@@ -0,0 +1,190 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for overriding the bundled shop data with a user's shops file
+ */
+public class ShopDatabaseReloadTest
+{
+	private static final String MOVED_LUMBRIDGE_STORE = "[{\"id\": \"lumbridge_general_store\","
+		+ " \"name\": \"Lumbridge General Store\", \"location\": \"Lumbridge\", \"x\": 3211, \"y\": 3246, \"plane\": 0,"
+		+ " \"items\": [{\"itemId\": 1931, \"name\": \"Pot\", \"stock\": 5, \"price\": 1}]}]";
+
+	private static final String NEW_SHOP = "[{\"id\": \"test_shop\", \"name\": \"Test Shop\", \"location\": \"Nowhere\","
+		+ " \"x\": 1000, \"y\": 1000, \"plane\": 0,"
+		+ " \"items\": [{\"itemId\": 99999, \"name\": \"Test widget\", \"stock\": 1, \"price\": 10}]}]";
+
+	private ShopDatabase shopDatabase;
+	private Path directory;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		shopDatabase = new ShopDatabase();
+		directory = Files.createTempDirectory("shops");
+		file = directory.resolve("shops.json");
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		shopDatabase.stopWatchingShopFile();
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private void write(String json) throws IOException
+	{
+		Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testOverrideReplacesShop() throws IOException
+	{
+		Shop original = shopDatabase.getShopById("lumbridge_general_store");
+		write(MOVED_LUMBRIDGE_STORE);
+
+		shopDatabase.reloadShopFile(file);
+
+		Shop updated = shopDatabase.getShopById("lumbridge_general_store");
+		assertEquals(new WorldPoint(3211, 3246, 0), updated.getWorldPoint());
+		assertEquals("Shop count should not change", 10, shopDatabase.getAllShops().size());
+		assertTrue("Item index should refer to the new shop", shopDatabase.findShopsByItem("pot").contains(updated));
+		assertFalse("Item index should not refer to the old shop",
+			shopDatabase.findShopsByItem("pot").stream().anyMatch(shop -> shop == original));
+		assertTrue("Items the shop no longer sells should not list it",
+			shopDatabase.findShopsByItem("tinderbox").stream().noneMatch(shop -> shop.getId().equals("lumbridge_general_store")));
+		assertTrue(shopDatabase.findShopsByItemId(1931).contains(updated));
+		assertEquals(updated, shopDatabase.shopsWithin(new WorldPoint(3211, 3246, 0), 0).get(0));
+	}
+
+	@Test
+	public void testOverrideAddsShop() throws IOException
+	{
+		write(NEW_SHOP);
+
+		shopDatabase.reloadShopFile(file);
+
+		assertEquals(11, shopDatabase.getAllShops().size());
+		assertNotNull(shopDatabase.getShopById("test_shop"));
+		assertEquals("New item names should be searchable", 1, shopDatabase.searchItems("widget").size());
+		assertEquals("Test widget", shopDatabase.getItemName(99999));
+		assertEquals("test_shop", shopDatabase.findShopsByItem("test widget").get(0).getId());
+	}
+
+	@Test
+	public void testRemovedOverridesRevertToBundledData() throws IOException
+	{
+		Shop original = shopDatabase.getShopById("lumbridge_general_store");
+		write(MOVED_LUMBRIDGE_STORE.substring(0, MOVED_LUMBRIDGE_STORE.length() - 1) + "," + NEW_SHOP.substring(1));
+		shopDatabase.reloadShopFile(file);
+		assertEquals(11, shopDatabase.getAllShops().size());
+
+		Files.delete(file);
+		shopDatabase.reloadShopFile(file);
+
+		assertEquals(10, shopDatabase.getAllShops().size());
+		assertNull(shopDatabase.getShopById("test_shop"));
+		assertSame(original, shopDatabase.getShopById("lumbridge_general_store"));
+		assertTrue(shopDatabase.searchItems("widget").isEmpty());
+	}
+
+	@Test
+	public void testListsFromBeforeReloadAreUnchanged() throws IOException
+	{
+		List<Shop> shops = shopDatabase.getAllShops();
+		List<Shop> potShops = shopDatabase.findShopsByItem("pot");
+		int potShopCount = potShops.size();
+
+		write(MOVED_LUMBRIDGE_STORE.substring(0, MOVED_LUMBRIDGE_STORE.length() - 1) + "," + NEW_SHOP.substring(1));
+		shopDatabase.reloadShopFile(file);
+
+		assertEquals("A list read before the reload should keep its contents", 10, shops.size());
+		assertEquals(potShopCount, potShops.size());
+		assertEquals(11, shopDatabase.getAllShops().size());
+	}
+
+	@Test
+	public void testMalformedFileKeepsCurrentData() throws IOException
+	{
+		write(NEW_SHOP);
+		shopDatabase.reloadShopFile(file);
+
+		write("[{\"id\": \"test_shop\", \"items\": [}]");
+		shopDatabase.reloadShopFile(file);
+
+		assertNotNull("A broken edit should not drop the overrides", shopDatabase.getShopById("test_shop"));
+	}
+
+	@Test
+	public void testUnchangedFileKeepsSameData() throws IOException
+	{
+		write(NEW_SHOP);
+		shopDatabase.reloadShopFile(file);
+		ShopData before = shopDatabase.getData();
+
+		shopDatabase.reloadShopFile(file);
+
+		assertSame("Reloading identical data should not publish a new version", before, shopDatabase.getData());
+	}
+
+	@Test
+	public void testSearchSessionSeesReload() throws IOException
+	{
+		ItemSearchSession session = shopDatabase.newSearchSession();
+		assertTrue(session.search("widget").isEmpty());
+
+		write(NEW_SHOP);
+		shopDatabase.reloadShopFile(file);
+
+		assertEquals(1, session.search("widget").size());
+	}
+
+	@Test
+	public void testFileReadBeforeStoppingIsIgnored() throws IOException
+	{
+		long generation = shopDatabase.shopFileGeneration();
+		write(NEW_SHOP);
+
+		// As a watcher callback that was still reading the file when watching stopped
+		shopDatabase.stopWatchingShopFile();
+		shopDatabase.reloadShopFile(file, generation);
+
+		assertNull("The file should not be applied once it is no longer watched", shopDatabase.getShopById("test_shop"));
+	}
+
+	@Test(timeout = 20000)
+	public void testWatcherAppliesEdits() throws Exception
+	{
+		shopDatabase.watchShopFile(file);
+		write(NEW_SHOP);
+
+		while (shopDatabase.getShopById("test_shop") == null)
+		{
+			Thread.sleep(50);
+		}
+
+		Files.delete(file);
+		while (shopDatabase.getShopById("test_shop") != null)
+		{
+			Thread.sleep(50);
+		}
+	}
+}
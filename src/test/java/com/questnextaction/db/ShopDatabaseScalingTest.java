@@ -0,0 +1,248 @@
+package com.questnextaction.db;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scaling tests for ShopDatabase on generated datasets.
+ *
+ * By default only the 1k and 10k shop datasets are generated, and the time and memory bounds are
+ * skipped so the unit tests stay quick and do not depend on the machine. The scalingTest Gradle
+ * task also runs 100k shops and checks the bounds, which is the same as setting
+ * {@code -Dshopdb.scaling.sizes=1000,10000,100000 -Dshopdb.scaling.bounds=true}.
+ *
+ * Each bound is per shop or per query so that it holds at every size, and is loose enough for a
+ * loaded machine; a regression that changes how the DB layer scales still fails it. The bounds
+ * can be changed with the system properties below.
+ */
+public class ShopDatabaseScalingTest
+{
+	private static final int[] SIZES = Arrays.stream(System.getProperty("shopdb.scaling.sizes", "1000,10000")
+		.split(",")).mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+
+	/**
+	 * Whether to check the time and memory bounds
+	 */
+	private static final boolean CHECK_BOUNDS = Boolean.getBoolean("shopdb.scaling.bounds");
+
+	/**
+	 * Time to parse and index the shops.json: a fixed allowance for small datasets, which the JIT
+	 * has not fully compiled for yet, plus a time per shop
+	 */
+	private static final long LOAD_BASE_MILLIS = Long.getLong("shopdb.scaling.loadBaseMillis", 1000);
+	private static final long LOAD_MICROS_PER_SHOP = Long.getLong("shopdb.scaling.loadMicrosPerShop", 150);
+
+	/**
+	 * Heap retained by the loaded database, per shop
+	 */
+	private static final long BYTES_PER_SHOP = Long.getLong("shopdb.scaling.bytesPerShop", 4096);
+
+	/**
+	 * Median time of one query, which should not grow much with the number of shops
+	 */
+	private static final long SEARCH_MICROS = Long.getLong("shopdb.scaling.searchMicros", 2000);
+	private static final long FIND_SHOPS_MICROS = Long.getLong("shopdb.scaling.findShopsMicros", 200);
+
+	private static final String[] QUERIES = {"pot", "rune", "Dragon", "potion(4)", "lob", "Yew long", "xyzzy"};
+
+	private static final Map<Integer, Loaded> loaded = new LinkedHashMap<>();
+	private static Path directory;
+
+	/**
+	 * A database loaded from a generated dataset, and what loading it cost
+	 */
+	private static final class Loaded
+	{
+		ShopDatabase database;
+		long loadNanos;
+		long retainedBytes;
+	}
+
+	@BeforeClass
+	public static void loadDatasets() throws IOException
+	{
+		directory = Files.createTempDirectory("synthetic-shops");
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		// Load a small dataset first so class loading and JIT warm-up are not timed
+		StringWriter warmUp = new StringWriter();
+		SyntheticShopData.write(SyntheticShopData.generate(2000), warmUp);
+		byte[] warmUpJson = warmUp.toString().getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < 3; i++)
+		{
+			new ShopDatabase(ByteBuffer.wrap(warmUpJson));
+		}
+
+		for (int size : SIZES)
+		{
+			Path file = SyntheticShopData.writeFile(size, directory.resolve("shops-" + size + ".json"));
+
+			Loaded result = new Loaded();
+			long heapBefore = usedHeap(memory);
+			long start = System.nanoTime();
+			result.database = new ShopDatabase(ByteBuffer.wrap(Files.readAllBytes(file)));
+			result.loadNanos = System.nanoTime() - start;
+			result.retainedBytes = usedHeap(memory) - heapBefore;
+			loaded.put(size, result);
+			Files.delete(file);
+		}
+	}
+
+	@AfterClass
+	public static void cleanUp() throws IOException
+	{
+		loaded.clear();
+		Files.deleteIfExists(directory);
+	}
+
+	private static long usedHeap(MemoryMXBean memory)
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Median time in microseconds of running a query, after warming it up
+	 */
+	private static long medianMicros(Supplier<?> query)
+	{
+		for (int i = 0; i < 200; i++)
+		{
+			query.get();
+		}
+
+		long[] times = new long[101];
+		for (int i = 0; i < times.length; i++)
+		{
+			long start = System.nanoTime();
+			query.get();
+			times[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		return TimeUnit.NANOSECONDS.toMicros(times[times.length / 2]);
+	}
+
+	@Test
+	public void testGeneratorIsDeterministic() throws IOException
+	{
+		StringWriter first = new StringWriter();
+		StringWriter second = new StringWriter();
+		SyntheticShopData.write(SyntheticShopData.generate(500), first);
+		SyntheticShopData.write(SyntheticShopData.generate(500), second);
+
+		assertEquals(first.toString(), second.toString());
+		assertNotEquals("Another seed gives other data", first.toString(),
+			toJson(SyntheticShopData.generate(500, SyntheticShopData.DEFAULT_SEED + 1)));
+	}
+
+	private static String toJson(List<Shop> shops) throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		SyntheticShopData.write(shops, writer);
+		return writer.toString();
+	}
+
+	@Test
+	public void testGeneratedItemsHaveLongTail()
+	{
+		for (Map.Entry<Integer, Loaded> entry : loaded.entrySet())
+		{
+			int size = entry.getKey();
+			ShopDatabase database = entry.getValue().database;
+			assertEquals(size, database.getAllShops().size());
+
+			List<Integer> sellers = new ArrayList<>();
+			for (String item : database.getAllItemNames())
+			{
+				sellers.add(database.findShopsByItem(item).size());
+			}
+			sellers.sort(null);
+
+			int median = sellers.get(sellers.size() / 2);
+			int most = sellers.get(sellers.size() - 1);
+			assertTrue(size + " shops: " + sellers.size() + " item names", sellers.size() > 500);
+			assertTrue(size + " shops: staples should be far more common than the median item, "
+				+ most + " vs " + median, most > median * 5);
+		}
+	}
+
+	@Test
+	public void testLoadTime()
+	{
+		Assume.assumeTrue("Time and memory bounds are checked by the scalingTest task", CHECK_BOUNDS);
+		for (Map.Entry<Integer, Loaded> entry : loaded.entrySet())
+		{
+			int size = entry.getKey();
+			long micros = TimeUnit.NANOSECONDS.toMicros(entry.getValue().loadNanos);
+			assertTrue(size + " shops loaded in " + micros / 1000 + " ms",
+				micros <= LOAD_BASE_MILLIS * 1000 + LOAD_MICROS_PER_SHOP * size);
+		}
+	}
+
+	@Test
+	public void testRetainedMemory()
+	{
+		Assume.assumeTrue("Time and memory bounds are checked by the scalingTest task", CHECK_BOUNDS);
+		for (Map.Entry<Integer, Loaded> entry : loaded.entrySet())
+		{
+			int size = entry.getKey();
+			long bytes = entry.getValue().retainedBytes;
+			assertTrue(size + " shops retain " + bytes / 1024 + " KB", bytes <= BYTES_PER_SHOP * size);
+		}
+	}
+
+	@Test
+	public void testSearchItemsLatency()
+	{
+		Assume.assumeTrue("Time and memory bounds are checked by the scalingTest task", CHECK_BOUNDS);
+		for (Map.Entry<Integer, Loaded> entry : loaded.entrySet())
+		{
+			ShopDatabase database = entry.getValue().database;
+			for (String query : QUERIES)
+			{
+				long micros = medianMicros(() -> database.searchItems(query));
+				assertTrue(entry.getKey() + " shops: searching '" + query + "' took " + micros + " us",
+					micros <= SEARCH_MICROS);
+			}
+		}
+	}
+
+	@Test
+	public void testFindShopsByItemLatency()
+	{
+		Assume.assumeTrue("Time and memory bounds are checked by the scalingTest task", CHECK_BOUNDS);
+		for (Map.Entry<Integer, Loaded> entry : loaded.entrySet())
+		{
+			ShopDatabase database = entry.getValue().database;
+			for (String item : new String[]{"Pot", "Rune platebody", "Law rune", "Magic longbow", "Missing item"})
+			{
+				long micros = medianMicros(() -> database.findShopsByItem(item));
+				assertTrue(entry.getKey() + " shops: finding '" + item + "' took " + micros + " us",
+					micros <= FIND_SHOPS_MICROS);
+			}
+		}
+	}
+}
@@ -4,7 +4,14 @@ import net.runelite.api.coords.WorldPoint;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -47,6 +54,86 @@ public class ShopDatabaseTest
 		assertTrue("Should load at least one item", items.size() > 0);
 	}
 
+	@Test
+	public void testSynchronousDatabaseIsReady()
+	{
+		assertTrue("Database created on the calling thread should be ready", shopDatabase.isReady());
+		assertTrue("Ready future should be complete", shopDatabase.getReadyFuture().isDone());
+	}
+
+	// ==================== Background Loading Tests ====================
+
+	private static void blockExecutor(ScheduledExecutorService executor, CountDownLatch gate)
+	{
+		executor.execute(() ->
+		{
+			try
+			{
+				gate.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	@Test
+	public void testBackgroundLoadingIsNotReadyUntilExecuted() throws Exception
+	{
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		CountDownLatch gate = new CountDownLatch(1);
+		try
+		{
+			// Block the executor so the load cannot run yet
+			blockExecutor(executor, gate);
+
+			ShopDatabase database = new ShopDatabase(executor);
+
+			assertFalse("Database should not be ready before loading runs", database.isReady());
+			assertTrue("Queries should return empty results while loading", database.getAllShops().isEmpty());
+			assertTrue("Queries should return empty results while loading", database.getAllItemNames().isEmpty());
+			assertTrue("Queries should return empty results while loading", database.searchItems("pot").isEmpty());
+			assertTrue("Queries should return empty results while loading", database.findShopsByItem("pot").isEmpty());
+			assertNull("Queries should return empty results while loading", database.getShopById("lumbridge_general_store"));
+
+			gate.countDown();
+			database.getReadyFuture().get(10, TimeUnit.SECONDS);
+
+			assertTrue("Database should be ready once loading completes", database.isReady());
+			assertEquals("Background load should see the same shops",
+				shopDatabase.getAllShops().size(), database.getAllShops().size());
+			assertEquals("Background load should see the same items",
+				shopDatabase.getAllItemNames(), database.getAllItemNames());
+		}
+		finally
+		{
+			gate.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testReadyFutureCannotBeCompletedByCallers() throws Exception
+	{
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		CountDownLatch gate = new CountDownLatch(1);
+		try
+		{
+			blockExecutor(executor, gate);
+
+			ShopDatabase database = new ShopDatabase(executor);
+			database.getReadyFuture().complete(null);
+
+			assertFalse("Completing the returned future should not mark the database ready", database.isReady());
+		}
+		finally
+		{
+			gate.countDown();
+			executor.shutdownNow();
+		}
+	}
+
 	// ==================== Shop Query Tests ====================
 
 	@Test
@@ -235,6 +322,225 @@ public class ShopDatabaseTest
 		assertTrue("Should return empty list for empty string", shops.isEmpty());
 	}
 
+	// ==================== Location Query Tests ====================
+
+	@Test
+	public void testNearestShopsSelling()
+	{
+		WorldPoint lumbridge = new WorldPoint(3222, 3218, 0);
+		List<Shop> shops = shopDatabase.nearestShopsSelling("Pot", lumbridge, 2);
+
+		assertEquals("Should return the requested number of shops", 2, shops.size());
+		assertEquals("lumbridge_general_store", shops.get(0).getId());
+		assertTrue("Shops should be nearest first",
+			shops.get(0).getWorldPoint().distanceTo(lumbridge) <= shops.get(1).getWorldPoint().distanceTo(lumbridge));
+		for (Shop shop : shops)
+		{
+			assertTrue("Every shop should sell the item", shopDatabase.findShopsByItem("pot").contains(shop));
+		}
+	}
+
+	@Test
+	public void testNearestShopsSellingWithInvalidInput()
+	{
+		WorldPoint point = new WorldPoint(3222, 3218, 0);
+		assertTrue(shopDatabase.nearestShopsSelling(null, point, 3).isEmpty());
+		assertTrue(shopDatabase.nearestShopsSelling("pot", null, 3).isEmpty());
+		assertTrue(shopDatabase.nearestShopsSelling("pot", point, 0).isEmpty());
+		assertTrue(shopDatabase.nearestShopsSelling("pot", point, -1).isEmpty());
+		assertEquals("Asking for more shops than sell the item should return them all",
+			shopDatabase.findShopsByItem("pot").size(), shopDatabase.nearestShopsSelling("pot", point, Integer.MAX_VALUE).size());
+		assertTrue(shopDatabase.nearestShopsSelling("xyznonexistentitem123", point, 3).isEmpty());
+		assertTrue("Shops on another plane should not be returned",
+			shopDatabase.nearestShopsSelling("pot", new WorldPoint(3222, 3218, 3), 3).isEmpty());
+	}
+
+	@Test
+	public void testShopsWithin()
+	{
+		WorldPoint lumbridge = new WorldPoint(3212, 3247, 0);
+
+		List<Shop> nearby = shopDatabase.shopsWithin(lumbridge, 0);
+		assertEquals(1, nearby.size());
+		assertEquals("lumbridge_general_store", nearby.get(0).getId());
+
+		List<Shop> all = shopDatabase.shopsWithin(lumbridge, 10000);
+		assertEquals("Every shop on the plane should be within a huge radius",
+			shopDatabase.getAllShops().stream().filter(s -> s.getWorldPoint() != null && s.getWorldPoint().getPlane() == 0).count(),
+			all.size());
+		assertTrue(shopDatabase.shopsWithin(null, 10).isEmpty());
+	}
+
+	// ==================== Fuzzy Search Tests ====================
+
+	@Test
+	public void testSearchItemsFuzzyToleratesTypos()
+	{
+		List<String> results = shopDatabase.searchItemsFuzzy("tinderbx", 10);
+		assertFalse("Should find tinderbox despite the typo", results.isEmpty());
+		assertEquals("tinderbox", results.get(0));
+	}
+
+	@Test
+	public void testSearchItemsFuzzyWithInvalidInput()
+	{
+		assertTrue(shopDatabase.searchItemsFuzzy(null, 10).isEmpty());
+		assertTrue(shopDatabase.searchItemsFuzzy("   ", 10).isEmpty());
+		assertTrue(shopDatabase.searchItemsFuzzy("xyzzyplugh", 10).isEmpty());
+	}
+
+	// ==================== Find Shops By Item ID Tests ====================
+
+	@Test
+	public void testFindShopsByItemIdMatchesName()
+	{
+		for (Shop shop : shopDatabase.getAllShops())
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				List<Shop> byId = shopDatabase.findShopsByItemId(item.getItemId());
+				assertTrue("Shops for item ID " + item.getItemId() + " should include " + shop.getId(),
+					byId.contains(shop));
+			}
+		}
+
+		List<Shop> pots = shopDatabase.findShopsByItemId(1931);
+		assertEquals("Lookup by ID and by name should agree for pots",
+			shopDatabase.findShopsByItem("pot"), pots);
+	}
+
+	@Test
+	public void testFindShopsByItemIdNotFound()
+	{
+		List<Shop> shops = shopDatabase.findShopsByItemId(-12345);
+		assertNotNull("Result should not be null", shops);
+		assertTrue("Should return empty list for an unknown item ID", shops.isEmpty());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFindShopsByItemIdIsReadOnly()
+	{
+		shopDatabase.findShopsByItemId(1931).clear();
+	}
+
+	@Test
+	public void testFindCheapestShops()
+	{
+		List<ShopOffer> offers = shopDatabase.findCheapestShops("Pot", 3);
+
+		assertEquals("Every shop stocking pots should have an offer", shopDatabase.findShopsByItem("pot").size(), offers.size());
+		for (int i = 1; i < offers.size(); i++)
+		{
+			assertTrue("Offers should be cheapest first", offers.get(i - 1).getTotalCost() <= offers.get(i).getTotalCost());
+		}
+		assertTrue(offers.get(0).isComplete());
+		assertEquals(3, offers.get(0).getQuantity());
+	}
+
+	@Test
+	public void testFindCheapestShopsBeyondStock()
+	{
+		for (ShopOffer offer : shopDatabase.findCheapestShops("pot", 1000))
+		{
+			assertFalse("No shop stocks 1000 pots", offer.isComplete());
+			assertEquals(offer.getItem().getStock(), offer.getQuantity());
+		}
+	}
+
+	@Test
+	public void testFindCheapestShopsInvalidInput()
+	{
+		assertTrue(shopDatabase.findCheapestShops(null, 1).isEmpty());
+		assertTrue(shopDatabase.findCheapestShops("pot", 0).isEmpty());
+		assertTrue(shopDatabase.findCheapestShops("NonExistentItem12345", 1).isEmpty());
+	}
+
+	@Test
+	public void testPlanShoppingList()
+	{
+		ShoppingPlan plan = shopDatabase.planShoppingList(
+			Arrays.asList("Pot", "Bucket", "NonExistentItem12345"), new WorldPoint(3212, 3246, 0));
+
+		assertEquals(Collections.singletonList("NonExistentItem12345"), plan.getUnavailableItems());
+		assertEquals("Lumbridge general store sells both", 1, plan.getVisits().size());
+		assertEquals("lumbridge_general_store", plan.getVisits().get(0).getShop().getId());
+		assertTrue(shopDatabase.planShoppingList(null, null).getVisits().isEmpty());
+	}
+
+	@Test
+	public void testFindShopsSellingAll()
+	{
+		List<Shop> pots = shopDatabase.findShopsByItem("Pot");
+		List<Shop> buckets = shopDatabase.findShopsByItem("Bucket");
+
+		List<Shop> both = shopDatabase.findShopsSellingAll(Arrays.asList("pot", "BUCKET"));
+
+		assertFalse("Some shop should sell both", both.isEmpty());
+		for (Shop shop : pots)
+		{
+			assertEquals("Shop " + shop.getId(), buckets.contains(shop), both.contains(shop));
+		}
+		assertTrue(shopDatabase.findShopsSellingAll(Arrays.asList("pot", "NonExistentItem12345")).isEmpty());
+	}
+
+	@Test
+	public void testFindShopsSellingAny()
+	{
+		List<Shop> either = shopDatabase.findShopsSellingAny(Arrays.asList("Pot", "Bucket", "NonExistentItem12345"));
+
+		for (Shop shop : shopDatabase.getAllShops())
+		{
+			boolean sells = shopDatabase.findShopsByItem("pot").contains(shop) || shopDatabase.findShopsByItem("bucket").contains(shop);
+			assertEquals("Shop " + shop.getId(), sells, either.contains(shop));
+		}
+		assertEquals("Each shop is listed once", either.size(), new HashSet<>(either).size());
+	}
+
+	@Test
+	public void testFindShopsSellingInvalidInput()
+	{
+		assertTrue(shopDatabase.findShopsSellingAll(null).isEmpty());
+		assertTrue(shopDatabase.findShopsSellingAll(Collections.emptyList()).isEmpty());
+		assertTrue(shopDatabase.findShopsSellingAny(Collections.singletonList(null)).isEmpty());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testGetAllShopsIsReadOnly()
+	{
+		shopDatabase.getAllShops().clear();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFindShopsByItemIsReadOnly()
+	{
+		shopDatabase.findShopsByItem("pot").clear();
+	}
+
+	@Test
+	public void testFindShopsByItemIdDoesNotAllocate()
+	{
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// The first lookups may load the regions selling the items
+		shopDatabase.findShopsByItemId(1931);
+		shopDatabase.findShopsByItemId(590);
+
+		int found = 0;
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 100_000; i++)
+		{
+			found += shopDatabase.findShopsByItemId(i % 2 == 0 ? 1931 : 590).size();
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+		assertTrue("Lookups should find shops", found > 0);
+		// Any per-call allocation would add up to megabytes over 100k calls
+		assertTrue("Lookups by item ID should not allocate, allocated " + allocated + " bytes",
+			allocated < 64 * 1024);
+	}
+
 	// ==================== Get All Item Names Tests ====================
 
 	@Test
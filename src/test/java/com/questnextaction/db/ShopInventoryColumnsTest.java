@@ -0,0 +1,77 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the columnar view of shop inventories
+ */
+public class ShopInventoryColumnsTest
+{
+	private static Shop shop(ShopItem... items)
+	{
+		Shop shop = new Shop();
+		shop.setItems(Arrays.asList(items));
+		return shop;
+	}
+
+	private static ShopItem item(int itemId, String name, int stock, int price)
+	{
+		ShopItem item = new ShopItem();
+		item.setItemId(itemId);
+		item.setName(name);
+		item.setStock(stock);
+		item.setPrice(price);
+		return item;
+	}
+
+	@Test
+	public void testRowsFollowShopOrder()
+	{
+		ShopInventoryColumns columns = ShopInventoryColumns.build(Arrays.asList(
+			shop(item(1931, "Pot", 5, 1), item(1925, "Bucket", 2, 2)),
+			shop(),
+			shop(item(1931, "POT", -1, 3))));
+
+		assertEquals(3, columns.shopCount());
+		assertEquals(3, columns.rowCount());
+		assertEquals(0, columns.shopOffset(0));
+		assertEquals("Empty shops take no rows", 2, columns.shopOffset(1));
+		assertEquals(2, columns.shopOffset(2));
+		assertEquals(3, columns.shopOffset(3));
+
+		assertEquals(1925, columns.itemId(1));
+		assertEquals(2, columns.stock(1));
+		assertEquals(-1, columns.stock(2));
+		assertEquals(3, columns.price(2));
+	}
+
+	@Test
+	public void testNamesAreLowercasedOnce()
+	{
+		ShopInventoryColumns columns = ShopInventoryColumns.build(Arrays.asList(
+			shop(item(1931, "Pot", 5, 1), item(0, null, 1, 1)),
+			shop(item(1931, "POT", 5, 1))));
+
+		assertEquals("Names differing in case share an id", columns.nameId(0), columns.nameId(2));
+		assertEquals(1, columns.nameCount());
+		assertEquals("pot", columns.name(columns.nameId(0)));
+		assertEquals(ShopInventoryColumns.NO_NAME, columns.nameId(1));
+		assertEquals(columns.nameId(0), columns.nameIdOf("pot"));
+		assertEquals(ShopInventoryColumns.NO_NAME, columns.nameIdOf("Pot"));
+	}
+
+	@Test
+	public void testNoShops()
+	{
+		ShopInventoryColumns columns = ShopInventoryColumns.build(Collections.emptyList());
+
+		assertEquals(0, columns.shopCount());
+		assertEquals(0, columns.rowCount());
+		assertEquals(0, columns.nameCount());
+	}
+}
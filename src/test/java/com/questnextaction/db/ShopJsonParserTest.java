@@ -0,0 +1,242 @@
+package com.questnextaction.db;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming shops.json parser
+ */
+public class ShopJsonParserTest
+{
+	private final List<Shop> shops = new ArrayList<>();
+	private final Map<String, Shop> shopsById = new HashMap<>();
+	private final Map<String, List<Shop>> itemIndex = new HashMap<>();
+
+	private void parse(String json) throws IOException
+	{
+		ShopJsonParser.parse(new StringReader(json), new ItemCatalog(), shops, shopsById, itemIndex);
+	}
+
+	@Test
+	public void testParsesShopFields() throws IOException
+	{
+		parse("[{\"id\": \"shop_a\", \"name\": \"Shop A\", \"owner\": \"Bob\", \"location\": \"Lumbridge\","
+			+ " \"x\": 3212, \"y\": 3247, \"plane\": 1,"
+			+ " \"items\": [{\"itemId\": 1931, \"name\": \"Pot\", \"stock\": 5, \"price\": 1}]}]");
+
+		assertEquals(1, shops.size());
+		Shop shop = shops.get(0);
+		assertEquals("shop_a", shop.getId());
+		assertEquals("Shop A", shop.getName());
+		assertEquals("Bob", shop.getOwner());
+		assertEquals("Lumbridge", shop.getLocation());
+		assertEquals(3212, shop.getWorldPoint().getX());
+		assertEquals(3247, shop.getWorldPoint().getY());
+		assertEquals(1, shop.getWorldPoint().getPlane());
+
+		ShopItem item = shop.getItems().get(0);
+		assertEquals(1931, item.getItemId());
+		assertEquals("Pot", item.getName());
+		assertEquals(5, item.getStock());
+		assertEquals(1, item.getPrice());
+	}
+
+	@Test
+	public void testBuildsIndexesInSamePass() throws IOException
+	{
+		parse("[{\"id\": \"a\", \"items\": [{\"name\": \"Pot\"}, {\"name\": \"Bucket\"}]},"
+			+ " {\"id\": \"b\", \"items\": [{\"name\": \"POT\"}]}]");
+
+		assertSame(shops.get(0), shopsById.get("a"));
+		assertSame(shops.get(1), shopsById.get("b"));
+		assertEquals("Item index should be keyed by lowercase name", 2, itemIndex.get("pot").size());
+		assertSame(shops.get(0), itemIndex.get("bucket").get(0));
+		assertNull("Item index keys should be lowercase", itemIndex.get("Pot"));
+	}
+
+	@Test
+	public void testFieldOrderDoesNotMatter() throws IOException
+	{
+		parse("[{\"items\": [{\"price\": 7, \"name\": \"Knife\"}], \"plane\": 0, \"y\": 3400, \"x\": 3200, \"id\": \"late_id\"}]");
+
+		Shop shop = shopsById.get("late_id");
+		assertNotNull("Shop should be indexed by an id that appears after its items", shop);
+		assertEquals(3200, shop.getWorldPoint().getX());
+		assertSame(shop, itemIndex.get("knife").get(0));
+		assertEquals(7, shop.getItems().get(0).getPrice());
+	}
+
+	@Test
+	public void testUnknownFieldsAreSkipped() throws IOException
+	{
+		parse("[{\"id\": \"a\", \"notes\": {\"nested\": [1, 2, 3]}, \"members\": true,"
+			+ " \"items\": [{\"name\": \"Pot\", \"noted\": false}]}]");
+
+		assertEquals(1, shops.size());
+		assertEquals(1, shops.get(0).getItems().size());
+	}
+
+	@Test
+	public void testNullsAndMissingFields() throws IOException
+	{
+		parse("[{\"id\": \"a\", \"owner\": null, \"x\": 1, \"y\": null, \"plane\": 0, \"items\": null},"
+			+ " {\"id\": \"b\", \"items\": [{\"name\": null, \"stock\": null}]}]");
+
+		Shop a = shopsById.get("a");
+		assertNull(a.getOwner());
+		assertNull("Partial coordinates should not create a WorldPoint", a.getWorldPoint());
+		assertNotNull("Null items should become an empty list", a.getItems());
+		assertTrue(a.getItems().isEmpty());
+
+		Shop b = shopsById.get("b");
+		assertEquals(1, b.getItems().size());
+		assertEquals(0, b.getItems().get(0).getStock());
+		assertTrue("Items without a name should not be indexed", itemIndex.isEmpty());
+	}
+
+	@Test
+	public void testEmptyArray() throws IOException
+	{
+		parse("[]");
+
+		assertTrue(shops.isEmpty());
+		assertTrue(shopsById.isEmpty());
+		assertTrue(itemIndex.isEmpty());
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedJsonThrows() throws IOException
+	{
+		parse("[{\"id\": \"a\", \"items\": [}]");
+	}
+
+	@Test
+	public void testParsesVersion2() throws IOException
+	{
+		int coord = ShopJsonParser.packCoord(3212, 3247, 1);
+		parse("{\"version\": 2, \"items\": {\"1931\": \"Pot\", \"1925\": \"Bucket\"},"
+			+ " \"shops\": [{\"id\": \"a\", \"owner\": \"Bob\", \"coord\": " + coord + ","
+			+ " \"items\": [[1931, 5, 1], [1925, 2, 3], [995, 0, 1]]}]}");
+
+		Shop shop = shopsById.get("a");
+		assertEquals(3212, shop.getWorldPoint().getX());
+		assertEquals(3247, shop.getWorldPoint().getY());
+		assertEquals(1, shop.getWorldPoint().getPlane());
+
+		ShopItem bucket = shop.getItems().get(1);
+		assertEquals(1925, bucket.getItemId());
+		assertEquals("Bucket", bucket.getName());
+		assertEquals(2, bucket.getStock());
+		assertEquals(3, bucket.getPrice());
+		assertNull("Items missing from the catalog have no name", shop.getItems().get(2).getName());
+		assertSame(shop, itemIndex.get("pot").get(0));
+	}
+
+	@Test(expected = IOException.class)
+	public void testVersion2CatalogMustComeFirst() throws IOException
+	{
+		parse("{\"version\": 2, \"shops\": [], \"items\": {}}");
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownVersionThrows() throws IOException
+	{
+		parse("{\"version\": 3, \"items\": {}, \"shops\": []}");
+	}
+
+	/**
+	 * Parse JSON in shards on a pool of the given parallelism, returning the shops
+	 */
+	private static List<Shop> parseSharded(String json, int parallelism, int shards, ItemCatalog catalog,
+		Map<String, List<Shop>> itemIndex) throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			List<Shop> shops = new ArrayList<>();
+			ShopJsonParser.parse(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), pool, shards, catalog,
+				shops, new HashMap<>(), itemIndex);
+			return shops;
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static int distinctItems(List<Shop> shops)
+	{
+		Set<ShopItem> items = Collections.newSetFromMap(new IdentityHashMap<>());
+		shops.forEach(shop -> items.addAll(shop.getItems()));
+		return items.size();
+	}
+
+	@Test
+	public void testShardedParseMatchesSinglePass() throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		SyntheticShopData.write(SyntheticShopData.generate(3000), writer);
+		String json = writer.toString();
+		parse(json);
+
+		for (int parallelism : new int[]{1, 4})
+		{
+			ItemCatalog catalog = new ItemCatalog();
+			Map<String, List<Shop>> shardedIndex = new HashMap<>();
+			List<Shop> sharded = parseSharded(json, parallelism, 13, catalog, shardedIndex);
+
+			assertEquals("Shops with parallelism " + parallelism, shops, sharded);
+			assertEquals("Item index with parallelism " + parallelism, itemIndex, shardedIndex);
+			assertEquals("Items should be shared across shards", distinctItems(shops), distinctItems(sharded));
+			assertEquals(distinctItems(sharded), catalog.variantCount());
+		}
+	}
+
+	@Test
+	public void testShardsAreCutBetweenShops() throws IOException
+	{
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 40; i++)
+		{
+			json.append(i > 0 ? ", " : "").append("{\"id\": \"s").append(i).append("\", \"name\": \"Odd, \\\"[shop]\\\" {")
+				.append(i).append("}\\\\\", \"items\": [{\"name\": \"Pot, ]\"}, {\"name\": \"Bucket\"}]}");
+		}
+		json.append("]");
+		parse(json.toString());
+
+		ByteBuffer bytes = ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8));
+		assertTrue(ShopJsonParser.layout(bytes, 10).cuts.length > 5);
+		Map<String, List<Shop>> shardedIndex = new HashMap<>();
+		assertEquals(shops, parseSharded(json.toString(), 2, 10, new ItemCatalog(), shardedIndex));
+		assertEquals(itemIndex, shardedIndex);
+		assertEquals("Odd, \"[shop]\" {7}\\", shops.get(7).getName());
+	}
+
+	@Test(expected = IOException.class)
+	public void testShardedParseReportsMalformedJson() throws IOException
+	{
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 40; i++)
+		{
+			json.append(i > 0 ? ", " : "").append(i == 25 ? "{\"id\": }" : "{\"id\": \"s" + i + "\"}");
+		}
+		json.append("]");
+
+		parseSharded(json.toString(), 2, 8, new ItemCatalog(), new HashMap<>());
+	}
+}
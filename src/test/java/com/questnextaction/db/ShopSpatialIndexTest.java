@@ -0,0 +1,112 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the shop location index
+ */
+public class ShopSpatialIndexTest
+{
+	private static Shop shop(String id, int x, int y, int plane)
+	{
+		Shop shop = new Shop();
+		shop.setId(id);
+		shop.setCoordinates(x, y, plane);
+		return shop;
+	}
+
+	private static List<String> ids(List<Shop> shops)
+	{
+		return shops.stream().map(Shop::getId).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testNearestAndWithin()
+	{
+		ShopSpatialIndex index = ShopSpatialIndex.build(Arrays.asList(
+			shop("lumbridge", 3212, 3247, 0),
+			shop("varrock", 3217, 3412, 0),
+			shop("falador", 2955, 3390, 0),
+			shop("upstairs", 3212, 3247, 1)));
+		WorldPoint point = new WorldPoint(3220, 3250, 0);
+
+		assertEquals(Arrays.asList("lumbridge", "varrock"), ids(index.nearest(point, 2, shop -> true)));
+		assertEquals(Arrays.asList("lumbridge", "varrock", "falador"), ids(index.nearest(point, Integer.MAX_VALUE, shop -> true)));
+		assertEquals(Arrays.asList("lumbridge"), ids(index.within(point, 10)));
+		assertEquals(Arrays.asList("lumbridge", "varrock"), ids(index.within(point, 162)));
+	}
+
+	@Test
+	public void testOtherPlanesAreIgnored()
+	{
+		ShopSpatialIndex index = ShopSpatialIndex.build(Arrays.asList(
+			shop("ground", 3300, 3300, 0),
+			shop("upstairs", 3200, 3200, 1)));
+
+		assertEquals(Arrays.asList("upstairs"), ids(index.nearest(new WorldPoint(3200, 3200, 1), 5, shop -> true)));
+		assertTrue(index.within(new WorldPoint(3200, 3200, 2), 1000).isEmpty());
+	}
+
+	@Test
+	public void testShopsWithoutLocationAreSkipped()
+	{
+		Shop nowhere = new Shop();
+		nowhere.setId("nowhere");
+		ShopSpatialIndex index = ShopSpatialIndex.build(Arrays.asList(nowhere, shop("somewhere", 0, 0, 0)));
+
+		assertEquals(Arrays.asList("somewhere"), ids(index.within(new WorldPoint(0, 0, 0), 10)));
+	}
+
+	@Test
+	public void testMatchesLinearScan()
+	{
+		Random random = new Random(11);
+		List<Shop> shops = new ArrayList<>();
+		for (int i = 0; i < 3000; i++)
+		{
+			shops.add(shop("shop" + i, 2000 + random.nextInt(2000), 2500 + random.nextInt(1500), random.nextInt(2)));
+		}
+		ShopSpatialIndex index = ShopSpatialIndex.build(shops);
+
+		for (int i = 0; i < 200; i++)
+		{
+			WorldPoint point = new WorldPoint(2000 + random.nextInt(2000), 2500 + random.nextInt(1500), random.nextInt(2));
+			int k = 1 + random.nextInt(10);
+			int radius = random.nextInt(200);
+			int parity = random.nextInt(2);
+			Comparator<Shop> byDistance = Comparator.comparingInt(shop -> shop.getWorldPoint().distanceTo(point));
+
+			List<Integer> expectedNearest = shops.stream()
+				.filter(shop -> shop.getWorldPoint().getPlane() == point.getPlane())
+				.filter(shop -> shop.getWorldPoint().getX() % 2 == parity)
+				.sorted(byDistance)
+				.limit(k)
+				.map(shop -> shop.getWorldPoint().distanceTo(point))
+				.collect(Collectors.toList());
+			List<Integer> actualNearest = index.nearest(point, k, shop -> shop.getWorldPoint().getX() % 2 == parity).stream()
+				.map(shop -> shop.getWorldPoint().distanceTo(point))
+				.collect(Collectors.toList());
+			// Shops at equal distance may come back in either order, so compare distances
+			assertEquals("Nearest " + k + " to " + point, expectedNearest, actualNearest);
+
+			List<String> expectedWithin = shops.stream()
+				.filter(shop -> shop.getWorldPoint().distanceTo(point) <= radius)
+				.map(Shop::getId)
+				.sorted()
+				.collect(Collectors.toList());
+			List<String> actualWithin = ids(index.within(point, radius));
+			actualWithin.sort(null);
+			assertEquals("Within " + radius + " of " + point, expectedWithin, actualWithin);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package com.questnextaction.db;
+
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the shopping list planner
+ */
+public class ShoppingListPlannerTest
+{
+	private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos(20);
+
+	private static final WorldPoint START = new WorldPoint(3200, 3200, 0);
+
+	private static Shop shop(String id, int x, int y, String... items)
+	{
+		Shop shop = new Shop();
+		shop.setId(id);
+		shop.setCoordinates(x, y, 0);
+		List<ShopItem> stock = new ArrayList<>();
+		for (String name : items)
+		{
+			ShopItem item = new ShopItem();
+			item.setName(name);
+			item.setStock(5);
+			item.setPrice(1);
+			stock.add(item);
+		}
+		shop.setItems(stock);
+		return shop;
+	}
+
+	private static Function<String, List<Shop>> sellers(Shop... shops)
+	{
+		Map<String, List<Shop>> byItem = new HashMap<>();
+		for (Shop shop : shops)
+		{
+			for (ShopItem item : shop.getItems())
+			{
+				byItem.computeIfAbsent(item.getName().toLowerCase(), k -> new ArrayList<>()).add(shop);
+			}
+		}
+		return key -> byItem.getOrDefault(key, Collections.emptyList());
+	}
+
+	private static List<String> ids(ShoppingPlan plan)
+	{
+		return plan.getVisits().stream().map(visit -> visit.getShop().getId()).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testOneShopSellingEverythingBeatsSpecialists()
+	{
+		ShoppingPlan plan = ShoppingListPlanner.plan(Arrays.asList("Pot", "Bucket", "Tinderbox"), sellers(
+			shop("pots", 3201, 3200, "Pot"),
+			shop("buckets", 3202, 3200, "Bucket"),
+			shop("tinderboxes", 3203, 3200, "Tinderbox"),
+			shop("general", 3240, 3200, "Pot", "Bucket", "Tinderbox")), START, BUDGET);
+
+		assertEquals(Collections.singletonList("general"), ids(plan));
+		assertEquals(Arrays.asList("Pot", "Bucket", "Tinderbox"), plan.getVisits().get(0).getItems());
+		assertTrue(plan.getUnavailableItems().isEmpty());
+	}
+
+	@Test
+	public void testNearerShopWinsWhenCoverageTies()
+	{
+		ShoppingPlan plan = ShoppingListPlanner.plan(Collections.singletonList("pot"), sellers(
+			shop("far", 3400, 3200, "Pot"),
+			shop("near", 3210, 3200, "Pot")), START, BUDGET);
+
+		assertEquals(Collections.singletonList("near"), ids(plan));
+	}
+
+	@Test
+	public void testDistantGeneralStoreLosesToNearbyShops()
+	{
+		ShoppingPlan plan = ShoppingListPlanner.plan(Arrays.asList("Pot", "Bucket"), sellers(
+			shop("pots", 3201, 3200, "Pot"),
+			shop("buckets", 3202, 3200, "Bucket"),
+			shop("general", 3200, 3600, "Pot", "Bucket")), START, BUDGET);
+
+		assertEquals("Two shops next door should beat a long walk", Arrays.asList("pots", "buckets"), ids(plan));
+	}
+
+	@Test
+	public void testLocalSearchEscapesGreedyTrap()
+	{
+		// Greedy takes the shop with the most items first, then needs two more to finish
+		ShoppingPlan plan = ShoppingListPlanner.plan(Arrays.asList("a", "b", "c", "d", "e", "f"), sellers(
+			shop("most", 3200, 3200, "a", "b", "d", "e"),
+			shop("left", 3200, 3200, "a", "b", "c"),
+			shop("right", 3200, 3200, "d", "e", "f")), null, BUDGET);
+
+		assertEquals(new HashSet<>(Arrays.asList("left", "right")), new HashSet<>(ids(plan)));
+	}
+
+	@Test
+	public void testUnavailableAndDuplicateItems()
+	{
+		ShoppingPlan plan = ShoppingListPlanner.plan(Arrays.asList("Pot", "pot ", "Dragon claws", "", null), sellers(
+			shop("pots", 3201, 3200, "Pot")), START, BUDGET);
+
+		assertEquals(Collections.singletonList("Dragon claws"), plan.getUnavailableItems());
+		assertEquals(1, plan.getVisits().size());
+		assertEquals("Each item is bought once", Collections.singletonList("Pot"), plan.getVisits().get(0).getItems());
+	}
+
+	@Test
+	public void testEachItemIsBoughtAtOneShop()
+	{
+		ShoppingPlan plan = ShoppingListPlanner.plan(Arrays.asList("a", "b", "c"), sellers(
+			shop("first", 3201, 3200, "a", "b"),
+			shop("second", 3300, 3200, "b", "c")), START, BUDGET);
+
+		assertEquals(Arrays.asList("first", "second"), ids(plan));
+		assertEquals(Arrays.asList("a", "b"), plan.getVisits().get(0).getItems());
+		assertEquals(Collections.singletonList("c"), plan.getVisits().get(1).getItems());
+	}
+
+	@Test
+	public void testEmptyList()
+	{
+		ShoppingPlan plan = ShoppingListPlanner.plan(Collections.emptyList(), sellers(), START, BUDGET);
+
+		assertTrue(plan.getVisits().isEmpty());
+		assertTrue(plan.getUnavailableItems().isEmpty());
+	}
+
+	@Test
+	public void testLargeListPlansQuickly()
+	{
+		Random random = new Random(14);
+		List<String> items = new ArrayList<>();
+		for (int i = 0; i < 150; i++)
+		{
+			items.add("item " + i);
+		}
+
+		Shop[] shops = new Shop[5000];
+		for (int i = 0; i < shops.length; i++)
+		{
+			String[] stock = new String[1 + random.nextInt(20)];
+			for (int j = 0; j < stock.length; j++)
+			{
+				stock[j] = items.get(random.nextInt(items.size()));
+			}
+			shops[i] = shop("shop " + i, 2500 + random.nextInt(1000), 2900 + random.nextInt(1000), stock);
+		}
+		Function<String, List<Shop>> sellers = sellers(shops);
+
+		long start = System.nanoTime();
+		ShoppingPlan plan = ShoppingListPlanner.plan(items, sellers, START, BUDGET);
+		long elapsed = System.nanoTime() - start;
+
+		Set<String> bought = new HashSet<>();
+		plan.getVisits().forEach(visit -> bought.addAll(visit.getItems()));
+		assertEquals("Every item should be bought", new HashSet<>(items), bought);
+		assertTrue("Planning took " + elapsed / 1_000_000 + " ms", elapsed < TimeUnit.MILLISECONDS.toNanos(500));
+	}
+}
@@ -0,0 +1,332 @@
+package com.questnextaction.db;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic generator of large shop datasets in the shops.json format, for scaling tests and
+ * benchmarks.
+ *
+ * Item names are built from the same families as the game's (metal tiers of weapons and armour,
+ * runes, fish, herbs, logs and so on), about 600 in all. Like the bundled data, a few staples are
+ * sold almost everywhere while most items are sold by few shops: general stores stock the staples,
+ * specialist shops stock one family, and every shop adds a few items drawn from a Zipf
+ * distribution. Shops are clustered around towns. The same size and seed always give the same data.
+ */
+final class SyntheticShopData
+{
+	static final long DEFAULT_SEED = 17;
+
+	private static final String[] STAPLES = {
+		"Pot", "Jug", "Bucket", "Tinderbox", "Chisel", "Hammer", "Knife", "Shears", "Needle", "Thread",
+		"Rope", "Spade", "Bowl", "Empty vial", "Vial of water", "Feather", "Fishing bait", "Small fishing net",
+		"Fishing rod", "Pie dish", "Cake tin", "Ball of wool", "Eye of newt",
+	};
+
+	private static final String[] METALS = {"Bronze", "Iron", "Steel", "Black", "Mithril", "Adamant", "Rune", "Dragon"};
+
+	private static final String[] EQUIPMENT = {
+		"dagger", "sword", "scimitar", "longsword", "2h sword", "battleaxe", "warhammer", "mace", "axe",
+		"pickaxe", "full helm", "med helm", "chainbody", "platebody", "platelegs", "plateskirt", "kiteshield",
+		"sq shield", "arrows", "dart", "knife", "javelin", "bolts", "claws", "spear", "halberd", "boots",
+	};
+
+	private static final Set<String> ARMOUR_PIECES = Set.of("full helm", "med helm", "chainbody", "platebody",
+		"platelegs", "plateskirt", "kiteshield", "sq shield", "boots");
+
+	private static final String[] RUNES = {
+		"Air", "Water", "Earth", "Fire", "Mind", "Body", "Chaos", "Death", "Law", "Nature", "Cosmic", "Blood",
+		"Soul", "Astral", "Wrath", "Mist", "Dust", "Mud", "Smoke", "Steam", "Lava",
+	};
+
+	private static final String[] FISH = {
+		"Shrimps", "Anchovies", "Sardine", "Herring", "Trout", "Pike", "Salmon", "Tuna", "Lobster", "Bass",
+		"Swordfish", "Monkfish", "Shark", "Sea turtle", "Manta ray", "Karambwan", "Cod", "Mackerel",
+	};
+
+	private static final String[] HERBS = {
+		"Guam", "Marrentill", "Tarromin", "Harralander", "Ranarr", "Toadflax", "Irit", "Avantoe", "Kwuarm",
+		"Snapdragon", "Cadantine", "Lantadyme", "Dwarf weed", "Torstol",
+	};
+
+	private static final String[] WOODS = {"Oak", "Willow", "Teak", "Maple", "Mahogany", "Yew", "Magic", "Redwood"};
+
+	private static final String[] COLOURS = {
+		"Red", "Blue", "Green", "Yellow", "Purple", "Orange", "Black", "White", "Grey", "Pink", "Brown", "Gold",
+	};
+
+	private static final String[] CLOTHES = {
+		"cape", "robe top", "robe bottoms", "hat", "sash", "gloves", "scarf", "partyhat", "dye", "flowers",
+		"apron", "beret",
+	};
+
+	private static final String[] POTIONS = {
+		"Attack", "Strength", "Defence", "Ranging", "Magic", "Prayer", "Restore", "Energy", "Agility", "Fishing",
+		"Antipoison", "Combat", "Super attack", "Super strength", "Super defence", "Super restore", "Stamina",
+	};
+
+	private static final String[] TOWNS = {
+		"Lumbridge", "Varrock", "Falador", "Draynor", "Al Kharid", "Edgeville", "Port Sarim", "Rimmington",
+		"Catherby", "Camelot", "Seers' Village", "Ardougne", "Yanille", "Canifis", "Burthorpe", "Taverley",
+		"Karamja", "Brimhaven", "Shilo Village", "Pollnivneach", "Nardah", "Sophanem", "Rellekka", "Keldagrim",
+		"Lletya", "Prifddinas", "Zanaris", "Mos Le'Harmless", "Port Phasmatys", "Hosidius", "Arceuus",
+		"Lovakengj", "Piscarilius", "Shayzien", "Varlamore", "Civitas illa Fortis", "Aldarin", "Witchaven",
+	};
+
+	private static final String[] SPECIALTIES = {"Weapons", "Armour", "Runes", "Fish", "Herbs", "Woodwork", "Clothes", "Potions"};
+
+	/**
+	 * Shop families: which part of the vocabulary a specialist shop stocks
+	 */
+	private static final int WEAPONS = 0;
+	private static final int ARMOUR = 1;
+	private static final int RUNE_SHOP = 2;
+	private static final int FISH_SHOP = 3;
+	private static final int HERB_SHOP = 4;
+	private static final int WOOD_SHOP = 5;
+	private static final int CLOTHES_SHOP = 6;
+	private static final int POTION_SHOP = 7;
+
+	private final Random random;
+	private final List<String> names = new ArrayList<>();
+	private final List<Integer> basePrices = new ArrayList<>();
+	private final List<List<Integer>> families = new ArrayList<>();
+	private final double[] popularity;
+
+	private SyntheticShopData(long seed)
+	{
+		random = new Random(seed);
+		for (int family = 0; family < SPECIALTIES.length; family++)
+		{
+			families.add(new ArrayList<>());
+		}
+
+		for (String staple : STAPLES)
+		{
+			addItem(staple, 1 + staple.length(), -1);
+		}
+		for (int tier = 0; tier < METALS.length; tier++)
+		{
+			for (int piece = 0; piece < EQUIPMENT.length; piece++)
+			{
+				String name = METALS[tier] + " " + EQUIPMENT[piece];
+				addItem(name, (10 + piece * 7) << (tier + 1), ARMOUR_PIECES.contains(EQUIPMENT[piece]) ? ARMOUR : WEAPONS);
+			}
+		}
+		for (String rune : RUNES)
+		{
+			addItem(rune + " rune", 4 + rune.length() * 20, RUNE_SHOP);
+		}
+		for (int i = 0; i < FISH.length; i++)
+		{
+			addItem(FISH[i], 5 + i * 20, FISH_SHOP);
+			addItem("Raw " + FISH[i].toLowerCase(), 3 + i * 15, FISH_SHOP);
+			addItem("Burnt " + FISH[i].toLowerCase(), 1, FISH_SHOP);
+		}
+		for (int i = 0; i < HERBS.length; i++)
+		{
+			addItem("Grimy " + HERBS[i].toLowerCase(), 10 + i * 50, HERB_SHOP);
+			addItem(HERBS[i], 15 + i * 60, HERB_SHOP);
+			addItem(HERBS[i] + " potion (unf)", 20 + i * 70, HERB_SHOP);
+			addItem(HERBS[i] + " seed", 5 + i * 200, HERB_SHOP);
+		}
+		for (int i = 0; i < WOODS.length; i++)
+		{
+			for (String product : new String[]{"logs", "plank", "shortbow", "longbow", "shield", "pyre logs"})
+			{
+				addItem(WOODS[i] + " " + product, (5 + product.length()) << i, WOOD_SHOP);
+			}
+		}
+		for (String colour : COLOURS)
+		{
+			for (String clothing : CLOTHES)
+			{
+				addItem(colour + " " + clothing, 2 + clothing.length() * 3, CLOTHES_SHOP);
+			}
+		}
+		for (int i = 0; i < POTIONS.length; i++)
+		{
+			for (int dose = 1; dose <= 4; dose++)
+			{
+				addItem(POTIONS[i] + " potion(" + dose + ")", (8 + i * 30) * dose, POTION_SHOP);
+			}
+		}
+
+		// Popularity follows a Zipf distribution over a shuffled vocabulary, so the popular items
+		// are spread over every family
+		List<Integer> ranks = new ArrayList<>();
+		for (int i = 0; i < names.size(); i++)
+		{
+			ranks.add(i);
+		}
+		Collections.shuffle(ranks, random);
+		popularity = new double[names.size()];
+		double total = 0;
+		for (int i = 0; i < names.size(); i++)
+		{
+			total += 1 / Math.pow(ranks.get(i) + 1, 1.1);
+			popularity[i] = total;
+		}
+		for (int i = 0; i < popularity.length; i++)
+		{
+			popularity[i] /= total;
+		}
+	}
+
+	private void addItem(String name, int basePrice, int family)
+	{
+		if (family >= 0)
+		{
+			families.get(family).add(names.size());
+		}
+		names.add(name);
+		basePrices.add(basePrice);
+	}
+
+	/**
+	 * Generate shops with the default seed
+	 */
+	static List<Shop> generate(int shopCount)
+	{
+		return generate(shopCount, DEFAULT_SEED);
+	}
+
+	static List<Shop> generate(int shopCount, long seed)
+	{
+		SyntheticShopData generator = new SyntheticShopData(seed);
+		List<Shop> shops = new ArrayList<>(shopCount);
+		for (int i = 0; i < shopCount; i++)
+		{
+			shops.add(generator.shop(i));
+		}
+		return shops;
+	}
+
+	private Shop shop(int index)
+	{
+		int town = random.nextInt(TOWNS.length);
+		// Specialists outnumber general stores, as in the game
+		int family = random.nextInt(10) < 3 ? -1 : random.nextInt(SPECIALTIES.length);
+
+		Set<Integer> stock = new LinkedHashSet<>();
+		if (family < 0)
+		{
+			int staples = 5 + random.nextInt(STAPLES.length - 5);
+			for (int i = 0; i < staples; i++)
+			{
+				stock.add(random.nextInt(STAPLES.length));
+			}
+		}
+		else
+		{
+			List<Integer> items = families.get(family);
+			int count = 3 + random.nextInt(Math.min(20, items.size() - 3));
+			int start = random.nextInt(items.size());
+			for (int i = 0; i < count; i++)
+			{
+				stock.add(items.get((start + i) % items.size()));
+			}
+		}
+		for (int extra = random.nextInt(4); extra > 0; extra--)
+		{
+			stock.add(popularItem());
+		}
+
+		List<ShopItem> items = new ArrayList<>();
+		for (int item : stock)
+		{
+			ShopItem shopItem = new ShopItem();
+			shopItem.setItemId(1000 + item);
+			shopItem.setName(names.get(item));
+			shopItem.setStock(family == RUNE_SHOP ? 1000 + random.nextInt(4000)
+				: random.nextInt(20) == 0 ? -1 : 1 + random.nextInt(family < 0 ? 10 : 30));
+			// Prices vary by up to a fifth between shops
+			int base = basePrices.get(item);
+			shopItem.setPrice(Math.max(1, base + (int) (base * (random.nextDouble() - 0.5) * 0.4)));
+			items.add(shopItem);
+		}
+
+		Shop shop = new Shop();
+		shop.setId("synthetic_shop_" + index);
+		shop.setName(TOWNS[town] + " " + (family < 0 ? "General Store" : SPECIALTIES[family] + " Shop") + " " + index);
+		shop.setOwner(random.nextBoolean() ? "Shopkeeper" : "Shop assistant");
+		shop.setLocation(TOWNS[town]);
+		if (random.nextInt(100) > 0)
+		{
+			// Towns spread over the main map; shops gather within a few dozen tiles of theirs
+			Random townRandom = new Random(town);
+			int x = 2400 + townRandom.nextInt(1400) + (int) (random.nextGaussian() * 20);
+			int y = 2800 + townRandom.nextInt(1100) + (int) (random.nextGaussian() * 20);
+			shop.setCoordinates(x, y, random.nextInt(30) == 0 ? 1 : 0);
+		}
+		shop.setItems(items);
+		return shop;
+	}
+
+	private int popularItem()
+	{
+		int index = Arrays.binarySearch(popularity, random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, popularity.length - 1);
+	}
+
+	/**
+	 * Write shops in the shops.json format
+	 */
+	static void write(List<Shop> shops, Writer writer) throws IOException
+	{
+		JsonWriter json = new JsonWriter(writer);
+		json.beginArray();
+		for (Shop shop : shops)
+		{
+			json.beginObject();
+			json.name("id").value(shop.getId());
+			json.name("name").value(shop.getName());
+			json.name("owner").value(shop.getOwner());
+			json.name("location").value(shop.getLocation());
+			if (shop.getWorldPoint() != null)
+			{
+				json.name("x").value(shop.getWorldPoint().getX());
+				json.name("y").value(shop.getWorldPoint().getY());
+				json.name("plane").value(shop.getWorldPoint().getPlane());
+			}
+			json.name("items").beginArray();
+			for (ShopItem item : shop.getItems())
+			{
+				json.beginObject();
+				json.name("itemId").value(item.getItemId());
+				json.name("name").value(item.getName());
+				json.name("stock").value(item.getStock());
+				json.name("price").value(item.getPrice());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		}
+		json.endArray();
+		json.flush();
+	}
+
+	/**
+	 * Generate shops with the default seed into a shops.json file
+	 */
+	static Path writeFile(int shopCount, Path file) throws IOException
+	{
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+		{
+			write(generate(shopCount), writer);
+		}
+		return file;
+	}
+}